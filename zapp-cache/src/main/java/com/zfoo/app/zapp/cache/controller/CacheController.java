@@ -19,6 +19,8 @@ import com.zfoo.app.zapp.common.protocol.cache.model.UserCache;
 import com.zfoo.app.zapp.common.protocol.cache.refresh.RefreshCategoryCacheAsk;
 import com.zfoo.app.zapp.common.protocol.cache.refresh.RefreshUserTsCacheAsk;
 import com.zfoo.app.zapp.common.protocol.cache.refresh.RefreshWordCacheAsk;
+import com.zfoo.app.zapp.common.protocol.cache.search.GetHotSearchAnswer;
+import com.zfoo.app.zapp.common.protocol.cache.search.GetHotSearchAsk;
 import com.zfoo.app.zapp.common.util.CommonUtils;
 import com.zfoo.net.NetContext;
 import com.zfoo.net.router.attachment.GatewayAttachment;
@@ -174,6 +176,11 @@ public class CacheController {
         NetContext.getRouter().send(session, SearchUserAnswer.valueOf(userCaches));
     }
 
+    @PacketReceiver
+    public void atGetHotSearchAsk(Session session, GetHotSearchAsk ask) {
+        NetContext.getRouter().send(session, GetHotSearchAnswer.valueOf(cacheService.hotSearchCaches.get()));
+    }
+
     @PacketReceiver
     public void atWordFilterAsk(Session session, WordFilterAsk ask) {
         var word = ask.getWord();
@@ -202,8 +209,8 @@ public class CacheController {
         });
 
         var result = new ArrayList<String>();
-        var wordTree = cacheService.wordTree;
-        result.addAll(wordTree.matchAll(word, -1, true, true));
+        var wordFilter = cacheService.wordFilter;
+        result.addAll(wordFilter.matchAll(word));
 
         if (CollectionUtils.isNotEmpty(result)) {
             NetContext.getRouter().send(session, WordFilterAnswer.valueOf(result));
@@ -211,11 +218,11 @@ public class CacheController {
         }
 
         if (!StringUtils.isBlank(cnStr)) {
-            result.addAll(wordTree.matchAll(cnStr.toString(), -1, true, true));
+            result.addAll(wordFilter.matchAll(cnStr));
         }
 
         if (!StringUtils.isBlank(enStr)) {
-            result.addAll(wordTree.matchAll(enStr.toString(), -1, true, true));
+            result.addAll(wordFilter.matchAll(enStr));
         }
 
         NetContext.getRouter().send(session, WordFilterAnswer.valueOf(result));
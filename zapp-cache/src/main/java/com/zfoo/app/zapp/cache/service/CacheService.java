@@ -20,6 +20,7 @@ import com.zfoo.app.zapp.common.constant.AppConstant;
 import com.zfoo.app.zapp.common.constant.LocationConstant;
 import com.zfoo.app.zapp.common.entity.core.CategoryEntity;
 import com.zfoo.app.zapp.common.entity.core.WordEntity;
+import com.zfoo.app.zapp.common.entity.search.HotSearchEntity;
 import com.zfoo.app.zapp.common.entity.user.UserEntity;
 import com.zfoo.app.zapp.common.protocol.cache.model.CategoryVO;
 import com.zfoo.app.zapp.common.protocol.cache.model.UserCache;
@@ -29,6 +30,7 @@ import com.zfoo.net.packet.common.PairLS;
 import com.zfoo.net.packet.common.TripleLSS;
 import com.zfoo.net.packet.common.TripleString;
 import com.zfoo.net.util.SimpleCache;
+import com.zfoo.net.util.SingleCache;
 import com.zfoo.orm.OrmContext;
 import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.model.Pair;
@@ -36,7 +38,7 @@ import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.scheduler.util.TimeUtils;
 import com.zfoo.storage.model.anno.ResInjection;
 import com.zfoo.storage.model.vo.Storage;
-import com.zfoo.util.math.dfa.WordTree;
+import com.zfoo.util.math.dfa.AhoCorasick;
 import org.bson.Document;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
@@ -315,27 +317,9 @@ public class CacheService implements ICacheService, ApplicationListener<AppStart
             , key -> Collections.emptyList());
 
     /**
-     * 热搜缓存
+     * 热搜缓存，合并所有feed服务器保存的热搜，启动之后才能访问数据库，所以在AppStartEvent中初始化
      */
-    public SimpleCache<String, List<Long>> hotSearchCaches = SimpleCache.build(
-            30 * TimeUtils.MILLIS_PER_MINUTE, 15 * TimeUtils.MILLIS_PER_MINUTE, 1_0000
-            , names -> {
-                var collection = OrmContext.getOrmManager().getCollection("user");
-                var map = new HashMap<String, List<Long>>();
-                collection.find(Filters.in("name", names))
-                        .projection(Projections.include("_id", "name"))
-                        .forEach(new Consumer<Document>() {
-                            @Override
-                            public void accept(Document document) {
-                                var userId = document.getLong("_id");
-                                var name = document.getString("name");
-                                var list = map.computeIfAbsent(name, it -> new ArrayList<>());
-                                list.add(userId);
-                            }
-                        });
-                return map.entrySet().stream().map(it -> new Pair<>(it.getKey(), it.getValue())).collect(Collectors.toList());
-            }
-            , key -> Collections.emptyList());
+    public SingleCache<List<String>> hotSearchCaches;
 
     @PostConstruct
     public void init() throws IOException {
@@ -343,7 +327,7 @@ public class CacheService implements ICacheService, ApplicationListener<AppStart
     }
 
 
-    public WordTree wordTree;
+    public AhoCorasick wordFilter;
     /**
      * 中文正则
      */
@@ -357,12 +341,16 @@ public class CacheService implements ICacheService, ApplicationListener<AppStart
 
     @Override
     public void onApplicationEvent(AppStartEvent event) {
-        var tree = new WordTree();
         var words = filterResources.getAll().stream()
                 .map(it -> it.getFilter().trim().toLowerCase())
                 .collect(Collectors.toList());
-        tree.addWords(words);
-        wordTree = tree;
+        wordFilter = AhoCorasick.build(words);
+
+        hotSearchCaches = SingleCache.build(10 * TimeUtils.MILLIS_PER_MINUTE
+                , () -> HotSearchEntity.merge(OrmContext.getQuery().queryAll(HotSearchEntity.class), AppConstant.HOT_SEARCH_SIZE)
+                        .stream()
+                        .map(it -> it.getQuery())
+                        .collect(Collectors.toList()));
     }
 
 
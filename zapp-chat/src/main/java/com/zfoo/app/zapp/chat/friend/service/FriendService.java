@@ -13,14 +13,24 @@
 
 package com.zfoo.app.zapp.chat.friend.service;
 
+import com.zfoo.app.zapp.common.entity.common.MessagePO;
 import com.zfoo.app.zapp.common.entity.friend.ApplicantEntity;
 import com.zfoo.app.zapp.common.entity.friend.FriendEntity;
+import com.zfoo.app.zapp.common.entity.friend.FriendMessageEntity;
+import com.zfoo.orm.OrmContext;
 import com.zfoo.orm.model.anno.EntityCachesInjection;
 import com.zfoo.orm.model.cache.IEntityCaches;
+import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.util.security.IdUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+
 /**
  * @author jaysunxiao
  * @version 1.0
@@ -35,6 +45,9 @@ public class FriendService implements IFriendService {
     @EntityCachesInjection
     private IEntityCaches<String, FriendEntity> friendEntityCaches;
 
+    @EntityCachesInjection
+    private IEntityCaches<String, FriendMessageEntity> friendMessageEntityCaches;
+
     @Override
     public boolean blacklisted(long userId, long targetId) {
         var id = IdUtils.generateStringId(userId, targetId);
@@ -59,4 +72,191 @@ public class FriendService implements IFriendService {
         return false;
     }
 
+    @Override
+    public void addMessage(FriendEntity friendEntity, MessagePO messagePO) {
+        synchronized (friendEntity) {
+            migrate(friendEntity);
+
+            var messageId = friendEntity.getInc() + 1;
+            friendEntity.setInc(messageId);
+            messagePO.setId(messageId);
+
+            // 最后一个桶一般都在缓存中，只有新的桶才需要访问数据库
+            var bucketEntity = loadOrCreateBucket(friendEntity, FriendMessageEntity.bucketOf(messageId));
+            bucketEntity.getMessages().add(messagePO);
+            friendMessageEntityCaches.update(bucketEntity);
+            friendEntityCaches.update(friendEntity);
+        }
+    }
+
+    @Override
+    public MessagePO findMessage(FriendEntity friendEntity, long messageId) {
+        synchronized (friendEntity) {
+            var bucketEntity = loadBucket(friendEntity, messageId);
+            return bucketEntity == null ? null : bucketEntity.findMessage(messageId);
+        }
+    }
+
+    @Override
+    public void updateMessage(FriendEntity friendEntity, MessagePO messagePO) {
+        synchronized (friendEntity) {
+            var bucketEntity = loadBucket(friendEntity, messagePO.getId());
+            if (bucketEntity != null) {
+                friendMessageEntityCaches.update(bucketEntity);
+            }
+        }
+    }
+
+    @Override
+    public boolean removeMessage(FriendEntity friendEntity, long messageId) {
+        synchronized (friendEntity) {
+            var bucketEntity = loadBucket(friendEntity, messageId);
+            if (bucketEntity == null) {
+                return false;
+            }
+            var removed = bucketEntity.getMessages().removeIf(it -> it.getId() == messageId);
+            if (removed) {
+                friendMessageEntityCaches.update(bucketEntity);
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public void readMessages(FriendEntity friendEntity, long sendId) {
+        synchronized (friendEntity) {
+            migrate(friendEntity);
+
+            // 每次读消息都会把之前的消息全部标记为已读，所以从最新的消息往前找，遇到已读的消息就可以停止了
+            for (var bucket = FriendMessageEntity.bucketOf(friendEntity.getInc()); bucket >= friendEntity.getBucketStart(); bucket--) {
+                var bucketEntity = friendMessageEntityCaches.load(FriendMessageEntity.bucketId(friendEntity.getId(), bucket));
+                if (StringUtils.isBlank(bucketEntity.getId())) {
+                    continue;
+                }
+
+                var messages = bucketEntity.getMessages();
+                var changed = false;
+                var finished = false;
+                for (var i = messages.size() - 1; i >= 0; i--) {
+                    var message = messages.get(i);
+                    if (message.getSendId() != sendId) {
+                        continue;
+                    }
+                    if (message.isRead()) {
+                        finished = true;
+                        break;
+                    }
+                    message.setRead(true);
+                    changed = true;
+                }
+
+                if (changed) {
+                    friendMessageEntityCaches.update(bucketEntity);
+                }
+                if (finished) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<MessagePO> historyMessages(FriendEntity friendEntity, long lastMessageId, int limit) {
+        // 和添加删除消息使用同一把锁，避免遍历桶中的消息的时候被并发修改
+        synchronized (friendEntity) {
+            migrate(friendEntity);
+
+            var cursor = lastMessageId > 0 ? Math.min(lastMessageId - 1, friendEntity.getInc()) : friendEntity.getInc();
+            if (cursor <= 0 || limit <= 0) {
+                return Collections.emptyList();
+            }
+
+            // 从游标所在的桶开始向前加载，直到取满limit条消息，冷的会话一般只需要加载一个桶
+            var list = new ArrayList<MessagePO>(limit);
+            for (var bucket = FriendMessageEntity.bucketOf(cursor); bucket >= friendEntity.getBucketStart() && list.size() < limit; bucket--) {
+                var bucketEntity = friendMessageEntityCaches.load(FriendMessageEntity.bucketId(friendEntity.getId(), bucket));
+                if (StringUtils.isBlank(bucketEntity.getId())) {
+                    continue;
+                }
+
+                var messages = bucketEntity.getMessages();
+                for (var i = messages.size() - 1; i >= 0 && list.size() < limit; i--) {
+                    var message = messages.get(i);
+                    if (message.getId() <= cursor) {
+                        list.add(message);
+                    }
+                }
+            }
+
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    /**
+     * 需要在synchronized (friendEntity)中调用
+     */
+    private FriendMessageEntity loadBucket(FriendEntity friendEntity, long messageId) {
+        migrate(friendEntity);
+
+        if (messageId <= 0 || messageId > friendEntity.getInc()) {
+            return null;
+        }
+        var bucket = FriendMessageEntity.bucketOf(messageId);
+        if (bucket < friendEntity.getBucketStart()) {
+            return null;
+        }
+        var bucketEntity = friendMessageEntityCaches.load(FriendMessageEntity.bucketId(friendEntity.getId(), bucket));
+        return StringUtils.isBlank(bucketEntity.getId()) ? null : bucketEntity;
+    }
+
+    private FriendMessageEntity loadOrCreateBucket(FriendEntity friendEntity, long bucket) {
+        var bucketId = FriendMessageEntity.bucketId(friendEntity.getId(), bucket);
+        var bucketEntity = friendMessageEntityCaches.load(bucketId);
+        if (StringUtils.isBlank(bucketEntity.getId())) {
+            bucketEntity = FriendMessageEntity.valueOf(friendEntity.getId(), bucket);
+            OrmContext.getAccessor().insert(bucketEntity);
+            friendMessageEntityCaches.invalidate(bucketId);
+            friendMessageEntityCaches.update(bucketEntity);
+        }
+        return bucketEntity;
+    }
+
+    /**
+     * 把旧版本保存在FriendEntity中的聊天记录迁移到FriendMessageEntity中，需要在synchronized (friendEntity)中调用
+     */
+    private void migrate(FriendEntity friendEntity) {
+        if (friendEntity.getBucketStart() >= 0) {
+            return;
+        }
+
+        var legacyMessages = friendEntity.getMessages();
+        if (CollectionUtils.isEmpty(legacyMessages)) {
+            friendEntity.setBucketStart(FriendMessageEntity.bucketOf(friendEntity.getInc() + 1));
+        } else {
+            var bucketMap = new TreeMap<Long, List<MessagePO>>();
+            for (var message : legacyMessages) {
+                bucketMap.computeIfAbsent(FriendMessageEntity.bucketOf(message.getId()), it -> new ArrayList<>()).add(message);
+            }
+
+            for (var entry : bucketMap.entrySet()) {
+                var bucketEntity = loadOrCreateBucket(friendEntity, entry.getKey());
+                // 迁移到一半的时候服务器可能挂了，已经迁移过的消息不需要重复添加
+                var messages = new ArrayList<>(bucketEntity.getMessages());
+                for (var message : entry.getValue()) {
+                    if (bucketEntity.findMessage(message.getId()) == null) {
+                        messages.add(message);
+                    }
+                }
+                messages.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+                bucketEntity.setMessages(messages);
+                friendMessageEntityCaches.update(bucketEntity);
+            }
+            friendEntity.setBucketStart(bucketMap.firstKey());
+        }
+
+        friendEntity.setMessages(new LinkedList<>());
+        friendEntityCaches.update(friendEntity);
+    }
+
 }
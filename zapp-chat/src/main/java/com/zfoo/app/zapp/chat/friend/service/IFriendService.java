@@ -13,6 +13,11 @@
 
 package com.zfoo.app.zapp.chat.friend.service;
 
+import com.zfoo.app.zapp.common.entity.common.MessagePO;
+import com.zfoo.app.zapp.common.entity.friend.FriendEntity;
+
+import java.util.List;
+
 /**
  * @author jaysunxiao
  * @version 1.0
@@ -29,4 +34,29 @@ public interface IFriendService {
      */
     boolean connected(long userId, long targetId);
 
+
+    /**
+     * 给消息分配id，并追加到最后一个消息桶中
+     */
+    void addMessage(FriendEntity friendEntity, MessagePO messagePO);
+
+    MessagePO findMessage(FriendEntity friendEntity, long messageId);
+
+    /**
+     * 修改了findMessage返回的消息之后，需要调用这个方法持久化
+     */
+    void updateMessage(FriendEntity friendEntity, MessagePO messagePO);
+
+    boolean removeMessage(FriendEntity friendEntity, long messageId);
+
+    /**
+     * 把sendId发送的消息标记为已读
+     */
+    void readMessages(FriendEntity friendEntity, long sendId);
+
+    /**
+     * id小于lastMessageId的最新的limit条消息，lastMessageId小于等于0表示从最新的消息开始，按照id从小到大排列
+     */
+    List<MessagePO> historyMessages(FriendEntity friendEntity, long lastMessageId, int limit);
+
 }
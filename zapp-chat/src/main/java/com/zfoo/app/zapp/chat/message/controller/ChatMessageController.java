@@ -40,9 +40,7 @@ import com.zfoo.util.security.IdUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @author jaysunxiao
@@ -142,10 +140,8 @@ public class ChatMessageController {
 
         var id = IdUtils.generateStringId(userId, friendId);
         var friendEntity = friendEntityCaches.load(id);
-        var removed = friendEntity.getMessages().removeIf(it -> it.getId() == messageId);
+        var removed = friendService.removeMessage(friendEntity, messageId);
         if (removed) {
-            friendEntityCaches.update(friendEntity);
-
             var deleteFriendMessageNotice = DeleteFriendMessageNotice.valueOf(userId, friendId, messageId);
             NetContext.getConsumer().send(DeleteFriendMessagePush.valueOf(List.of(userId, friendId), deleteFriendMessageNotice), IdUtils.generateStringId(userId, friendId));
             NetContext.getRouter().send(session, Message.valueOf(cm, CodeEnum.OK_QUIETLY.getCode()), gatewayAttachment);
@@ -185,13 +181,12 @@ public class ChatMessageController {
 
         var id = IdUtils.generateStringId(userId, friendId);
         var friendEntity = friendEntityCaches.load(id);
-        var messageOptional = friendEntity.getMessages().stream().filter(it -> it.getId() == messageId).findFirst();
-        if (messageOptional.isEmpty()) {
+        var messagePO = friendService.findMessage(friendEntity, messageId);
+        if (messagePO == null) {
             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_ERROR_TWO.getCode(), null), gatewayAttachment);
             return;
         }
 
-        var messagePO = messageOptional.get();
         // 只能编辑文本消息
         if (MessageEnum.getMessageEnumByType(messagePO.getType()) != MessageEnum.TEXT) {
             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_ERROR_THREE.getCode(), null), gatewayAttachment);
@@ -203,7 +198,7 @@ public class ChatMessageController {
             return;
         }
         messagePO.setMessage(chatMessage);
-        friendEntityCaches.update(friendEntity);
+        friendService.updateMessage(friendEntity, messagePO);
 
         var editFriendMessageNotice = EditFriendMessageNotice.valueOf(userId, friendId, messageId, chatMessage);
         NetContext.getConsumer().send(EditFriendMessagePush.valueOf(List.of(userId, friendId), editFriendMessageNotice), IdUtils.generateStringId(userId, friendId));
@@ -232,11 +227,7 @@ public class ChatMessageController {
 
         var id = IdUtils.generateStringId(userId, friendId);
         var friendEntity = friendEntityCaches.load(id);
-        friendEntity.getMessages().stream().forEach(it -> {
-            if (it.getSendId() == friendId) {
-                it.setRead(true);
-            }
-        });
+        friendService.readMessages(friendEntity, friendId);
         var now = TimeUtils.now();
         friendEntity.readTime(userId, now);
 
@@ -271,12 +262,7 @@ public class ChatMessageController {
 
         var uidA = friendEntity.getUidA();
         var uidB = friendEntity.getUidB();
-        var chatMessages = friendEntity.getMessages();
-
-        var list = lastMessageId > 0
-                ? chatMessages.stream().filter(message -> message.getId() < lastMessageId).sorted((a, b) -> Long.compare(b.getId(), a.getId())).limit(AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE).collect(Collectors.toList())
-                : chatMessages.stream().sorted((a, b) -> Long.compare(b.getId(), a.getId())).limit(AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE).collect(Collectors.toList());
-        Collections.reverse(list);
+        var list = friendService.historyMessages(friendEntity, lastMessageId, AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE);
 
         NetContext.getRouter().send(session, FriendHistoryMessageResponse.valueOf(uidA, uidB, chatMessageService.toChatMessages(list)), gatewayAttachment);
     }
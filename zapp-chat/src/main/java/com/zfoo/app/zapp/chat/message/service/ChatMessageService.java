@@ -13,6 +13,7 @@
 
 package com.zfoo.app.zapp.chat.message.service;
 
+import com.zfoo.app.zapp.chat.friend.service.IFriendService;
 import com.zfoo.app.zapp.common.constant.OssPolicyConstant;
 import com.zfoo.app.zapp.common.entity.common.MessageEnum;
 import com.zfoo.app.zapp.common.entity.common.MessagePO;
@@ -31,6 +32,7 @@ import com.zfoo.protocol.model.Pair;
 import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.scheduler.util.TimeUtils;
 import com.zfoo.util.security.IdUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -69,6 +71,9 @@ public class ChatMessageService implements IChatMessageService {
     @EntityCachesInjection
     private IEntityCaches<String, FriendEntity> friendEntityCaches;
 
+    @Autowired
+    private IFriendService friendService;
+
 
     @PostConstruct
     public void init() throws IOException {
@@ -84,9 +89,8 @@ public class ChatMessageService implements IChatMessageService {
         }
         var now = TimeUtils.now();
         var messagePO = MessagePO.valueOf(type.getType(), sendId, message, now);
-        friendEntity.addMessage(messagePO);
         friendEntity.setRefreshTime(now);
-        friendEntityCaches.update(friendEntity);
+        friendService.addMessage(friendEntity, messagePO);
 
         var friendMessageNotice = FriendMessageNotice.valueOf(friendEntity.getUidA(), friendEntity.getUidB(), toChatMessages(List.of(messagePO)).get(0));
 
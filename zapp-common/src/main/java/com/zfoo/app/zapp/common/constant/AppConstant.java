@@ -164,6 +164,15 @@ public class AppConstant {
     public static final int SEARCH_PERSON_PAGE_SIZE = 2;
     public static final int SEARCH_ITEM_PAGE_SIZE = 2;
 
+    // 热搜展示的数量
+    public static final int HOT_SEARCH_SIZE = 10;
+    // 每个feed服务器在内存中统计的热搜候选词的数量
+    public static final int HOT_SEARCH_CAPACITY = 200;
+    // 每一次搜索增加的热度，放大之后每天衰减的时候可以保留小数部分的精度
+    public static final long HOT_SEARCH_SCORE = 100;
+    // 热搜每天衰减的比例
+    public static final double HOT_SEARCH_DECAY = 0.8D;
+
 
     /**
      * -------------------------------------------- 聊天相关 --------------------------------------------
@@ -176,10 +185,10 @@ public class AppConstant {
     public static final int BLACKLIST_LIMIT = 200;
     // 好友申请列表的显示上限，之推给客户端最新的数量的好友申请
     public static final int FRIEND_APPLY_LIMIT = 200;
-    // 好友聊天保存聊天数据的最大数量
-    public static final int FRIEND_CHAT_MESSAGE_MAX_SIZE = 200;
     // 好友历史记录的消息数量
     public static final int FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE = 20;
+    // 好友聊天消息分桶保存，每个桶保存的消息数量
+    public static final int FRIEND_MESSAGE_BUCKET_SIZE = 50;
 
 
     /**
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.common;
+
+import com.zfoo.app.zapp.common.constant.AppConstant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 固定容量的消息环形缓冲区，消息按照id从小到大排列，满了之后新的消息覆盖最旧的消息
+ * <p>
+ * 追加消息O(1)，按照id查找和范围读取O(log n)；数据库中依然保存为MessagePO数组，通过MessageRingCodecProvider编解码
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-21 10:26
+ */
+public class MessageRing {
+
+    private final MessagePO[] buffer;
+
+    /**
+     * 最旧的消息在buffer中的位置
+     */
+    private int head;
+
+    private int size;
+
+    public MessageRing() {
+        this(AppConstant.GROUP_CHAT_MESSAGE_MAX_SIZE);
+    }
+
+    public MessageRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.buffer = new MessagePO[capacity];
+    }
+
+    public synchronized void add(MessagePO message) {
+        // 消息id是递增的，正常情况下直接追加在末尾
+        if (size == 0 || get(size - 1).getId() < message.getId()) {
+            if (size == buffer.length) {
+                buffer[head] = message;
+                head = (head + 1) % buffer.length;
+            } else {
+                buffer[(head + size) % buffer.length] = message;
+                size++;
+            }
+            return;
+        }
+
+        var index = lowerBound(message.getId());
+        if (index < size && get(index).getId() == message.getId()) {
+            set(index, message);
+            return;
+        }
+
+        // 乱序的消息，比最旧的消息还旧并且已经满了的时候直接丢弃
+        if (size == buffer.length) {
+            if (index == 0) {
+                return;
+            }
+            head = (head + 1) % buffer.length;
+            size--;
+            index--;
+        }
+        for (var i = size; i > index; i--) {
+            set(i, get(i - 1));
+        }
+        set(index, message);
+        size++;
+    }
+
+    public synchronized MessagePO find(long id) {
+        var index = lowerBound(id);
+        if (index < size && get(index).getId() == id) {
+            return get(index);
+        }
+        return null;
+    }
+
+    public synchronized boolean remove(long id) {
+        var index = lowerBound(id);
+        if (index >= size || get(index).getId() != id) {
+            return false;
+        }
+        for (var i = index; i < size - 1; i++) {
+            set(i, get(i + 1));
+        }
+        set(size - 1, null);
+        size--;
+        return true;
+    }
+
+    /**
+     * id小于指定id的最新的limit条消息，按照id从小到大排列
+     */
+    public synchronized List<MessagePO> before(long id, int limit) {
+        var end = lowerBound(id);
+        return subList(Math.max(0, end - limit), end);
+    }
+
+    /**
+     * id大于指定id的最旧的limit条消息，按照id从小到大排列
+     */
+    public synchronized List<MessagePO> after(long id, int limit) {
+        var start = lowerBound(id + 1);
+        return subList(start, Math.min(size, start + limit));
+    }
+
+    /**
+     * 最新的limit条消息，按照id从小到大排列
+     */
+    public synchronized List<MessagePO> latest(int limit) {
+        return subList(Math.max(0, size - limit), size);
+    }
+
+    public synchronized List<MessagePO> toList() {
+        return subList(0, size);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    private MessagePO get(int index) {
+        return buffer[(head + index) % buffer.length];
+    }
+
+    private void set(int index, MessagePO message) {
+        buffer[(head + index) % buffer.length] = message;
+    }
+
+    /**
+     * 第一个id大于等于指定id的消息的位置
+     */
+    private int lowerBound(long id) {
+        var low = 0;
+        var high = size;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (get(mid).getId() < id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<MessagePO> subList(int start, int end) {
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        var list = new ArrayList<MessagePO>(end - start);
+        for (var i = start; i < end; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+}
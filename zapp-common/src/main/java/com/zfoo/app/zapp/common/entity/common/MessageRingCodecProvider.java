@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.common;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * MessageRing的编解码，在数据库中保存为按照id从小到大排列的MessagePO数组，和之前的List<MessagePO>格式一致
+ * <p>
+ * 通过META-INF/services注册到orm的CodecRegistry中
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-21 10:26
+ */
+public class MessageRingCodecProvider implements CodecProvider {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == MessageRing.class) {
+            return (Codec<T>) new MessageRingCodec(registry.get(MessagePO.class));
+        }
+        return null;
+    }
+
+    private static class MessageRingCodec implements Codec<MessageRing> {
+
+        private final Codec<MessagePO> messageCodec;
+
+        private MessageRingCodec(Codec<MessagePO> messageCodec) {
+            this.messageCodec = messageCodec;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, MessageRing value, EncoderContext encoderContext) {
+            writer.writeStartArray();
+            for (var message : value.toList()) {
+                encoderContext.encodeWithChildContext(messageCodec, writer, message);
+            }
+            writer.writeEndArray();
+        }
+
+        @Override
+        public MessageRing decode(BsonReader reader, DecoderContext decoderContext) {
+            var ring = new MessageRing();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                ring.add(decoderContext.decodeWithChildContext(messageCodec, reader));
+            }
+            reader.readEndArray();
+            return ring;
+        }
+
+        @Override
+        public Class<MessageRing> getEncoderClass() {
+            return MessageRing.class;
+        }
+    }
+
+}
@@ -13,7 +13,6 @@
 
 package com.zfoo.app.zapp.common.entity.feed;
 
-import com.zfoo.net.packet.common.PairLong;
 import com.zfoo.orm.model.anno.EntityCache;
 import com.zfoo.orm.model.anno.Id;
 import com.zfoo.orm.model.anno.Persister;
@@ -41,12 +40,12 @@ public class FeedPersonEntity implements IEntity<Long> {
     /**
      * 喜爱最多的时间片id
      */
-    private List<PairLong> topLoveLinks = new CopyOnWriteArrayList<>();
+    private LoveRanking topLoveLinks = new LoveRanking();
 
     /**
      * 喜爱的趋势
      */
-    private List<PairLong> trendLoveLinks = new CopyOnWriteArrayList<>();
+    private LoveRanking trendLoveLinks = new LoveRanking();
 
     /**
      * 新的时间片的id
@@ -95,19 +94,19 @@ public class FeedPersonEntity implements IEntity<Long> {
         this.vs = vs;
     }
 
-    public List<PairLong> getTopLoveLinks() {
+    public LoveRanking getTopLoveLinks() {
         return topLoveLinks;
     }
 
-    public void setTopLoveLinks(List<PairLong> topLoveLinks) {
+    public void setTopLoveLinks(LoveRanking topLoveLinks) {
         this.topLoveLinks = topLoveLinks;
     }
 
-    public List<PairLong> getTrendLoveLinks() {
+    public LoveRanking getTrendLoveLinks() {
         return trendLoveLinks;
     }
 
-    public void setTrendLoveLinks(List<PairLong> trendLoveLinks) {
+    public void setTrendLoveLinks(LoveRanking trendLoveLinks) {
         this.trendLoveLinks = trendLoveLinks;
     }
 
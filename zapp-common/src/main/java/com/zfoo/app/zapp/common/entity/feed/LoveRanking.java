@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.feed;
+
+import com.zfoo.net.packet.common.PairLong;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 喜爱排行榜，只保留value最大的capacity个时间片，key为时间片id，value为喜爱数或者趋势分数
+ * <p>
+ * 内部是一个带索引的小顶堆，堆顶是排行榜中value最小的时间片，更新一个时间片的分数是O(log k)；
+ * 数据库中依然保存为按照value从小到大排列的PairLong数组，通过LoveRankingCodecProvider编解码
+ * <p>
+ * value相同的时候按照时间片id从小到大排列，排行榜的顺序是确定的，和插入的顺序无关
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 16:40
+ */
+public class LoveRanking {
+
+    /**
+     * value从小到大，value相同的时候时间片id从小到大
+     */
+    private static final Comparator<PairLong> RANKING_COMPARATOR = PairLong.NATURAL_VALUE_COMPARATOR.thenComparingLong(PairLong::getKey);
+
+    private final List<PairLong> heap = new ArrayList<>();
+
+    /**
+     * 时间片id在heap中的位置
+     */
+    private final Map<Long, Integer> indexMap = new HashMap<>();
+
+    /**
+     * 按照value从小到大排列的时间片id的缓存，排行榜发生变化的时候置空，读多写少的场景下不需要每次都重新排序
+     */
+    private List<Long> sortedKeys;
+
+    /**
+     * 更新时间片的分数，不在排行榜中的时间片只有在排行榜没满或者大于等于最小的分数的时候才会加入
+     *
+     * @return 排行榜是否发生了变化
+     */
+    public synchronized boolean update(long key, long value, int capacity) {
+        var index = indexMap.get(key);
+        if (index != null) {
+            var pair = heap.get(index);
+            var oldValue = pair.getValue();
+            if (value == oldValue) {
+                return false;
+            }
+            pair.setValue(value);
+            sortedKeys = null;
+            if (value < oldValue) {
+                siftUp(index);
+            } else {
+                siftDown(index);
+            }
+            return true;
+        }
+
+        // 排行榜的大小配置变小的时候，淘汰多余的时间片
+        while (heap.size() > capacity && !heap.isEmpty()) {
+            removeAt(0);
+        }
+
+        if (heap.size() < capacity) {
+            sortedKeys = null;
+            heap.add(PairLong.valueOf(key, value));
+            indexMap.put(key, heap.size() - 1);
+            siftUp(heap.size() - 1);
+            return true;
+        }
+
+        if (capacity > 0 && heap.get(0).getValue() <= value) {
+            sortedKeys = null;
+            indexMap.remove(heap.get(0).getKey());
+            heap.set(0, PairLong.valueOf(key, value));
+            indexMap.put(key, 0);
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean remove(long key) {
+        var index = indexMap.get(key);
+        if (index == null) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * 按照value从小到大排列的排行榜
+     */
+    public synchronized List<PairLong> toList() {
+        var list = new ArrayList<PairLong>(heap.size());
+        for (var pair : heap) {
+            list.add(PairLong.valueOf(pair.getKey(), pair.getValue()));
+        }
+        list.sort(RANKING_COMPARATOR);
+        return list;
+    }
+
+    /**
+     * 按照value从小到大排列的时间片id，返回的是只读的缓存
+     */
+    public synchronized List<Long> keys() {
+        if (sortedKeys == null) {
+            var list = toList();
+            var keys = new ArrayList<Long>(list.size());
+            for (var pair : list) {
+                keys.add(pair.getKey());
+            }
+            sortedKeys = Collections.unmodifiableList(keys);
+        }
+        return sortedKeys;
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    private void removeAt(int index) {
+        sortedKeys = null;
+        var last = heap.size() - 1;
+        indexMap.remove(heap.get(index).getKey());
+        if (index == last) {
+            heap.remove(last);
+            return;
+        }
+
+        var moved = heap.remove(last);
+        heap.set(index, moved);
+        indexMap.put(moved.getKey(), index);
+        siftDown(index);
+        siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        var pair = heap.get(index);
+        while (index > 0) {
+            var parentIndex = (index - 1) >>> 1;
+            var parent = heap.get(parentIndex);
+            if (RANKING_COMPARATOR.compare(parent, pair) <= 0) {
+                break;
+            }
+            heap.set(index, parent);
+            indexMap.put(parent.getKey(), index);
+            index = parentIndex;
+        }
+        heap.set(index, pair);
+        indexMap.put(pair.getKey(), index);
+    }
+
+    private void siftDown(int index) {
+        var size = heap.size();
+        var pair = heap.get(index);
+        var half = size >>> 1;
+        while (index < half) {
+            var childIndex = (index << 1) + 1;
+            var child = heap.get(childIndex);
+            var rightIndex = childIndex + 1;
+            if (rightIndex < size && RANKING_COMPARATOR.compare(heap.get(rightIndex), child) < 0) {
+                childIndex = rightIndex;
+                child = heap.get(rightIndex);
+            }
+            if (RANKING_COMPARATOR.compare(pair, child) <= 0) {
+                break;
+            }
+            heap.set(index, child);
+            indexMap.put(child.getKey(), index);
+            index = childIndex;
+        }
+        heap.set(index, pair);
+        indexMap.put(pair.getKey(), index);
+    }
+
+}
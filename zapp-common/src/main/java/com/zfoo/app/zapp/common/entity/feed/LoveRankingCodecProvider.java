@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.feed;
+
+import com.zfoo.net.packet.common.PairLong;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * LoveRanking的编解码，在数据库中保存为按照value从小到大排列的PairLong数组，和之前的List<PairLong>格式一致
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 16:40
+ */
+public class LoveRankingCodecProvider implements CodecProvider {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == LoveRanking.class) {
+            return (Codec<T>) new LoveRankingCodec(registry.get(PairLong.class));
+        }
+        return null;
+    }
+
+    private static class LoveRankingCodec implements Codec<LoveRanking> {
+
+        private final Codec<PairLong> pairCodec;
+
+        private LoveRankingCodec(Codec<PairLong> pairCodec) {
+            this.pairCodec = pairCodec;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, LoveRanking value, EncoderContext encoderContext) {
+            writer.writeStartArray();
+            for (var pair : value.toList()) {
+                encoderContext.encodeWithChildContext(pairCodec, writer, pair);
+            }
+            writer.writeEndArray();
+        }
+
+        @Override
+        public LoveRanking decode(BsonReader reader, DecoderContext decoderContext) {
+            var ranking = new LoveRanking();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                var pair = decoderContext.decodeWithChildContext(pairCodec, reader);
+                ranking.update(pair.getKey(), pair.getValue(), Integer.MAX_VALUE);
+            }
+            reader.readEndArray();
+            return ranking;
+        }
+
+        @Override
+        public Class<LoveRanking> getEncoderClass() {
+            return LoveRanking.class;
+        }
+    }
+
+}
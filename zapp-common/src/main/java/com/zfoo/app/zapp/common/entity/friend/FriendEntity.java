@@ -13,7 +13,6 @@
 
 package com.zfoo.app.zapp.common.entity.friend;
 
-import com.zfoo.app.zapp.common.constant.AppConstant;
 import com.zfoo.app.zapp.common.entity.common.MessagePO;
 import com.zfoo.orm.model.anno.EntityCache;
 import com.zfoo.orm.model.anno.Id;
@@ -79,8 +78,19 @@ public class FriendEntity implements IEntity<String> {
 
     private long refreshTime;
 
+    /**
+     * 最新的一条消息的id，消息保存在FriendMessageEntity中
+     */
     private long inc;
 
+    /**
+     * 最旧的消息所在的桶，-1表示还没有把旧的messages迁移到FriendMessageEntity中
+     */
+    private long bucketStart = -1;
+
+    /**
+     * 旧版本直接把聊天记录保存在好友的实体中，只用来迁移数据，迁移之后为空
+     */
     private List<MessagePO> messages = new LinkedList<>();
 
     public static FriendEntity valueOf(long aUserId, long bUserId) {
@@ -89,18 +99,10 @@ public class FriendEntity implements IEntity<String> {
         entity.uidA = Math.min(aUserId, bUserId);
         entity.uidB = Math.max(aUserId, bUserId);
         entity.connected = false;
+        entity.bucketStart = 0;
         return entity;
     }
 
-    public void addMessage(MessagePO messagePO) {
-        messagePO.setId(++inc);
-        messages.add(messagePO);
-
-        if (messages.size() > AppConstant.FRIEND_CHAT_MESSAGE_MAX_SIZE) {
-            messages.remove(0);
-        }
-    }
-
     /**
      * userId是否将对方设置为了黑名单
      */
@@ -247,6 +249,14 @@ public class FriendEntity implements IEntity<String> {
         this.inc = inc;
     }
 
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
     public List<MessagePO> getMessages() {
         return messages;
     }
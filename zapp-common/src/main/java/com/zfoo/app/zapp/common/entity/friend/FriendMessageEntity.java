@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.friend;
+
+import com.zfoo.app.zapp.common.constant.AppConstant;
+import com.zfoo.app.zapp.common.entity.common.MessagePO;
+import com.zfoo.orm.model.anno.EntityCache;
+import com.zfoo.orm.model.anno.Id;
+import com.zfoo.orm.model.anno.Persister;
+import com.zfoo.orm.model.entity.IEntity;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 好友聊天消息的分桶，每个桶按照消息id保存固定数量的消息，id为[(bucket * size) + 1, (bucket + 1) * size]
+ * <p>
+ * 新消息只会追加到最后一个桶中，使用diff持久化的时候只会$push新增的消息，不会重写整个聊天记录
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-22 14:08
+ */
+@EntityCache(cacheStrategy = "tenThousand", persister = @Persister(value = "time30s", diff = true))
+public class FriendMessageEntity implements IEntity<String> {
+
+    @Id
+    private String id;
+
+    private long vs;
+
+    /**
+     * FriendEntity的id
+     */
+    private String friendId;
+
+    private long bucket;
+
+    /**
+     * 按照id从小到大排列，持久化线程会同时遍历这个列表，所以使用CopyOnWriteArrayList
+     */
+    private List<MessagePO> messages = new CopyOnWriteArrayList<>();
+
+    public static FriendMessageEntity valueOf(String friendId, long bucket) {
+        var entity = new FriendMessageEntity();
+        entity.id = bucketId(friendId, bucket);
+        entity.friendId = friendId;
+        entity.bucket = bucket;
+        return entity;
+    }
+
+    public static String bucketId(String friendId, long bucket) {
+        return friendId + "_" + bucket;
+    }
+
+    /**
+     * 消息id从1开始
+     */
+    public static long bucketOf(long messageId) {
+        return (messageId - 1) / AppConstant.FRIEND_MESSAGE_BUCKET_SIZE;
+    }
+
+    public MessagePO findMessage(long messageId) {
+        for (var message : messages) {
+            if (message.getId() == messageId) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public long gvs() {
+        return vs;
+    }
+
+    @Override
+    public void svs(long vs) {
+        this.vs = vs;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getVs() {
+        return vs;
+    }
+
+    public void setVs(long vs) {
+        this.vs = vs;
+    }
+
+    public String getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(String friendId) {
+        this.friendId = friendId;
+    }
+
+    public long getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(long bucket) {
+        this.bucket = bucket;
+    }
+
+    public List<MessagePO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessagePO> messages) {
+        this.messages = new CopyOnWriteArrayList<>(messages);
+    }
+}
@@ -13,8 +13,8 @@
 
 package com.zfoo.app.zapp.common.entity.group;
 
-import com.zfoo.app.zapp.common.constant.AppConstant;
 import com.zfoo.app.zapp.common.entity.common.MessagePO;
+import com.zfoo.app.zapp.common.entity.common.MessageRing;
 import com.zfoo.orm.model.anno.EntityCache;
 import com.zfoo.orm.model.anno.Id;
 import com.zfoo.orm.model.anno.Persister;
@@ -38,17 +38,16 @@ public class ChannelEntity implements IEntity<Long> {
 
     private long inc;
 
-    private List<MessagePO> messages = new CopyOnWriteArrayList<>();
+    /**
+     * 最多保存GROUP_CHAT_MESSAGE_MAX_SIZE条消息，满了之后覆盖最旧的消息
+     */
+    private MessageRing messages = new MessageRing();
     private List<MessagePO> pins = new CopyOnWriteArrayList<>();
 
 
     public void addMessage(MessagePO messagePO) {
         messagePO.setId(++inc);
         messages.add(messagePO);
-
-        if (messages.size() > AppConstant.GROUP_CHAT_MESSAGE_MAX_SIZE) {
-            messages.remove(0);
-        }
     }
 
     @Override
@@ -82,11 +81,11 @@ public class ChannelEntity implements IEntity<Long> {
         this.vs = vs;
     }
 
-    public List<MessagePO> getMessages() {
+    public MessageRing getMessages() {
         return messages;
     }
 
-    public void setMessages(List<MessagePO> messages) {
+    public void setMessages(MessageRing messages) {
         this.messages = messages;
     }
 
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.search;
+
+import com.zfoo.orm.model.anno.EntityCache;
+import com.zfoo.orm.model.anno.Id;
+import com.zfoo.orm.model.anno.Persister;
+import com.zfoo.orm.model.entity.IEntity;
+import com.zfoo.scheduler.util.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 每个feed服务器统计的热搜，搜索词通过一致性hash分布在不同的feed服务器上，所以每个feed服务器保存一份自己的热搜
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-24 11:05
+ */
+@EntityCache(cacheStrategy = "tenThousand", persister = @Persister("time30s"))
+public class HotSearchEntity implements IEntity<String> {
+
+    /**
+     * 超过这个时间没有刷新的热搜，说明对应的feed服务器已经下线了
+     */
+    public static final long EXPIRE_MILLIS = TimeUtils.MILLIS_PER_DAY;
+
+    /**
+     * feed服务器的地址
+     */
+    @Id
+    private String id;
+
+    /**
+     * 最后一次保存热搜的时间
+     */
+    private long refreshTime;
+
+    /**
+     * 最后一次热度衰减的时间
+     */
+    private long decayTime;
+
+    /**
+     * 按照热度从大到小排列
+     */
+    private List<HotSearchPO> hots = new ArrayList<>();
+
+    public static HotSearchEntity valueOf(String id) {
+        var entity = new HotSearchEntity();
+        entity.id = id;
+        return entity;
+    }
+
+    /**
+     * 合并所有feed服务器的热搜，同一个搜索词的热度相加
+     *
+     * @return 按照热度从大到小排列的limit个热搜
+     */
+    public static List<HotSearchPO> merge(List<HotSearchEntity> entities, int limit) {
+        var now = TimeUtils.now();
+        var scoreMap = new HashMap<String, Long>();
+        for (var entity : entities) {
+            if (now - entity.getRefreshTime() > EXPIRE_MILLIS) {
+                continue;
+            }
+            for (var hot : entity.getHots()) {
+                scoreMap.merge(hot.getQuery(), hot.getScore(), Long::sum);
+            }
+        }
+
+        var result = new ArrayList<HotSearchPO>(scoreMap.size());
+        scoreMap.forEach((query, score) -> result.add(HotSearchPO.valueOf(query, score)));
+        result.sort((a, b) -> Long.compare(b.getScore(), a.getScore()));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getRefreshTime() {
+        return refreshTime;
+    }
+
+    public void setRefreshTime(long refreshTime) {
+        this.refreshTime = refreshTime;
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    public void setDecayTime(long decayTime) {
+        this.decayTime = decayTime;
+    }
+
+    public List<HotSearchPO> getHots() {
+        return hots;
+    }
+
+    public void setHots(List<HotSearchPO> hots) {
+        this.hots = hots;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.search;
+
+/**
+ * 热搜词和热度，热度每次搜索增加100，每天衰减为原来的80%
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-24 11:05
+ */
+public class HotSearchPO {
+
+    private String query;
+
+    private long score;
+
+    public static HotSearchPO valueOf(String query, long score) {
+        var po = new HotSearchPO();
+        po.query = query;
+        po.score = score;
+        return po;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public void setScore(long score) {
+        this.score = score;
+    }
+}
@@ -29,7 +29,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @version 1.0
  * @since 2019-11-07 21:22
  */
-@EntityCache(cacheStrategy = "tenThousand", persister = @Persister("time30s"))
+@EntityCache(cacheStrategy = "tenThousand", persister = @Persister(value = "time30s", diff = true))
 public class UserEntity implements IEntity<Long> {
 
     @Id
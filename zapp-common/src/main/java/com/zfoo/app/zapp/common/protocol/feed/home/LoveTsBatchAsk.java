@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.protocol.feed.home;
+
+import com.zfoo.app.zapp.common.protocol.feed.item.LoveTsWithItemAsk;
+import com.zfoo.app.zapp.common.protocol.feed.location.LoveTsWithLocationAsk;
+import com.zfoo.app.zapp.common.protocol.feed.person.LoveTsWithPersonAsk;
+import com.zfoo.protocol.IPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并之后的点赞数据，一个feed服务器在一个聚合窗口内只会收到一个这样的包
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 10:17
+ */
+public class LoveTsBatchAsk implements IPacket {
+
+    public static final transient short PROTOCOL_ID = 4032;
+
+    private List<LoveTsAsk> homes = new ArrayList<>();
+
+    private List<LoveTsWithLocationAsk> locations = new ArrayList<>();
+
+    private List<LoveTsWithItemAsk> items = new ArrayList<>();
+
+    private List<LoveTsWithPersonAsk> persons = new ArrayList<>();
+
+
+    public static LoveTsBatchAsk valueOf() {
+        return new LoveTsBatchAsk();
+    }
+
+    @Override
+    public short protocolId() {
+        return PROTOCOL_ID;
+    }
+
+    public List<LoveTsAsk> getHomes() {
+        return homes;
+    }
+
+    public void setHomes(List<LoveTsAsk> homes) {
+        this.homes = homes;
+    }
+
+    public List<LoveTsWithLocationAsk> getLocations() {
+        return locations;
+    }
+
+    public void setLocations(List<LoveTsWithLocationAsk> locations) {
+        this.locations = locations;
+    }
+
+    public List<LoveTsWithItemAsk> getItems() {
+        return items;
+    }
+
+    public void setItems(List<LoveTsWithItemAsk> items) {
+        this.items = items;
+    }
+
+    public List<LoveTsWithPersonAsk> getPersons() {
+        return persons;
+    }
+
+    public void setPersons(List<LoveTsWithPersonAsk> persons) {
+        this.persons = persons;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.common.entity.feed;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 16:40
+ */
+public class LoveRankingTest {
+
+    @Test
+    public void insertTest() {
+        var ranking = new LoveRanking();
+        Assert.assertTrue(ranking.update(1L, 30L, 3));
+        Assert.assertTrue(ranking.update(2L, 10L, 3));
+        Assert.assertTrue(ranking.update(3L, 20L, 3));
+        Assert.assertEquals(3, ranking.size());
+        Assert.assertEquals(List.of(2L, 3L, 1L), ranking.keys());
+    }
+
+    @Test
+    public void updateTest() {
+        var ranking = new LoveRanking();
+        ranking.update(1L, 30L, 3);
+        ranking.update(2L, 10L, 3);
+        ranking.update(3L, 20L, 3);
+
+        // 分数没有变化的时候排行榜不变
+        Assert.assertFalse(ranking.update(3L, 20L, 3));
+
+        Assert.assertTrue(ranking.update(2L, 40L, 3));
+        Assert.assertEquals(List.of(3L, 1L, 2L), ranking.keys());
+
+        Assert.assertTrue(ranking.update(1L, 5L, 3));
+        Assert.assertEquals(List.of(1L, 3L, 2L), ranking.keys());
+        Assert.assertEquals(3, ranking.size());
+    }
+
+    @Test
+    public void evictTest() {
+        var ranking = new LoveRanking();
+        ranking.update(1L, 30L, 3);
+        ranking.update(2L, 10L, 3);
+        ranking.update(3L, 20L, 3);
+
+        // 比最小的分数还小，不能进入排行榜
+        Assert.assertFalse(ranking.update(4L, 5L, 3));
+        Assert.assertEquals(List.of(2L, 3L, 1L), ranking.keys());
+
+        // 淘汰最小的分数
+        Assert.assertTrue(ranking.update(5L, 25L, 3));
+        Assert.assertEquals(List.of(3L, 5L, 1L), ranking.keys());
+
+        // 排行榜的大小配置变小的时候，淘汰多余的时间片
+        Assert.assertTrue(ranking.update(6L, 50L, 2));
+        Assert.assertEquals(List.of(1L, 6L), ranking.keys());
+
+        Assert.assertTrue(ranking.remove(1L));
+        Assert.assertFalse(ranking.remove(1L));
+        Assert.assertEquals(List.of(6L), ranking.keys());
+    }
+
+    @Test
+    public void tieTest() {
+        // value相同的时候按照时间片id从小到大排列，和插入的顺序无关
+        var ranking = new LoveRanking();
+        ranking.update(3L, 10L, 4);
+        ranking.update(1L, 10L, 4);
+        ranking.update(4L, 20L, 4);
+        ranking.update(2L, 10L, 4);
+        Assert.assertEquals(List.of(1L, 2L, 3L, 4L), ranking.keys());
+
+        var reversedRanking = new LoveRanking();
+        reversedRanking.update(2L, 10L, 4);
+        reversedRanking.update(4L, 20L, 4);
+        reversedRanking.update(1L, 10L, 4);
+        reversedRanking.update(3L, 10L, 4);
+        Assert.assertEquals(ranking.keys(), reversedRanking.keys());
+
+        // 更新分数之后和已有的分数相同，依然按照时间片id排列
+        ranking.update(4L, 10L, 4);
+        Assert.assertEquals(List.of(1L, 2L, 3L, 4L), ranking.keys());
+        ranking.update(1L, 20L, 4);
+        Assert.assertEquals(List.of(2L, 3L, 4L, 1L), ranking.keys());
+
+        // 排行榜满了的时候，淘汰value最小并且时间片id最小的
+        Assert.assertTrue(ranking.update(5L, 10L, 4));
+        Assert.assertEquals(List.of(3L, 4L, 5L, 1L), ranking.keys());
+    }
+
+    @Test
+    public void tieOrderTest() {
+        var capacity = 50;
+        var random = new Random(11);
+        var ranking = new LoveRanking();
+        var scoreMap = new HashMap<Long, Long>();
+        // 分数的范围很小，会有大量相同的分数
+        Comparator<Map.Entry<Long, Long>> comparator = Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey());
+        for (var i = 0; i < 100_000; i++) {
+            var key = (long) random.nextInt(500);
+            var value = (long) random.nextInt(20);
+            ranking.update(key, value, capacity);
+            if (scoreMap.containsKey(key) || scoreMap.size() < capacity) {
+                scoreMap.put(key, value);
+            } else {
+                var min = scoreMap.entrySet().stream().min(comparator).get();
+                if (min.getValue() <= value) {
+                    scoreMap.remove(min.getKey());
+                    scoreMap.put(key, value);
+                }
+            }
+
+            if (i % 1000 == 0) {
+                var expected = scoreMap.entrySet().stream().sorted(comparator).map(Map.Entry::getKey).collect(Collectors.toList());
+                Assert.assertEquals(expected, ranking.keys());
+            }
+        }
+    }
+
+    @Test
+    public void orderTest() {
+        var capacity = 100;
+        var random = new Random(7);
+        var ranking = new LoveRanking();
+        var scoreMap = new HashMap<Long, Long>();
+        for (var i = 0; i < 100_000; i++) {
+            var key = (long) random.nextInt(1000);
+            // 分数不重复，淘汰的时间片是确定的
+            var value = random.nextInt(1_000_000) * 1_000_000L + i;
+            ranking.update(key, value, capacity);
+            if (scoreMap.containsKey(key) || scoreMap.size() < capacity) {
+                scoreMap.put(key, value);
+            } else {
+                var min = scoreMap.entrySet().stream().min(Map.Entry.comparingByValue()).get();
+                if (min.getValue() <= value) {
+                    scoreMap.remove(min.getKey());
+                    scoreMap.put(key, value);
+                }
+            }
+
+            if (i % 1000 == 0) {
+                var keys = ranking.keys();
+                // 读取缓存的时候返回同一个排序结果
+                Assert.assertSame(keys, ranking.keys());
+
+                var list = ranking.toList();
+                Assert.assertEquals(scoreMap.size(), list.size());
+                for (var j = 0; j < list.size(); j++) {
+                    Assert.assertEquals(list.get(j).getKey(), keys.get(j).longValue());
+                    Assert.assertEquals(scoreMap.get(list.get(j).getKey()).longValue(), list.get(j).getValue());
+                    if (j > 0) {
+                        Assert.assertTrue(list.get(j - 1).getValue() <= list.get(j).getValue());
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -13,6 +13,7 @@
 
 package com.zfoo.app.zapp.feed;
 
+import com.zfoo.event.model.event.AppStartEvent;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 /**
@@ -25,6 +26,7 @@ public class Application {
     public static void main(String[] args) {
         var context = new ClassPathXmlApplicationContext("application.xml");
         context.registerShutdownHook();
+        context.publishEvent(new AppStartEvent(context));
     }
 
 }
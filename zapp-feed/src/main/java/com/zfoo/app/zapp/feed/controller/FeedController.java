@@ -15,6 +15,7 @@ package com.zfoo.app.zapp.feed.controller;
 
 import com.zfoo.app.zapp.common.protocol.feed.home.CreateTsAsk;
 import com.zfoo.app.zapp.common.protocol.feed.home.LoveTsAsk;
+import com.zfoo.app.zapp.common.protocol.feed.home.LoveTsBatchAsk;
 import com.zfoo.app.zapp.common.protocol.feed.item.CreateTsWithItemAsk;
 import com.zfoo.app.zapp.common.protocol.feed.item.LoveTsWithItemAsk;
 import com.zfoo.app.zapp.common.protocol.feed.location.CreateTsWithLocationAsk;
@@ -24,6 +25,8 @@ import com.zfoo.app.zapp.common.protocol.feed.person.LoveTsWithPersonAsk;
 import com.zfoo.app.zapp.feed.service.IFeedService;
 import com.zfoo.net.router.receiver.PacketReceiver;
 import com.zfoo.net.session.model.Session;
+import com.zfoo.net.task.TaskBus;
+import com.zfoo.util.math.HashUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -104,4 +107,26 @@ public class FeedController {
         feedService.loveTsWithPerson(personId, tsId, love, score);
     }
 
+    /**
+     * 合并之后的点赞数据，每一条数据按照单独发送时的argument派发到对应的线程，保证同一个feed的修改还是在同一个线程
+     */
+    @PacketReceiver
+    public void atLoveTsBatchAsk(Session session, LoveTsBatchAsk ask) {
+        for (var it : ask.getHomes()) {
+            TaskBus.executor(HashUtils.fnvHash(it.getTsId())).execute(() -> feedService.loveTs(it.getTsId(), it.getLove(), it.getScore()));
+        }
+
+        for (var it : ask.getLocations()) {
+            TaskBus.executor(HashUtils.fnvHash(it.getLocationId())).execute(() -> feedService.loveTsWithLocation(it.getLocationId(), it.getTsId(), it.getLove(), it.getScore()));
+        }
+
+        for (var it : ask.getItems()) {
+            TaskBus.executor(HashUtils.fnvHash(it.getItemId())).execute(() -> feedService.loveTsWithItem(it.getItemId(), it.getTsId(), it.getLove(), it.getScore()));
+        }
+
+        for (var it : ask.getPersons()) {
+            TaskBus.executor(HashUtils.fnvHash(it.getPersonId())).execute(() -> feedService.loveTsWithPerson(it.getPersonId(), it.getTsId(), it.getLove(), it.getScore()));
+        }
+    }
+
 }
@@ -13,15 +13,12 @@
 
 package com.zfoo.app.zapp.feed.controller;
 
-import com.zfoo.app.zapp.common.entity.search.SearchEntity;
 import com.zfoo.app.zapp.common.protocol.feed.search.SearchCountAsk;
+import com.zfoo.app.zapp.feed.service.IHotSearchService;
 import com.zfoo.net.router.receiver.PacketReceiver;
 import com.zfoo.net.session.model.Session;
-import com.zfoo.orm.OrmContext;
-import com.zfoo.orm.model.anno.EntityCachesInjection;
-import com.zfoo.orm.model.cache.IEntityCaches;
 import com.zfoo.protocol.util.StringUtils;
-import com.zfoo.scheduler.util.TimeUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -32,8 +29,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class SearchController {
 
-    @EntityCachesInjection
-    private IEntityCaches<String, SearchEntity> searchCaches;
+    @Autowired
+    private IHotSearchService hotSearchService;
 
     @PacketReceiver
     public void atSearchCountAsk(Session session, SearchCountAsk ask) {
@@ -42,26 +39,7 @@ public class SearchController {
             return;
         }
 
-        query = query.trim();
-
-        var entity = searchCaches.load(query);
-        // 缓存没有关键词则创建一个关键词
-        if (StringUtils.isBlank(entity.getId())) {
-            var newEntity = SearchEntity.valueOf(query, TimeUtils.now());
-            var trendPO = newEntity.getTrend();
-            trendPO.addCount(1);
-            newEntity.setScore(trendPO.score());
-            newEntity.setCount(entity.getCount() + 1);
-            entity = newEntity;
-            OrmContext.getAccessor().insert(newEntity);
-            searchCaches.invalidate(query);
-        }
-
-        var trendPO = entity.getTrend();
-        trendPO.addCount(1);
-        entity.setScore(trendPO.score());
-        entity.setCount(entity.getCount() + 1);
-        searchCaches.update(entity);
+        hotSearchService.count(query.trim());
     }
 
 }
@@ -18,15 +18,12 @@ import com.zfoo.app.zapp.common.entity.feed.FeedHomeEntity;
 import com.zfoo.app.zapp.common.entity.feed.FeedItemEntity;
 import com.zfoo.app.zapp.common.entity.feed.FeedLocationEntity;
 import com.zfoo.app.zapp.common.entity.feed.FeedPersonEntity;
-import com.zfoo.net.packet.common.PairLong;
+import com.zfoo.app.zapp.common.entity.feed.LoveRanking;
 import com.zfoo.orm.OrmContext;
 import com.zfoo.orm.model.anno.EntityCachesInjection;
 import com.zfoo.orm.model.cache.IEntityCaches;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.List;
-
 /**
  * @author jaysunxiao
  * @version 1.0
@@ -191,52 +188,13 @@ public class FeedService implements IFeedService {
     /**
      * @return 是否需要更新数据
      */
-    private boolean computeLoveFeed(long tsId, long love, long score, List<PairLong> topLoveLinks, List<PairLong> trendLoveLinks
+    private boolean computeLoveFeed(long tsId, long love, long score, LoveRanking topLoveLinks, LoveRanking trendLoveLinks
             , int topLinkSize, int trendLinkSize) {
-        var update = false;
         // 计算喜爱的top排序
-
-        var tsLoveOptional = topLoveLinks.stream().filter(it -> it.getKey() == tsId).findFirst();
-        if (tsLoveOptional.isPresent()) {
-            tsLoveOptional.get().setValue(love);
-            Collections.sort(topLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-            update = true;
-        } else {
-            if (topLoveLinks.size() < topLinkSize) {
-                topLoveLinks.add(PairLong.valueOf(tsId, love));
-                Collections.sort(topLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-                update = true;
-            } else {
-                var firstTsLove = topLoveLinks.get(0);
-                if (firstTsLove.getValue() <= love) {
-                    topLoveLinks.set(0, PairLong.valueOf(tsId, love));
-                    Collections.sort(topLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-                    update = true;
-                }
-            }
-        }
-
+        var update = topLoveLinks.update(tsId, love, topLinkSize);
 
         // 计算喜爱的trend排序
-        var tsLoveTrendOptional = trendLoveLinks.stream().filter(it -> it.getKey() == tsId).findFirst();
-        if (tsLoveTrendOptional.isPresent()) {
-            tsLoveTrendOptional.get().setValue(score);
-            Collections.sort(trendLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-            update = true;
-        } else {
-            if (trendLoveLinks.size() < trendLinkSize) {
-                trendLoveLinks.add(PairLong.valueOf(tsId, score));
-                Collections.sort(trendLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-                update = true;
-            } else {
-                var firstTsLoveTrend = trendLoveLinks.get(0);
-                if (firstTsLoveTrend.getValue() <= score) {
-                    trendLoveLinks.set(0, PairLong.valueOf(tsId, score));
-                    Collections.sort(trendLoveLinks, PairLong.NATURAL_VALUE_COMPARATOR);
-                    update = true;
-                }
-            }
-        }
+        update |= trendLoveLinks.update(tsId, score, trendLinkSize);
         return update;
     }
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.feed.service;
+
+import com.zfoo.app.zapp.common.constant.AppConstant;
+import com.zfoo.app.zapp.common.entity.search.HotSearchEntity;
+import com.zfoo.app.zapp.common.entity.search.HotSearchPO;
+import com.zfoo.event.model.event.AppStartEvent;
+import com.zfoo.net.NetContext;
+import com.zfoo.orm.OrmContext;
+import com.zfoo.orm.model.anno.EntityCachesInjection;
+import com.zfoo.orm.model.cache.IEntityCaches;
+import com.zfoo.protocol.util.StringUtils;
+import com.zfoo.scheduler.model.anno.Scheduler;
+import com.zfoo.scheduler.util.TimeUtils;
+import com.zfoo.util.math.sketch.HeavyHitters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 热搜统计，搜索词通过一致性hash路由到固定的feed服务器，每个feed服务器在内存中用HeavyHitters统计自己的热搜
+ * <p>
+ * 搜索计数不再读写SearchEntity，只会定时把top-K的热搜保存到HotSearchEntity，读取热搜的时候合并所有feed服务器的HotSearchEntity
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-24 11:05
+ */
+@Component
+public class HotSearchService implements IHotSearchService, ApplicationListener<AppStartEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotSearchService.class);
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 14;
+
+    @EntityCachesInjection
+    private IEntityCaches<String, HotSearchEntity> hotSearchCaches;
+
+    private final HeavyHitters<String> heavyHitters = new HeavyHitters<>(AppConstant.HOT_SEARCH_CAPACITY, SKETCH_DEPTH, SKETCH_WIDTH);
+
+    /**
+     * 最后一次热度衰减的时间
+     */
+    private volatile long decayTime = TimeUtils.getZeroTimeOfDay(TimeUtils.now());
+
+    @Override
+    public void count(String query) {
+        if (StringUtils.isBlank(query)) {
+            return;
+        }
+        heavyHitters.add(query, AppConstant.HOT_SEARCH_SCORE);
+    }
+
+    @Override
+    public List<HotSearchPO> hots(int limit) {
+        return heavyHitters.top(limit)
+                .stream()
+                .map(it -> HotSearchPO.valueOf(it.getKey(), it.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 启动的时候恢复上一次保存的热搜，并且补上停服期间没有执行的衰减
+     */
+    @Override
+    public void onApplicationEvent(AppStartEvent event) {
+        var entity = hotSearchCaches.load(hotSearchId());
+        if (StringUtils.isBlank(entity.getId())) {
+            return;
+        }
+
+        var factor = 1.0D;
+        var today = TimeUtils.getZeroTimeOfDay(TimeUtils.now());
+        for (var time = entity.getDecayTime() + TimeUtils.MILLIS_PER_DAY; time <= today; time += TimeUtils.MILLIS_PER_DAY) {
+            factor *= AppConstant.HOT_SEARCH_DECAY;
+        }
+        for (var hot : entity.getHots()) {
+            var score = (long) (hot.getScore() * factor);
+            if (score > 0) {
+                heavyHitters.add(hot.getQuery(), score);
+            }
+        }
+        logger.info("恢复热搜[{}]成功，衰减比例[{}]", entity.getHots().size(), factor);
+    }
+
+    /**
+     * 每天零点热度衰减一次，很久没有被搜索的词会被逐渐挤出热搜
+     */
+    @Scheduler(cron = "0 0 0 * * ?")
+    public void cronDecay() {
+        heavyHitters.decay(AppConstant.HOT_SEARCH_DECAY);
+        decayTime = TimeUtils.getZeroTimeOfDay(TimeUtils.now());
+    }
+
+    /**
+     * 每5分钟把热搜保存到数据库
+     */
+    @Scheduler(cron = "0 0/5 * * * ?")
+    public void cronCheckpoint() {
+        var id = hotSearchId();
+        var entity = hotSearchCaches.load(id);
+        if (StringUtils.isBlank(entity.getId())) {
+            entity = HotSearchEntity.valueOf(id);
+            OrmContext.getAccessor().insert(entity);
+            hotSearchCaches.invalidate(id);
+        }
+
+        entity.setHots(hots(AppConstant.HOT_SEARCH_CAPACITY));
+        entity.setRefreshTime(TimeUtils.now());
+        entity.setDecayTime(decayTime);
+        hotSearchCaches.update(entity);
+    }
+
+    private String hotSearchId() {
+        return NetContext.getConfigManager().getLocalConfig().getProvider().localHostAndPortOrDefault().toHostAndPortStr();
+    }
+
+}
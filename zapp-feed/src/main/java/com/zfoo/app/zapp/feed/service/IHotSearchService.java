@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.feed.service;
+
+import com.zfoo.app.zapp.common.entity.search.HotSearchPO;
+
+import java.util.List;
+
+/**
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-24 11:05
+ */
+public interface IHotSearchService {
+
+    /**
+     * 统计一次搜索，只在内存中计数，定时保存到数据库
+     */
+    void count(String query);
+
+    /**
+     * 当前feed服务器统计的热搜，按照热度从大到小排列
+     */
+    List<HotSearchPO> hots(int limit);
+
+}
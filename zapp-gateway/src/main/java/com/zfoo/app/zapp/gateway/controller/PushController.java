@@ -20,6 +20,10 @@ import com.zfoo.net.router.receiver.PacketReceiver;
 import com.zfoo.net.session.model.Session;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 /**
  * @author jaysunxiao
  * @version 1.0
@@ -30,98 +34,76 @@ public class PushController {
 
     @PacketReceiver
     public void atApplyFriendPushToGateway(Session session, ApplyFriendPushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atAcceptFriendPushToGateway(Session session, AcceptFriendPushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atFriendChatMessagePushToGateway(Session session, FriendChatMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atDeleteFriendMessagePushToGateway(Session session, DeleteFriendMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atEditFriendMessagePushToGateway(Session session, EditFriendMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atDeleteGroupPushToGateway(Session session, DeleteGroupPushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atGroupUpdatePushToGateway(Session session, GroupUpdatePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atGroupChatMessagePushToGateway(Session session, GroupChatMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atMemberGroupAuthIdUpdatePushToGateway(Session session, MemberGroupAuthIdUpdatePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atKickMemberPushToGateway(Session session, KickMemberPushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atDeleteGroupMessagePushToGateway(Session session, DeleteGroupMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
-            var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
-        }
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
     }
 
     @PacketReceiver
     public void atEditGroupMessagePushToGateway(Session session, EditGroupMessagePushToGateway push) {
-        for (var sid : push.getSidSet()) {
+        NetContext.getRouter().broadcast(pushSessions(push.getSidSet()), push.getNotice());
+    }
+
+    /**
+     * 同一个通知推送给多个客户端的时候只编码一次，参见Router.broadcast()
+     */
+    private List<Session> pushSessions(Set<Long> sidSet) {
+        var sessions = new ArrayList<Session>(sidSet.size());
+        for (var sid : sidSet) {
             var pushSession = NetContext.getSessionManager().getServerSession(sid);
-            NetContext.getRouter().send(pushSession, push.getNotice());
+            if (pushSession != null) {
+                sessions.add(pushSession);
+            }
         }
+        return sessions;
     }
 
 }
@@ -163,7 +163,7 @@ public class ChannelController {
                             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_WORD_FILTER_ERROR.getCode()), gatewayAttachment);
                             return;
                         }
-                        var channelId = MongoIdUtils.getIncrementIdFromMongoDefault(ChannelEntity.class);
+                        var channelId = MongoIdUtils.getIncrementIdFromRangeDefault(ChannelEntity.class);
                         channelBoxPO.getChannels().add(ChannelPO.valueOf(channelId, channelName
                                 , new ArrayList<>(List.of(ChannelAuthPO.valueOf(AppConstant.GROUP_AUTH_DEFAULT_ID, ChannelAuthEnum.BASE_AUTH.getType())))));
                         groupEntityCaches.update(groupEntity);
@@ -173,7 +173,7 @@ public class ChatController {
         }
 
         var channelEntity = channelEntityCaches.load(channelId);
-        channelEntity.getMessages().removeIf(it -> it.getId() == messageId);
+        channelEntity.getMessages().remove(messageId);
         channelEntity.getPins().removeIf(it -> it.getId() == messageId);
         channelEntityCaches.update(channelEntity);
 
@@ -223,12 +223,11 @@ public class ChatController {
         }
 
         var channelEntity = channelEntityCaches.load(channelId);
-        var messageOptional = channelEntity.getMessages().stream().filter(it -> it.getId() == messageId).findFirst();
-        if (messageOptional.isEmpty()) {
+        var messagePO = channelEntity.getMessages().find(messageId);
+        if (messagePO == null) {
             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_ERROR_ONE.getCode()), gatewayAttachment);
             return;
         }
-        var messagePO = messageOptional.get();
         if (MessageEnum.getMessageEnumByType(messagePO.getType()) != MessageEnum.TEXT) {
             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_ERROR_TWO.getCode(), null), gatewayAttachment);
             return;
@@ -285,9 +284,8 @@ public class ChatController {
         var channelEntity = channelEntityCaches.load(channelId);
         var chatMessages = channelEntity.getMessages();
         var list = lastMessageId > 0
-                ? chatMessages.stream().filter(message -> message.getId() < lastMessageId).sorted((a, b) -> Long.compare(b.getId(), a.getId())).limit(AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE).collect(Collectors.toList())
-                : chatMessages.stream().sorted((a, b) -> Long.compare(b.getId(), a.getId())).limit(AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE).collect(Collectors.toList());
-        Collections.reverse(list);
+                ? chatMessages.before(lastMessageId, AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE)
+                : chatMessages.latest(AppConstant.FRIEND_HISTORY_MESSAGE_PER_REQUEST_SIZE);
 
         NetContext.getRouter().send(session, GroupHistoryMessageResponse.valueOf(groupId, channelId, groupService.toChatMessages(list)), gatewayAttachment);
     }
@@ -326,8 +324,8 @@ public class ChatController {
         }
 
         var channelEntity = channelEntityCaches.load(channelId);
-        var messageOptional = channelEntity.getMessages().stream().filter(it -> it.getId() == messageId).findFirst();
-        if (messageOptional.isEmpty()) {
+        var messagePO = channelEntity.getMessages().find(messageId);
+        if (messagePO == null) {
             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_ERROR_ONE.getCode()), gatewayAttachment);
             return;
         }
@@ -337,7 +335,6 @@ public class ChatController {
             return;
         }
 
-        var messagePO = messageOptional.get();
         if (channelEntity.getPins().stream().noneMatch(it -> it.getId() == messageId)) {
             channelEntity.getPins().add(messagePO);
             channelEntity.getPins().sort((a, b) -> Long.compare(a.getId(), b.getId()));
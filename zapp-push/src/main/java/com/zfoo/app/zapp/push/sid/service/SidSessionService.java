@@ -38,13 +38,18 @@ public class SidSessionService implements ISidSessionService {
      */
     private ConcurrentHashMap<Session, Map<Long, Set<Long>>> uidSessionMap = new ConcurrentHashMap<>();
 
+    /**
+     * uidSessionMap的反向索引，key为uid，value为这个uid所在的网关session和对应的sid
+     * <p>
+     * 里面的sid集合和uidSessionMap中的是同一个对象，所以推送的时候只需要查找接收者，和网关的数量无关。
+     * 两个map的增删都在同一把锁下完成，查询不加锁
+     */
+    private ConcurrentHashMap<Long, Map<Session, Set<Long>>> sessionUidMap = new ConcurrentHashMap<>();
+
 
     @Override
-    public void synchronizeSid(Session session, String gatewayHostAndPort, Map<Long, Long> sidMap) {
-        var uidMap = uidSessionMap.computeIfAbsent(session, it -> {
-            session.putAttribute(AttributeType.GATEWAY_HOST_AND_PORT, gatewayHostAndPort);
-            return new ConcurrentHashMap<>();
-        });
+    public synchronized void synchronizeSid(Session session, String gatewayHostAndPort, Map<Long, Long> sidMap) {
+        var uidMap = gatewayUidMap(session, gatewayHostAndPort);
 
         // 移除过期的网关session
         var sessionSet = uidSessionMap.keySet().stream()
@@ -52,7 +57,7 @@ public class SidSessionService implements ISidSessionService {
                 .collect(Collectors.toSet());
         sessionSet.stream()
                 .filter(it -> !session.equals(it))
-                .forEach(it -> uidSessionMap.remove(it));
+                .forEach(it -> removeSession(it));
 
         sidMap.forEach((key, value) -> addSid(session, gatewayHostAndPort, key, value));
 
@@ -71,27 +76,25 @@ public class SidSessionService implements ISidSessionService {
             }
 
             for (var uid : needRemovedList) {
-                uidMap.remove(uid);
+                removeUid(session, uidMap, uid);
             }
         }
     }
 
     @Override
-    public void addSid(Session session, String gatewayHostAndPort, long sid, long uid) {
-        var uidMap = uidSessionMap.computeIfAbsent(session, it -> {
-            session.putAttribute(AttributeType.GATEWAY_HOST_AND_PORT, gatewayHostAndPort);
-            return new ConcurrentHashMap<>();
+    public synchronized void addSid(Session session, String gatewayHostAndPort, long sid, long uid) {
+        var uidMap = gatewayUidMap(session, gatewayHostAndPort);
+        var sidSet = uidMap.computeIfAbsent(uid, it -> {
+            var set = new ConcurrentHashSet<Long>(1);
+            sessionUidMap.computeIfAbsent(uid, key -> new ConcurrentHashMap<>(2)).put(session, set);
+            return set;
         });
-        var sidSet = uidMap.computeIfAbsent(uid, it -> new ConcurrentHashSet<>(1));
         sidSet.add(sid);
     }
 
     @Override
-    public void removeSid(Session session, String gatewayHostAndPort, long sid, long uid) {
-        var uidMap = uidSessionMap.computeIfAbsent(session, it -> {
-            session.putAttribute(AttributeType.GATEWAY_HOST_AND_PORT, gatewayHostAndPort);
-            return new ConcurrentHashMap<>();
-        });
+    public synchronized void removeSid(Session session, String gatewayHostAndPort, long sid, long uid) {
+        var uidMap = gatewayUidMap(session, gatewayHostAndPort);
 
         if (CollectionUtils.isEmpty(uidMap)) {
             return;
@@ -106,20 +109,31 @@ public class SidSessionService implements ISidSessionService {
         sidSet.remove(sid);
 
         if (CollectionUtils.isEmpty(sidSet)) {
-            uidMap.remove(uid);
+            removeUid(session, uidMap, uid);
         }
     }
 
     @Override
-    public void removeSession(Session session) {
-        uidSessionMap.remove(session);
+    public synchronized void removeSession(Session session) {
+        var uidMap = uidSessionMap.remove(session);
+        if (CollectionUtils.isEmpty(uidMap)) {
+            return;
+        }
+        for (var uid : uidMap.keySet()) {
+            removeReverseIndex(session, uid);
+        }
     }
 
     @Override
     public Map<Session, Set<Long>> getSessionByUid(long uid) {
-        var map = new HashMap<Session, Set<Long>>(1);
-        for (var entry : uidSessionMap.entrySet()) {
-            var set = entry.getValue().get(uid);
+        var sessionMap = sessionUidMap.get(uid);
+        if (CollectionUtils.isEmpty(sessionMap)) {
+            return Collections.emptyMap();
+        }
+
+        var map = new HashMap<Session, Set<Long>>(CollectionUtils.comfortableCapacity(sessionMap.size()));
+        for (var entry : sessionMap.entrySet()) {
+            var set = entry.getValue();
             if (CollectionUtils.isNotEmpty(set)) {
                 map.put(entry.getKey(), set);
             }
@@ -135,22 +149,51 @@ public class SidSessionService implements ISidSessionService {
 
         var map = new HashMap<Session, Set<Long>>(1);
 
-        for (var entry : uidSessionMap.entrySet()) {
-            uidList.stream().forEach(uid -> {
-                var set = entry.getValue().get(uid);
-                if (CollectionUtils.isNotEmpty(set)) {
-                    map.compute(entry.getKey(), (session, sidSet) -> {
-                        if (CollectionUtils.isEmpty(sidSet)) {
-                            return new HashSet<>(set);
-                        } else {
-                            sidSet.addAll(set);
-                            return sidSet;
-                        }
-                    });
+        for (var uid : uidList) {
+            var sessionMap = sessionUidMap.get(uid);
+            if (CollectionUtils.isEmpty(sessionMap)) {
+                continue;
+            }
+
+            for (var entry : sessionMap.entrySet()) {
+                var set = entry.getValue();
+                if (CollectionUtils.isEmpty(set)) {
+                    continue;
                 }
-            });
+                map.compute(entry.getKey(), (session, sidSet) -> {
+                    if (CollectionUtils.isEmpty(sidSet)) {
+                        return new HashSet<>(set);
+                    } else {
+                        sidSet.addAll(set);
+                        return sidSet;
+                    }
+                });
+            }
         }
         return map;
     }
 
+    private Map<Long, Set<Long>> gatewayUidMap(Session session, String gatewayHostAndPort) {
+        return uidSessionMap.computeIfAbsent(session, it -> {
+            session.putAttribute(AttributeType.GATEWAY_HOST_AND_PORT, gatewayHostAndPort);
+            return new ConcurrentHashMap<>();
+        });
+    }
+
+    private void removeUid(Session session, Map<Long, Set<Long>> uidMap, long uid) {
+        uidMap.remove(uid);
+        removeReverseIndex(session, uid);
+    }
+
+    private void removeReverseIndex(Session session, long uid) {
+        var sessionMap = sessionUidMap.get(uid);
+        if (sessionMap == null) {
+            return;
+        }
+        sessionMap.remove(session);
+        if (sessionMap.isEmpty()) {
+            sessionUidMap.remove(uid);
+        }
+    }
+
 }
@@ -73,7 +73,7 @@ public class GroupController {
                             NetContext.getRouter().send(session, Error.valueOf(cm, CodeEnum.PARAMETER_WORD_FILTER_ERROR.getCode()), gatewayAttachment);
                             return;
                         }
-                        var groupId = MongoIdUtils.getIncrementIdFromMongoDefault(GroupEntity.class);
+                        var groupId = MongoIdUtils.getIncrementIdFromRangeDefault(GroupEntity.class);
                         var groupEntity = groupService.createGroup(userEntity, groupId, groupName, null);
 
                         entityCaches.update(userEntity);
@@ -60,7 +60,7 @@ public class GroupService implements IGroupService {
         groupEntity.setGroupAuths(new ArrayList<>(List.of(defaultGroupAuth)));
 
         // 创建一个公共频道
-        var commonChannelId = MongoIdUtils.getIncrementIdFromMongoDefault(ChannelEntity.class);
+        var commonChannelId = MongoIdUtils.getIncrementIdFromRangeDefault(ChannelEntity.class);
         var commonChannelEntity = new ChannelEntity();
         commonChannelEntity.setId(commonChannelId);
         var commonChannelPO = ChannelPO.valueOf(commonChannelId, AppConstant.GROUP_COMMON_CHANNEL_CN_NAME
@@ -69,7 +69,7 @@ public class GroupService implements IGroupService {
 
 
         // 创建一个默认的频道
-        var defaultChannelId = MongoIdUtils.getIncrementIdFromMongoDefault(ChannelEntity.class);
+        var defaultChannelId = MongoIdUtils.getIncrementIdFromRangeDefault(ChannelEntity.class);
         var defaultChannelEntity = new ChannelEntity();
         defaultChannelEntity.setId(defaultChannelId);
         var defaultChannelPO = ChannelPO.valueOf(defaultChannelId, AppConstant.GROUP_DEFAULT_CHANNEL_CN_NAME
@@ -46,7 +46,7 @@ public class LoginService implements ILoginService {
     private IGroupService groupService;
 
     private UserEntity createNewUser() {
-        var id = MongoIdUtils.getIncrementIdFromMongoDefault(UserEntity.class);
+        var id = MongoIdUtils.getIncrementIdFromRangeDefault(UserEntity.class);
 
         var userEntity = UserEntity.valueOf(id, DEFAULT_NAME);
         userEntity.getSetting().setTheme(ThemeEnum.LIGHT.getType());
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.user.time.servece;
+
+import com.zfoo.app.zapp.common.protocol.feed.home.LoveTsAsk;
+import com.zfoo.app.zapp.common.protocol.feed.home.LoveTsBatchAsk;
+import com.zfoo.app.zapp.common.protocol.feed.item.LoveTsWithItemAsk;
+import com.zfoo.app.zapp.common.protocol.feed.location.LoveTsWithLocationAsk;
+import com.zfoo.app.zapp.common.protocol.feed.person.LoveTsWithPersonAsk;
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.collection.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 点赞的聚合缓冲区，同一个时间片在聚合窗口内只保留最后一次的点赞数据
+ * <p>
+ * work-stealing模式下不同的时间片可能在不同的线程中同时点赞，所以缓冲区使用ConcurrentHashMap，
+ * 并且通过flushScheduled保证一个聚合窗口只会调度一次刷新
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 10:17
+ */
+class LoveTsBuffer {
+
+    /**
+     * 一个时间片在聚合窗口内最后的点赞数据，love和score都是最终值而不是增量，所以只需要保留最后一次
+     */
+    static class LoveTsPending {
+        private final long tsId;
+        private final long love;
+        private final long score;
+        private final List<Long> locations;
+        private final List<Long> items;
+        private final List<Long> persons;
+
+        LoveTsPending(long tsId, long love, long score, List<Long> locations, List<Long> items, List<Long> persons) {
+            this.tsId = tsId;
+            this.love = love;
+            this.score = score;
+            this.locations = locations;
+            this.items = items;
+            this.persons = persons;
+        }
+
+        long getTsId() {
+            return tsId;
+        }
+
+        long getLove() {
+            return love;
+        }
+
+        long getScore() {
+            return score;
+        }
+    }
+
+    private final Map<Long, LoveTsPending> buffer = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * @return 是否需要调用者调度一次刷新，只有聚合窗口内的第一次点赞返回true
+     */
+    boolean put(LoveTsPending pending) {
+        // 先放入缓冲区再检查调度标志，保证drain()重置标志之前放入的数据一定会被这一次刷新带走
+        buffer.put(pending.tsId, pending);
+        return flushScheduled.compareAndSet(false, true);
+    }
+
+    void remove(long tsId) {
+        buffer.remove(tsId);
+    }
+
+    /**
+     * 取出缓冲区中全部的点赞数据，取出之后放入的数据会重新调度刷新
+     */
+    List<LoveTsPending> drain() {
+        flushScheduled.set(false);
+        var pendingList = new ArrayList<LoveTsPending>(buffer.size());
+        for (var entry : buffer.entrySet()) {
+            var pending = entry.getValue();
+            // 被并发覆盖的数据留给下一次刷新
+            if (buffer.remove(entry.getKey(), pending)) {
+                pendingList.add(pending);
+            }
+        }
+        return pendingList;
+    }
+
+    /**
+     * 把点赞数据按照目标feed服务器分组，每个feed服务器只发送一个合并之后的包
+     *
+     * @param sessionFunction 通过协议和负载均衡的参数找到原来单独发送的时候的目标服务器，找不到返回null
+     */
+    static <K> Map<K, LoveTsBatchAsk> batch(List<LoveTsPending> pendingList, BiFunction<IPacket, Object, K> sessionFunction) {
+        var batchMap = new HashMap<K, LoveTsBatchAsk>();
+        for (var pending : pendingList) {
+            var tsId = pending.tsId;
+            var love = pending.love;
+            var score = pending.score;
+
+            if (CollectionUtils.isNotEmpty(pending.locations)) {
+                pending.locations.forEach(it -> addToBatch(batchMap, sessionFunction, LoveTsWithLocationAsk.valueOf(it, tsId, love, score), it, LoveTsBatchAsk::getLocations));
+            }
+
+            if (CollectionUtils.isNotEmpty(pending.items)) {
+                pending.items.forEach(it -> addToBatch(batchMap, sessionFunction, LoveTsWithItemAsk.valueOf(it, tsId, love, score), it, LoveTsBatchAsk::getItems));
+            }
+
+            if (CollectionUtils.isNotEmpty(pending.persons)) {
+                pending.persons.forEach(it -> addToBatch(batchMap, sessionFunction, LoveTsWithPersonAsk.valueOf(it, tsId, love, score), it, LoveTsBatchAsk::getPersons));
+            }
+
+            addToBatch(batchMap, sessionFunction, LoveTsAsk.valueOf(tsId, love, score), tsId, LoveTsBatchAsk::getHomes);
+        }
+        return batchMap;
+    }
+
+    private static <K, T extends IPacket> void addToBatch(Map<K, LoveTsBatchAsk> batchMap, BiFunction<IPacket, Object, K> sessionFunction
+            , T packet, Object argument, Function<LoveTsBatchAsk, List<T>> listFunction) {
+        var session = sessionFunction.apply(packet, argument);
+        if (session == null) {
+            return;
+        }
+        listFunction.apply(batchMap.computeIfAbsent(session, it -> LoveTsBatchAsk.valueOf())).add(packet);
+    }
+
+}
@@ -15,18 +15,21 @@ package com.zfoo.app.zapp.user.time.servece;
 
 import com.zfoo.app.zapp.common.entity.time.TimeSliceEntity;
 import com.zfoo.app.zapp.common.entity.time.model.LoveTrendPO;
-import com.zfoo.app.zapp.common.protocol.feed.home.LoveTsAsk;
-import com.zfoo.app.zapp.common.protocol.feed.item.LoveTsWithItemAsk;
-import com.zfoo.app.zapp.common.protocol.feed.location.LoveTsWithLocationAsk;
-import com.zfoo.app.zapp.common.protocol.feed.person.LoveTsWithPersonAsk;
 import com.zfoo.net.NetContext;
+import com.zfoo.net.router.attachment.NoAnswerAttachment;
+import com.zfoo.net.task.TaskBus;
 import com.zfoo.orm.OrmContext;
 import com.zfoo.orm.model.anno.EntityCachesInjection;
 import com.zfoo.orm.model.cache.IEntityCaches;
-import com.zfoo.protocol.collection.CollectionUtils;
+import com.zfoo.scheduler.manager.SchedulerBus;
 import com.zfoo.scheduler.util.TimeUtils;
+import com.zfoo.util.math.RandomUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author jaysunxiao
  * @version 1.0
@@ -35,10 +38,18 @@ import org.springframework.stereotype.Component;
 @Component
 public class TsOperationService implements ITsOperationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(TsOperationService.class);
+
+    /**
+     * 点赞的聚合窗口，同一个时间片在窗口内的多次点赞只会把最后的结果同步给feed服务器
+     */
+    private static final long LOVE_FLUSH_DELAY = TimeUtils.MILLIS_PER_SECOND;
+
+    private final LoveTsBuffer loveBuffer = new LoveTsBuffer();
+
     @EntityCachesInjection
     private IEntityCaches<Long, TimeSliceEntity> tsCaches;
 
-
     @Override
     public void loveTimeSlice(long id, long count) {
         var entity = tsCaches.load(id);
@@ -60,26 +71,42 @@ public class TsOperationService implements ITsOperationService {
 
         var score = loveTrend.score();
 
-        var locations = entity.getLocations();
-        if (CollectionUtils.isNotEmpty(locations)) {
-            locations.stream().forEach(it -> NetContext.getConsumer().send(LoveTsWithLocationAsk.valueOf(it, id, love, score), it));
+        if (loveBuffer.put(new LoveTsBuffer.LoveTsPending(id, love, score, entity.getLocations(), entity.getItems(), entity.getPersons()))) {
+            // 刷新的线程和点赞的线程无关，随机选择一个线程发送，feed服务器收到之后会按照每个点赞的id重新派发
+            var executorConsistentHash = RandomUtils.randomInt();
+            SchedulerBus.schedule(() -> TaskBus.executor(executorConsistentHash).execute(() -> flushLove(executorConsistentHash)), LOVE_FLUSH_DELAY, TimeUnit.MILLISECONDS);
         }
+    }
 
-        var items = entity.getItems();
-        if (CollectionUtils.isNotEmpty(items)) {
-            items.stream().forEach(it -> NetContext.getConsumer().send(LoveTsWithItemAsk.valueOf(it, id, love, score), it));
+    /**
+     * 把聚合窗口内的点赞数据按照目标feed服务器分组，每个feed服务器只发送一个合并之后的包
+     */
+    private void flushLove(int executorConsistentHash) {
+        var pendingList = loveBuffer.drain();
+        if (pendingList.isEmpty()) {
+            return;
         }
 
-        var persons = entity.getPersons();
-        if (CollectionUtils.isNotEmpty(persons)) {
-            persons.stream().forEach(it -> NetContext.getConsumer().send(LoveTsWithPersonAsk.valueOf(it, id, love, score), it));
+        // 使用和Consumer.send()一样的负载均衡找到原来单独发送的时候的目标服务器
+        var batchMap = LoveTsBuffer.batch(pendingList, (packet, argument) -> {
+            try {
+                return NetContext.getConfigManager().consumerLoadBalancer().loadBalancer(packet, argument);
+            } catch (Throwable t) {
+                logger.error("合并点赞数据[{}][argument:{}]的时候找不到feed服务器", packet.getClass().getSimpleName(), argument, t);
+                return null;
+            }
+        });
+
+        for (var entry : batchMap.entrySet()) {
+            NetContext.getRouter().send(entry.getKey(), entry.getValue(), NoAnswerAttachment.valueOf(executorConsistentHash));
         }
-
-        NetContext.getConsumer().send(LoveTsAsk.valueOf(id, love, score), id);
     }
 
     @Override
     public void deleteTimeSlice(long id) {
+        // 删除还没有同步给feed服务器的点赞，避免删除之后又被加回到feed中
+        loveBuffer.remove(id);
+
         // 线删除缓存
         tsCaches.invalidate(id);
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.user.time.servece;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-23 10:17
+ */
+public class LoveTsBufferTest {
+
+    @Test
+    public void flushTest() {
+        var buffer = new LoveTsBuffer();
+
+        // 只有聚合窗口内的第一次点赞需要调度刷新
+        Assert.assertTrue(buffer.put(pending(1L, 1L)));
+        Assert.assertFalse(buffer.put(pending(1L, 2L)));
+        Assert.assertFalse(buffer.put(pending(2L, 1L)));
+        Assert.assertFalse(buffer.put(pending(3L, 1L)));
+        buffer.remove(3L);
+
+        var pendingList = buffer.drain();
+        Assert.assertEquals(2, pendingList.size());
+        var loveMap = new HashMap<Long, Long>();
+        pendingList.forEach(it -> loveMap.put(it.getTsId(), it.getLove()));
+        Assert.assertEquals(2L, loveMap.get(1L).longValue());
+        Assert.assertEquals(1L, loveMap.get(2L).longValue());
+
+        Assert.assertTrue(buffer.drain().isEmpty());
+        Assert.assertTrue(buffer.put(pending(1L, 3L)));
+    }
+
+    @Test
+    public void batchTest() {
+        var pendingList = List.of(
+                new LoveTsBuffer.LoveTsPending(1L, 10L, 100L, List.of(7L), List.of(8L, 9L), null),
+                new LoveTsBuffer.LoveTsPending(2L, 20L, 200L, null, List.of(8L), List.of(11L)),
+                new LoveTsBuffer.LoveTsPending(3L, 30L, 300L, null, null, null));
+
+        // 奇数和偶数的负载均衡参数发往不同的feed服务器，参数为3的找不到feed服务器
+        var batchMap = LoveTsBuffer.batch(pendingList, (packet, argument) -> {
+            var id = (long) argument;
+            return id == 3L ? null : (id % 2 == 0 ? "even" : "odd");
+        });
+        Assert.assertEquals(2, batchMap.size());
+
+        var odd = batchMap.get("odd");
+        Assert.assertEquals(1, odd.getHomes().size());
+        Assert.assertEquals(1L, odd.getHomes().get(0).getTsId());
+        Assert.assertEquals(1, odd.getLocations().size());
+        Assert.assertEquals(7L, odd.getLocations().get(0).getLocationId());
+        Assert.assertEquals(1, odd.getItems().size());
+        Assert.assertEquals(9L, odd.getItems().get(0).getItemId());
+        Assert.assertEquals(1, odd.getPersons().size());
+        Assert.assertEquals(11L, odd.getPersons().get(0).getPersonId());
+        Assert.assertEquals(20L, odd.getPersons().get(0).getLove());
+
+        var even = batchMap.get("even");
+        Assert.assertEquals(1, even.getHomes().size());
+        Assert.assertEquals(2L, even.getHomes().get(0).getTsId());
+        Assert.assertEquals(0, even.getLocations().size());
+        Assert.assertEquals(2, even.getItems().size());
+        Assert.assertEquals(0, even.getPersons().size());
+    }
+
+    /**
+     * 多个线程并发点赞和刷新，每个时间片最后一次刷新出去的一定是最后一次点赞的数据，并且不会漏掉刷新的调度
+     */
+    @Test
+    public void concurrentTest() throws Exception {
+        var buffer = new LoveTsBuffer();
+        var threadSize = 4;
+        var loveCount = 100_000;
+        var latch = new CountDownLatch(threadSize);
+        var scheduled = new AtomicInteger(0);
+        var running = new AtomicBoolean(true);
+
+        var drained = new ArrayList<LoveTsBuffer.LoveTsPending>();
+        var flushThread = new Thread(() -> {
+            while (running.get()) {
+                drained.addAll(buffer.drain());
+            }
+        });
+        flushThread.start();
+
+        for (var i = 0; i < threadSize; i++) {
+            var tsId = (long) i;
+            new Thread(() -> {
+                for (var love = 1L; love <= loveCount; love++) {
+                    if (buffer.put(pending(tsId, love))) {
+                        scheduled.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        latch.await();
+        running.set(false);
+        flushThread.join();
+
+        // 刷新线程停止之后还留在缓冲区中的数据一定已经调度了刷新，这时候再放入数据不需要重新调度
+        var flushScheduled = !buffer.put(pending(Long.MAX_VALUE, 1L));
+        var remain = buffer.drain();
+        remain.removeIf(it -> it.getTsId() == Long.MAX_VALUE);
+        if (!remain.isEmpty()) {
+            Assert.assertTrue(flushScheduled);
+        }
+        drained.addAll(remain);
+        Assert.assertTrue(scheduled.get() > 0);
+
+        var lastLoveMap = new HashMap<Long, Long>();
+        for (var pending : drained) {
+            var last = lastLoveMap.getOrDefault(pending.getTsId(), 0L);
+            // 同一个时间片的点赞数据按照顺序刷新出去
+            Assert.assertTrue(pending.getLove() > last);
+            lastLoveMap.put(pending.getTsId(), pending.getLove());
+        }
+        Assert.assertEquals(threadSize, lastLoveMap.size());
+        lastLoveMap.values().forEach(it -> Assert.assertEquals(loveCount, it.longValue()));
+        Assert.assertTrue(buffer.drain().isEmpty());
+    }
+
+    private LoveTsBuffer.LoveTsPending pending(long tsId, long love) {
+        return new LoveTsBuffer.LoveTsPending(tsId, love, love, null, null, null);
+    }
+
+}
@@ -151,7 +151,7 @@ public class AdminController {
         timeSliceService.timeSliceCaches.invalidate(timeSliceId);
 
         // 使时间片重新进入审核状态
-        var id = MongoIdUtils.getIncrementIdFromMongoDefault(TsReviewEntity.class);
+        var id = MongoIdUtils.getIncrementIdFromRangeDefault(TsReviewEntity.class);
         OrmContext.getAccessor().insert(TsReviewEntity.valueOf(id, timeSliceEntity.getUserId(), timeSliceEntity, null));
 
         return BaseResponse.valueOf(CodeEnum.OK);
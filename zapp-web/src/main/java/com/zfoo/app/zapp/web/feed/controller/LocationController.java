@@ -71,8 +71,8 @@ public class LocationController {
                 var result = new ArrayList<Pair<Long, List<Long>>>();
                 for (var feed : locationFeeds) {
                     var list = CollectionUtils.listJoinList(true
-                            , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, feed.getTopLoveLinks().stream().map(topTsLove -> topTsLove.getKey()).collect(Collectors.toList()))
-                            , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, feed.getTrendLoveLinks().stream().map(trendLove -> trendLove.getKey()).collect(Collectors.toList()))
+                            , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, feed.getTopLoveLinks().keys())
+                            , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, feed.getTrendLoveLinks().keys())
                             , new Pair<>(AppConstant.COMMON_FEED_PAGE_NEW_LINK_SIZE, feed.getNewLinks())
                             , new Pair<>(AppConstant.COMMON_FEED_PAGE_RECOMMEND_LINK_SIZE, feed.getRecommendLinks()));
                     result.add(new Pair<>(feed.getId(), list));
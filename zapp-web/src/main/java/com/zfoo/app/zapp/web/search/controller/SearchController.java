@@ -13,11 +13,9 @@
 
 package com.zfoo.app.zapp.web.search.controller;
 
-import com.mongodb.client.model.Projections;
-import com.mongodb.client.model.Sorts;
 import com.zfoo.app.zapp.common.constant.AppConstant;
 import com.zfoo.app.zapp.common.constant.LocationConstant;
-import com.zfoo.app.zapp.common.entity.search.SearchEntity;
+import com.zfoo.app.zapp.common.entity.search.HotSearchEntity;
 import com.zfoo.app.zapp.common.result.BaseResponse;
 import com.zfoo.app.zapp.common.result.CodeEnum;
 import com.zfoo.app.zapp.web.search.model.SearchHintVO;
@@ -143,19 +141,12 @@ public class SearchController implements ApplicationListener<AppStartEvent> {
         hotSearchCache = SingleCache.build(10 * TimeUtils.MILLIS_PER_MINUTE, new Supplier<List<SearchHotVO>>() {
             @Override
             public List<SearchHotVO> get() {
-                var hotSearchList = new ArrayList<SearchEntity>();
-                OrmContext.getOrmManager()
-                        .getCollection(SearchEntity.class)
-                        .find()
-                        .sort(Sorts.descending("score"))
-                        .projection(Projections.include("_id", "score"))
-                        .limit(10)
-                        .forEach(it -> hotSearchList.add(it));
+                var hotSearchList = HotSearchEntity.merge(OrmContext.getQuery().queryAll(HotSearchEntity.class), AppConstant.HOT_SEARCH_SIZE);
 
                 var result = new ArrayList<SearchHotVO>();
                 for (var i = 0; i < hotSearchList.size(); i++) {
-                    var entity = hotSearchList.get(i);
-                    result.add(SearchHotVO.valueOf(AppConstant.CHIP_HOT_TYPE, i + 1, entity.getId(), entity.getScore()));
+                    var hot = hotSearchList.get(i);
+                    result.add(SearchHotVO.valueOf(AppConstant.CHIP_HOT_TYPE, i + 1, hot.getQuery(), hot.getScore()));
                 }
                 return result;
             }
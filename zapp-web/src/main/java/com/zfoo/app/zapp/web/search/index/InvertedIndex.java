@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.web.search.index;
+
+import com.zfoo.protocol.collection.CollectionUtils;
+import com.zfoo.protocol.util.StringUtils;
+import org.ansj.splitWord.analysis.ToAnalysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 时间片内容的内存倒排索引，使用ansj的ToAnalysis分词，BM25打分
+ * <p>
+ * 支持增量的添加，更新和删除；搜索使用读锁，修改使用写锁
+ * <p>
+ * 注意：搜索是分词之后的词完全匹配，不再是之前数据库中的子串匹配，只输入一个词的一部分（比如banana中的nan）不会命中
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-20 15:32
+ */
+public class InvertedIndex {
+
+    private static final double K1 = 1.2D;
+
+    private static final double B = 0.75D;
+
+    /**
+     * ansj中标点符号的词性
+     */
+    private static final String PUNCTUATION_NATURE = "w";
+
+    private static class DocInfo {
+        private final int length;
+        private final long love;
+        private final String[] terms;
+
+        private DocInfo(int length, long love, String[] terms) {
+            this.length = length;
+            this.love = love;
+            this.terms = terms;
+        }
+    }
+
+    private static class ScoreDoc {
+        private final long docId;
+        private final double score;
+        private final long love;
+
+        private ScoreDoc(long docId, double score, long love) {
+            this.docId = docId;
+            this.score = score;
+            this.love = love;
+        }
+    }
+
+    /**
+     * 分数高的排在前面，分数一样的时候喜欢多的排在前面，再一样的时候新的时间片排在前面
+     */
+    private static final Comparator<ScoreDoc> SCORE_COMPARATOR = Comparator.<ScoreDoc>comparingDouble(it -> it.score)
+            .thenComparingLong(it -> it.love)
+            .thenComparingLong(it -> it.docId)
+            .reversed();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    private final Map<Long, DocInfo> docs = new HashMap<>();
+
+    private long totalLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 分词，去掉空白和标点符号，英文统一使用小写
+     */
+    public static List<String> analyze(String text) {
+        if (StringUtils.isBlank(text)) {
+            return Collections.emptyList();
+        }
+
+        var terms = new ArrayList<String>();
+        for (var term : ToAnalysis.parse(text).getTerms()) {
+            if (PUNCTUATION_NATURE.equals(term.getNatureStr())) {
+                continue;
+            }
+            var name = term.getName().trim();
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+            terms.add(name.toLowerCase());
+        }
+        return terms;
+    }
+
+    /**
+     * 添加一个文档，如果文档已经存在则替换
+     */
+    public void add(long docId, String content, long love) {
+        var terms = analyze(content);
+
+        var termFrequencies = new HashMap<String, Integer>();
+        for (var term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeWithoutLock(docId);
+
+            if (termFrequencies.isEmpty()) {
+                return;
+            }
+
+            for (var entry : termFrequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), it -> new PostingList()).add(docId, entry.getValue());
+            }
+            docs.put(docId, new DocInfo(terms.size(), love, termFrequencies.keySet().toArray(new String[0])));
+            totalLength += terms.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            removeWithoutLock(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeWithoutLock(long docId) {
+        var docInfo = docs.remove(docId);
+        if (docInfo == null) {
+            return;
+        }
+
+        totalLength -= docInfo.length;
+        for (var term : docInfo.terms) {
+            var postingList = postings.get(term);
+            if (postingList == null) {
+                continue;
+            }
+            postingList.remove(docId);
+            if (postingList.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * 使用BM25给包含查询词的文档打分，返回分数最高的limit个文档id
+     */
+    public List<Long> search(String query, int limit) {
+        var queryTerms = analyze(query);
+        if (CollectionUtils.isEmpty(queryTerms) || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        var scores = new HashMap<Long, Double>();
+
+        lock.readLock().lock();
+        try {
+            var docCount = docs.size();
+            if (docCount == 0) {
+                return Collections.emptyList();
+            }
+            var avgLength = (double) totalLength / docCount;
+
+            for (var term : queryTerms) {
+                var postingList = postings.get(term);
+                if (postingList == null) {
+                    continue;
+                }
+
+                var df = postingList.size();
+                var idf = Math.log(1.0D + (docCount - df + 0.5D) / (df + 0.5D));
+                postingList.forEach((docId, tf) -> {
+                    var length = docs.get(docId).length;
+                    var score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+                    scores.merge(docId, score, Double::sum);
+                });
+            }
+
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            // 小顶堆保留分数最高的limit个文档
+            var heap = new PriorityQueue<ScoreDoc>(limit + 1, SCORE_COMPARATOR.reversed());
+            for (var entry : scores.entrySet()) {
+                heap.offer(new ScoreDoc(entry.getKey(), entry.getValue(), docs.get(entry.getKey()).love));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+
+            var scoreDocs = new ArrayList<>(heap);
+            scoreDocs.sort(SCORE_COMPARATOR);
+            var result = new ArrayList<Long>(scoreDocs.size());
+            for (var scoreDoc : scoreDocs) {
+                result.add(scoreDoc.docId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int docSize() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termSize() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+}
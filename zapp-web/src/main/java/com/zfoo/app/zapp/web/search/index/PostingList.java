@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.web.search.index;
+
+import java.util.Arrays;
+
+/**
+ * 一个词的倒排列表，文档id从小到大排列，每一项是(文档id和上一个文档id的差值, 词频)，都使用varint压缩
+ * <p>
+ * 时间片的id是自增的，新增的文档直接追加在末尾；只有编辑和删除的时候才需要重新编码整个列表
+ * <p>
+ * 非线程安全，由InvertedIndex的读写锁保护
+ *
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-20 15:32
+ */
+public class PostingList {
+
+    @FunctionalInterface
+    public interface PostingVisitor {
+        void visit(long docId, int termFrequency);
+    }
+
+    private byte[] bytes = new byte[8];
+
+    private int length;
+
+    private int size;
+
+    private long lastDocId = -1;
+
+    public void add(long docId, int termFrequency) {
+        if (docId > lastDocId) {
+            append(docId, termFrequency);
+            return;
+        }
+
+        // 不是递增的文档id，重新编码整个列表
+        var docIds = new long[size + 1];
+        var termFrequencies = new int[size + 1];
+        var count = 0;
+        var inserted = false;
+        var reader = new Reader(bytes);
+        var currentDocId = 0L;
+        for (var i = 0; i < size; i++) {
+            currentDocId += reader.readVarLong();
+            var tf = (int) reader.readVarLong();
+
+            if (!inserted && docId <= currentDocId) {
+                docIds[count] = docId;
+                termFrequencies[count++] = termFrequency;
+                inserted = true;
+                if (docId == currentDocId) {
+                    continue;
+                }
+            }
+            docIds[count] = currentDocId;
+            termFrequencies[count++] = tf;
+        }
+
+        rebuild(docIds, termFrequencies, count);
+    }
+
+    public boolean remove(long docId) {
+        if (docId > lastDocId) {
+            return false;
+        }
+
+        var docIds = new long[size];
+        var termFrequencies = new int[size];
+        var count = 0;
+        var reader = new Reader(bytes);
+        var currentDocId = 0L;
+        for (var i = 0; i < size; i++) {
+            currentDocId += reader.readVarLong();
+            var tf = (int) reader.readVarLong();
+
+            if (currentDocId == docId) {
+                continue;
+            }
+            docIds[count] = currentDocId;
+            termFrequencies[count++] = tf;
+        }
+
+        if (count == size) {
+            return false;
+        }
+
+        rebuild(docIds, termFrequencies, count);
+        return true;
+    }
+
+    public void forEach(PostingVisitor visitor) {
+        var reader = new Reader(bytes);
+        var docId = 0L;
+        for (var i = 0; i < size; i++) {
+            docId += reader.readVarLong();
+            var tf = (int) reader.readVarLong();
+            visitor.visit(docId, tf);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 压缩后占用的字节数
+     */
+    public int byteSize() {
+        return length;
+    }
+
+    private void rebuild(long[] docIds, int[] termFrequencies, int count) {
+        bytes = new byte[Math.max(8, length)];
+        length = 0;
+        size = 0;
+        lastDocId = -1;
+        for (var i = 0; i < count; i++) {
+            append(docIds[i], termFrequencies[i]);
+        }
+    }
+
+    private void append(long docId, int termFrequency) {
+        var delta = (lastDocId < 0) ? docId : docId - lastDocId;
+        writeVarLong(delta);
+        writeVarLong(termFrequency);
+        lastDocId = docId;
+        size++;
+    }
+
+    private void writeVarLong(long value) {
+        // 一个long最多需要10个字节
+        if (length + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + 10));
+        }
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * 读取的游标放在局部对象中，多个线程可以同时遍历同一个倒排列表
+     */
+    private static class Reader {
+        private final byte[] bytes;
+        private int offset;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long readVarLong() {
+            var value = 0L;
+            var shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+}
@@ -26,8 +26,15 @@ import com.zfoo.app.zapp.common.entity.feed.FeedPersonEntity;
 import com.zfoo.app.zapp.common.entity.time.TimeSliceEntity;
 import com.zfoo.app.zapp.common.model.time.TimeSliceVO;
 import com.zfoo.app.zapp.common.protocol.feed.search.SearchCountAsk;
+import com.zfoo.app.zapp.web.search.index.InvertedIndex;
+import com.zfoo.app.zapp.web.time.model.event.DeleteTimeSliceEvent;
+import com.zfoo.app.zapp.web.time.model.event.PassEditTimeSliceEvent;
+import com.zfoo.app.zapp.web.time.model.event.PassReviewTimeSliceEvent;
 import com.zfoo.app.zapp.web.time.service.ITimeSliceService;
 import com.zfoo.app.zapp.web.word.service.IWordService;
+import com.zfoo.event.manager.EventBus;
+import com.zfoo.event.model.anno.EventReceiver;
+import com.zfoo.event.model.event.AppStartEvent;
 import com.zfoo.net.NetContext;
 import com.zfoo.net.util.SimpleCache;
 import com.zfoo.orm.OrmContext;
@@ -36,9 +43,13 @@ import com.zfoo.protocol.collection.ArrayUtils;
 import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.model.Pair;
 import com.zfoo.protocol.util.StringUtils;
+import com.zfoo.scheduler.model.anno.Scheduler;
 import com.zfoo.scheduler.util.TimeUtils;
 import org.ansj.splitWord.analysis.ToAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -54,22 +65,17 @@ import java.util.stream.Collectors;
  * @since 2020-09-12 13:14
  */
 @Component
-public class SearchService implements ISearchService {
+public class SearchService implements ISearchService, ApplicationListener<AppStartEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
 
     public SimpleCache<String, List<Long>> searchCaches = SimpleCache.build(
             10 * TimeUtils.MILLIS_PER_MINUTE, 5 * TimeUtils.MILLIS_PER_MINUTE, 1_0000
             , queries -> {
                 var result = new ArrayList<Pair<String, List<Long>>>();
                 for (var query : queries) {
-                    // TODO:这里的语法没有办法用到最左匹配原则的索引，考虑后期引入es
                     // content匹配
-                    var collection = OrmContext.getOrmManager().getCollection(TimeSliceEntity.class);
-                    var regex = StringUtils.format("^.*{}.*", query);
-                    var contentList = new ArrayList<Long>();
-                    collection.find(Filters.regex("content", regex))
-                            .projection(Projections.include("_id"))
-                            .sort(Sorts.descending("love"))
-                            .forEach((Consumer<TimeSliceEntity>) entity -> contentList.add(entity.getId()));
+                    var contentList = searchContent(query);
 
                     // location匹配
                     var locationId = LocationConstant.locationNameMap.get(query);
@@ -78,8 +84,8 @@ public class SearchService implements ISearchService {
                         var locationFeed = OrmContext.getAccessor().load(locationId, FeedLocationEntity.class);
                         if (locationFeed != null) {
                             var joinList = CollectionUtils.listJoinList(true
-                                    , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, locationFeed.getTopLoveLinks().stream().map(topTsLove -> topTsLove.getKey()).collect(Collectors.toList()))
-                                    , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, locationFeed.getTrendLoveLinks().stream().map(trendLove -> trendLove.getKey()).collect(Collectors.toList()))
+                                    , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, locationFeed.getTopLoveLinks().keys())
+                                    , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, locationFeed.getTrendLoveLinks().keys())
                                     , new Pair<>(AppConstant.COMMON_FEED_PAGE_NEW_LINK_SIZE, locationFeed.getNewLinks())
                                     , new Pair<>(AppConstant.COMMON_FEED_PAGE_RECOMMEND_LINK_SIZE, locationFeed.getRecommendLinks()));
                             locationList.addAll(joinList);
@@ -94,8 +100,8 @@ public class SearchService implements ISearchService {
                             var itemFeed = OrmContext.getAccessor().load(item.getId(), FeedItemEntity.class);
                             if (itemFeed != null) {
                                 var joinList = CollectionUtils.listJoinList(true
-                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, itemFeed.getTopLoveLinks().stream().map(topTsLove -> topTsLove.getKey()).collect(Collectors.toList()))
-                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, itemFeed.getTrendLoveLinks().stream().map(trendLove -> trendLove.getKey()).collect(Collectors.toList()))
+                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, itemFeed.getTopLoveLinks().keys())
+                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, itemFeed.getTrendLoveLinks().keys())
                                         , new Pair<>(AppConstant.COMMON_FEED_PAGE_NEW_LINK_SIZE, itemFeed.getNewLinks())
                                         , new Pair<>(AppConstant.COMMON_FEED_PAGE_RECOMMEND_LINK_SIZE, itemFeed.getRecommendLinks()));
                                 itemList.addAll(joinList);
@@ -111,8 +117,8 @@ public class SearchService implements ISearchService {
                             var personFeed = OrmContext.getAccessor().load(person.getId(), FeedPersonEntity.class);
                             if (personFeed != null) {
                                 var joinList = CollectionUtils.listJoinList(true
-                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, personFeed.getTopLoveLinks().stream().map(topTsLove -> topTsLove.getKey()).collect(Collectors.toList()))
-                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, personFeed.getTrendLoveLinks().stream().map(trendLove -> trendLove.getKey()).collect(Collectors.toList()))
+                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TOP_LINK_SIZE, personFeed.getTopLoveLinks().keys())
+                                        , new Pair<>(AppConstant.COMMON_FEED_PAGE_TREND_LINK_SIZE, personFeed.getTrendLoveLinks().keys())
                                         , new Pair<>(AppConstant.COMMON_FEED_PAGE_NEW_LINK_SIZE, personFeed.getNewLinks())
                                         , new Pair<>(AppConstant.COMMON_FEED_PAGE_RECOMMEND_LINK_SIZE, personFeed.getRecommendLinks()));
                                 personList.addAll(joinList);
@@ -135,6 +141,17 @@ public class SearchService implements ISearchService {
                 return result;
             }
             , key -> Collections.emptyList());
+
+    /**
+     * 时间片内容的倒排索引，启动的时候从数据库构建，之后通过时间片的审核，编辑和删除事件增量更新
+     */
+    private volatile InvertedIndex contentIndex;
+
+    /**
+     * 正在重建的倒排索引，重建的过程中收到的事件也要同步更新到这个索引
+     */
+    private volatile InvertedIndex rebuildingContentIndex;
+
     @Autowired
     private ITimeSliceService timeSliceService;
     @Autowired
@@ -178,5 +195,89 @@ public class SearchService implements ISearchService {
         return timeSliceService.existTimeSliceList(searchList);
     }
 
+    private List<Long> searchContent(String query) {
+        var index = contentIndex;
+        if (index != null) {
+            return index.search(query, AppConstant.SEARCH_RESULT_LIMIT_SIZE);
+        }
+
+        // 倒排索引还没有构建完成的时候，使用数据库查询
+        var collection = OrmContext.getOrmManager().getCollection(TimeSliceEntity.class);
+        var regex = StringUtils.format("^.*{}.*", query);
+        var contentList = new ArrayList<Long>();
+        collection.find(Filters.regex("content", regex))
+                .projection(Projections.include("_id"))
+                .sort(Sorts.descending("love"))
+                .forEach((Consumer<TimeSliceEntity>) entity -> contentList.add(entity.getId()));
+        return contentList;
+    }
+
+    @Override
+    public void onApplicationEvent(AppStartEvent appStartEvent) {
+        EventBus.asyncExecute().execute(() -> rebuildContentIndex());
+    }
+
+    /**
+     * 每天凌晨重建一次倒排索引，修正多个web服务器之间没有同步的事件
+     */
+    @Scheduler(cron = "0 0 4 * * ?")
+    public void cronRebuildContentIndex() {
+        EventBus.asyncExecute().execute(() -> rebuildContentIndex());
+    }
+
+    private synchronized void rebuildContentIndex() {
+        try {
+            var startTime = TimeUtils.currentTimeMillis();
+            var index = new InvertedIndex();
+            rebuildingContentIndex = index;
+
+            OrmContext.getOrmManager()
+                    .getCollection(TimeSliceEntity.class)
+                    .find()
+                    .projection(Projections.include("_id", "content", "love"))
+                    .forEach((Consumer<TimeSliceEntity>) entity -> index.add(entity.getId(), entity.getContent(), entity.getLove()));
+
+            contentIndex = index;
+            logger.info("时间片倒排索引构建完成[docSize:{}][termSize:{}][time:{}ms]", index.docSize(), index.termSize(), TimeUtils.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            logger.error("时间片倒排索引构建未知异常", e);
+        } finally {
+            rebuildingContentIndex = null;
+        }
+    }
+
+    private void updateContentIndex(Consumer<InvertedIndex> consumer) {
+        var index = contentIndex;
+        if (index != null) {
+            consumer.accept(index);
+        }
+        var rebuildingIndex = rebuildingContentIndex;
+        if (rebuildingIndex != null && rebuildingIndex != index) {
+            consumer.accept(rebuildingIndex);
+        }
+    }
+
+    @EventReceiver
+    public void onPassReviewTimeSliceEvent(PassReviewTimeSliceEvent event) {
+        var ts = event.getNewEntity();
+        updateContentIndex(index -> index.add(ts.getId(), ts.getContent(), ts.getLove()));
+    }
+
+    @EventReceiver
+    public void onPassEditTimeSliceEvent(PassEditTimeSliceEvent event) {
+        var oldTs = event.getOldEntity();
+        var newTs = event.getNewEntity();
+        updateContentIndex(index -> index.add(oldTs.getId(), newTs.getContent(), oldTs.getLove()));
+    }
+
+    @EventReceiver
+    public void onDeleteTimeSliceEvent(DeleteTimeSliceEvent event) {
+        var timeSlices = event.getTimeSlices();
+        if (CollectionUtils.isEmpty(timeSlices)) {
+            return;
+        }
+        updateContentIndex(index -> timeSlices.forEach(it -> index.remove(it.getId())));
+    }
+
 
 }
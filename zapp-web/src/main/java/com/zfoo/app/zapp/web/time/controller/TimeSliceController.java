@@ -189,7 +189,7 @@ public class TimeSliceController {
         }
 
 
-        var id = MongoIdUtils.getIncrementIdFromMongoDefault(ReportEntity.class);
+        var id = MongoIdUtils.getIncrementIdFromRangeDefault(ReportEntity.class);
         var entity = ReportEntity.valueOf(id, timeSliceId, optionType, selectedItems, content, fileLinks);
         OrmContext.getAccessor().insert(entity);
         return BaseResponse.valueOf(CodeEnum.OK_QUIETLY);
@@ -124,7 +124,7 @@ public class TsCreateController {
             var endDateTime = TimeUtils.stringToDate(end);
 
             // 插入到数据库
-            var id = MongoIdUtils.getIncrementIdFromMongoDefault(TsReviewEntity.class);
+            var id = MongoIdUtils.getIncrementIdFromRangeDefault(TsReviewEntity.class);
             var timeSliceEntity = TimeSliceEntity.valueOf(0L, userId, TimeUtils.now(), type, startDateTime.getTime(), endDateTime.getTime()
                     , locations, persons, items, content, images
                     , video, key, albums);
@@ -347,7 +347,7 @@ public class TsCreateController {
         for (var review : reviewList) {
             var tsEntity = review.getTimeSlice();
             var id = tsEntity.getId() == 0L
-                    ? MongoIdUtils.getIncrementIdFromMongoDefault(TimeSliceEntity.class)
+                    ? MongoIdUtils.getIncrementIdFromRangeDefault(TimeSliceEntity.class)
                     : tsEntity.getId();
             tsEntity.setId(id);
             tsList.add(tsEntity);
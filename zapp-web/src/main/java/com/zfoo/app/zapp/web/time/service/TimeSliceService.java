@@ -396,7 +396,7 @@ public class TimeSliceService implements ITimeSliceService {
         var needInsertItems = notExistItems.stream()
                 .filter(it -> list.stream().noneMatch(word -> it.equals(word.getWord().trim())))
                 .map(it -> {
-                    var id = MongoIdUtils.getIncrementIdFromMongoDefault(WordEntity.class);
+                    var id = MongoIdUtils.getIncrementIdFromRangeDefault(WordEntity.class);
                     itemIdSet.add(id);
                     return WordEntity.valueOf(id, it.trim());
                 })
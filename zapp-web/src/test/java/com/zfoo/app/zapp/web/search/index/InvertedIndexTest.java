@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.web.search.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-20 15:32
+ */
+public class InvertedIndexTest {
+
+    @Test
+    public void analyzeTest() {
+        Assert.assertTrue(InvertedIndex.analyze(null).isEmpty());
+        Assert.assertTrue(InvertedIndex.analyze("  ").isEmpty());
+
+        // 去掉标点符号，英文统一使用小写
+        var terms = InvertedIndex.analyze("Hello, World!");
+        Assert.assertTrue(terms.contains("hello"));
+        Assert.assertTrue(terms.contains("world"));
+        Assert.assertFalse(terms.contains(","));
+        Assert.assertFalse(terms.contains("!"));
+    }
+
+    @Test
+    public void searchTest() {
+        var index = new InvertedIndex();
+        index.add(1L, "apple banana", 0L);
+        index.add(2L, "apple apple apple", 0L);
+        index.add(3L, "banana cherry", 0L);
+
+        Assert.assertEquals(3, index.docSize());
+        // 词频高的文档排在前面
+        Assert.assertEquals(List.of(2L, 1L), index.search("apple", 10));
+        // 命中多个查询词的文档排在前面
+        Assert.assertEquals(1L, index.search("apple banana", 10).get(0).longValue());
+        Assert.assertEquals(List.of(3L), index.search("CHERRY", 10));
+        Assert.assertTrue(index.search("durian", 10).isEmpty());
+        Assert.assertTrue(index.search("apple", 0).isEmpty());
+        Assert.assertEquals(1, index.search("apple", 1).size());
+    }
+
+    /**
+     * 搜索按照分词之后的词匹配，不再是数据库中的子串匹配，词的一部分不会命中
+     */
+    @Test
+    public void tokenMatchTest() {
+        var index = new InvertedIndex();
+        index.add(1L, "banana", 0L);
+
+        Assert.assertEquals(List.of(1L), index.search("banana", 10));
+        Assert.assertTrue(index.search("nan", 10).isEmpty());
+        Assert.assertTrue(index.search("banan", 10).isEmpty());
+    }
+
+    @Test
+    public void loveOrderTest() {
+        var index = new InvertedIndex();
+        index.add(1L, "apple", 10L);
+        index.add(2L, "apple", 30L);
+        index.add(3L, "apple", 30L);
+
+        // 分数一样的时候喜欢多的排在前面，再一样的时候新的时间片排在前面
+        Assert.assertEquals(List.of(3L, 2L, 1L), index.search("apple", 10));
+    }
+
+    @Test
+    public void updateAndRemoveTest() {
+        var index = new InvertedIndex();
+        index.add(1L, "apple", 0L);
+        index.add(2L, "banana", 0L);
+
+        // 再次添加相同的文档替换之前的内容
+        index.add(1L, "cherry", 0L);
+        Assert.assertTrue(index.search("apple", 10).isEmpty());
+        Assert.assertEquals(List.of(1L), index.search("cherry", 10));
+        Assert.assertEquals(2, index.docSize());
+        Assert.assertEquals(2, index.termSize());
+
+        index.remove(1L);
+        Assert.assertTrue(index.search("cherry", 10).isEmpty());
+        Assert.assertEquals(1, index.docSize());
+        Assert.assertEquals(1, index.termSize());
+
+        // 内容为空的文档不会进入索引
+        index.add(2L, "", 0L);
+        Assert.assertEquals(0, index.docSize());
+        Assert.assertEquals(0, index.termSize());
+        Assert.assertTrue(index.search("banana", 10).isEmpty());
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.app.zapp.web.search.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * @author jaysunxiao
+ * @version 1.0
+ * @since 2021-03-20 15:32
+ */
+public class PostingListTest {
+
+    @Test
+    public void appendTest() {
+        var postingList = new PostingList();
+        postingList.add(1L, 3);
+        postingList.add(200L, 1);
+        postingList.add(Long.MAX_VALUE, 2);
+
+        Assert.assertEquals(3, postingList.size());
+        Assert.assertEquals(List.of(1L, 3L, 200L, 1L, Long.MAX_VALUE, 2L), toList(postingList));
+
+        // 差值使用varint压缩，1和199各占1到2个字节
+        Assert.assertTrue(postingList.byteSize() < 3 * 16);
+    }
+
+    @Test
+    public void insertAndUpdateTest() {
+        var postingList = new PostingList();
+        postingList.add(10L, 1);
+        postingList.add(30L, 1);
+
+        // 不是递增的文档id插入到中间
+        postingList.add(20L, 5);
+        // 已经存在的文档id更新词频
+        postingList.add(10L, 7);
+        postingList.add(5L, 2);
+
+        Assert.assertEquals(4, postingList.size());
+        Assert.assertEquals(List.of(5L, 2L, 10L, 7L, 20L, 5L, 30L, 1L), toList(postingList));
+
+        // 重新编码之后依然可以直接追加
+        postingList.add(40L, 4);
+        Assert.assertEquals(List.of(5L, 2L, 10L, 7L, 20L, 5L, 30L, 1L, 40L, 4L), toList(postingList));
+    }
+
+    @Test
+    public void removeTest() {
+        var postingList = new PostingList();
+        postingList.add(1L, 1);
+        postingList.add(2L, 2);
+        postingList.add(3L, 3);
+
+        Assert.assertFalse(postingList.remove(4L));
+        Assert.assertTrue(postingList.remove(2L));
+        Assert.assertFalse(postingList.remove(2L));
+        Assert.assertEquals(List.of(1L, 1L, 3L, 3L), toList(postingList));
+
+        Assert.assertTrue(postingList.remove(3L));
+        Assert.assertTrue(postingList.remove(1L));
+        Assert.assertTrue(postingList.isEmpty());
+
+        postingList.add(2L, 1);
+        Assert.assertEquals(List.of(2L, 1L), toList(postingList));
+    }
+
+    @Test
+    public void randomTest() {
+        var random = new Random(1);
+        var postingList = new PostingList();
+        var expectMap = new TreeMap<Long, Integer>();
+        for (var i = 0; i < 10_000; i++) {
+            var docId = (long) random.nextInt(3_000);
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(expectMap.remove(docId) != null, postingList.remove(docId));
+            } else {
+                var tf = random.nextInt(100) + 1;
+                expectMap.put(docId, tf);
+                postingList.add(docId, tf);
+            }
+        }
+
+        var expectList = new ArrayList<Long>();
+        expectMap.forEach((docId, tf) -> {
+            expectList.add(docId);
+            expectList.add((long) tf);
+        });
+        Assert.assertEquals(expectMap.size(), postingList.size());
+        Assert.assertEquals(expectList, toList(postingList));
+    }
+
+    private List<Long> toList(PostingList postingList) {
+        var list = new ArrayList<Long>();
+        postingList.forEach((docId, tf) -> {
+            list.add(docId);
+            list.add((long) tf);
+        });
+        return list;
+    }
+
+}
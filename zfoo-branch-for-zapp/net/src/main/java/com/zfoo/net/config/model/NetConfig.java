@@ -39,6 +39,23 @@ public class NetConfig {
     private boolean generateLuaProtocol;
     private boolean generateGdProtocol;
 
+    /**
+     * 是否给所有的session开启flush合并，参见WriteCoalescingHandler
+     */
+    private boolean writeCoalescing;
+
+    /**
+     * 包体大于等于这个字节数的时候使用LZ4压缩，默认0表示不压缩，参见PacketService
+     * <p>
+     * 没有开启压缩的节点会拒绝压缩的包，所以要等所有的节点都能解析压缩标识之后再开启，并且只在服务器之间或者支持压缩的客户端上开启
+     */
+    private int compressThreshold;
+
+    /**
+     * 逗号分隔的协议号，不为空的时候只压缩这些协议
+     */
+    private String compressProtocols;
+
     private RegistryConfig registry;
     private MonitorConfig monitor;
 
@@ -154,6 +171,30 @@ public class NetConfig {
         this.generateGdProtocol = generateGdProtocol;
     }
 
+    public boolean isWriteCoalescing() {
+        return writeCoalescing;
+    }
+
+    public void setWriteCoalescing(boolean writeCoalescing) {
+        this.writeCoalescing = writeCoalescing;
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    public String getCompressProtocols() {
+        return compressProtocols;
+    }
+
+    public void setCompressProtocols(String compressProtocols) {
+        this.compressProtocols = compressProtocols;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -30,7 +30,7 @@ public class ProviderConfig {
     public static transient final int DEFAULT_PORT = 12400;
 
     /**
-     * 对应于ITaskDispatch
+     * 对应于ITaskDispatch，可选random，sessionId，consistent-hash，work-stealing
      */
     private String taskDispatch;
 
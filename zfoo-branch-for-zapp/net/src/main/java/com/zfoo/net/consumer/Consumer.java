@@ -14,6 +14,8 @@
 package com.zfoo.net.consumer;
 
 import com.zfoo.net.NetContext;
+import com.zfoo.net.consumer.batch.BatchAnswer;
+import com.zfoo.net.consumer.batch.BatchAsk;
 import com.zfoo.net.packet.common.Error;
 import com.zfoo.net.router.Router;
 import com.zfoo.net.router.answer.AsyncAnswer;
@@ -24,6 +26,8 @@ import com.zfoo.net.router.exception.ErrorResponseException;
 import com.zfoo.net.router.exception.NetTimeOutException;
 import com.zfoo.net.router.exception.UnexpectedProtocolException;
 import com.zfoo.net.router.route.SignalBridge;
+import com.zfoo.net.session.model.Session;
+import com.zfoo.net.task.TaskBus;
 import com.zfoo.protocol.IPacket;
 import com.zfoo.protocol.util.JsonUtils;
 import com.zfoo.protocol.util.StringUtils;
@@ -32,6 +36,12 @@ import com.zfoo.util.math.RandomUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -94,8 +104,11 @@ public class Consumer implements IConsumer {
             loadBalancer.afterLoadBalancer(session, packet, clientSignalAttachment);
             return syncAnswer;
         } catch (TimeoutException e) {
-            throw new NetTimeOutException(StringUtils.format("syncAsk timeout exception, ask:[{}], attachment:[{}]"
+            var exception = new NetTimeOutException(StringUtils.format("syncAsk timeout exception, ask:[{}], attachment:[{}]"
                     , JsonUtils.object2String(packet), JsonUtils.object2String(clientSignalAttachment)));
+            // 让等待responseFuture的load balancer也能感知到超时
+            clientSignalAttachment.getResponseFuture().completeExceptionally(exception);
+            throw exception;
         } finally {
             SignalBridge.removeSignalAttachment(clientSignalAttachment);
         }
@@ -115,4 +128,92 @@ public class Consumer implements IConsumer {
         return asyncAnswer;
     }
 
+    @Override
+    public List<IPacket> batchAsk(List<IPacket> packets, List<Object> arguments) throws Exception {
+        var future = askAll(packets, arguments);
+        List<IPacket> answers;
+        try {
+            answers = future.get(Router.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            var exception = new NetTimeOutException(StringUtils.format("batchAsk timeout exception, ask:[{}]", JsonUtils.object2String(packets)));
+            future.completeExceptionally(exception);
+            throw exception;
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        }
+
+        for (var answer : answers) {
+            if (answer.protocolId() == Error.errorProtocolId()) {
+                throw new ErrorResponseException((Error) answer);
+            }
+        }
+        return answers;
+    }
+
+    @Override
+    public CompletableFuture<List<IPacket>> asyncAskAll(List<IPacket> packets, List<Object> arguments) {
+        var argument = arguments.isEmpty() ? null : arguments.get(0);
+        var executorConsistentHash = (argument == null) ? RandomUtils.randomInt() : HashUtils.fnvHash(argument);
+        // responseFuture在IO线程完成，切换到TaskBus线程再回调业务逻辑
+        return askAll(packets, arguments).thenApplyAsync(answers -> answers, TaskBus.executor(executorConsistentHash));
+    }
+
+    /**
+     * 按照负载均衡选出的服务提供者分组，只有一个请求的分组直接发送，多个请求的分组合并成一个BatchAsk发送
+     */
+    private CompletableFuture<List<IPacket>> askAll(List<IPacket> packets, List<Object> arguments) {
+        if (packets.size() != arguments.size()) {
+            throw new IllegalArgumentException(StringUtils.format("packets size:[{}] not equal arguments size:[{}]", packets.size(), arguments.size()));
+        }
+
+        var loadBalancer = NetContext.getConfigManager().consumerLoadBalancer();
+        var groups = new LinkedHashMap<Session, List<Integer>>();
+        for (var i = 0; i < packets.size(); i++) {
+            var session = loadBalancer.loadBalancer(packets.get(i), arguments.get(i));
+            groups.computeIfAbsent(session, it -> new ArrayList<>()).add(i);
+        }
+
+        var answers = new IPacket[packets.size()];
+        var futures = new CompletableFuture<?>[groups.size()];
+        var index = 0;
+        for (var entry : groups.entrySet()) {
+            var session = entry.getKey();
+            var indexes = entry.getValue();
+
+            var executorConsistentHashes = new int[indexes.size()];
+            var groupPackets = new ArrayList<IPacket>(indexes.size());
+            for (var i = 0; i < indexes.size(); i++) {
+                var argument = arguments.get(indexes.get(i));
+                executorConsistentHashes[i] = (argument == null) ? RandomUtils.randomInt() : HashUtils.fnvHash(argument);
+                groupPackets.add(packets.get(indexes.get(i)));
+            }
+
+            var packet = (indexes.size() == 1) ? groupPackets.get(0) : BatchAsk.valueOf(groupPackets, executorConsistentHashes);
+            var clientSignalAttachment = new SignalAttachment();
+            clientSignalAttachment.setExecutorConsistentHash(executorConsistentHashes[0]);
+
+            futures[index++] = clientSignalAttachment.getResponseFuture().thenAccept(responsePacket -> {
+                loadBalancer.afterLoadBalancer(session, packet, clientSignalAttachment);
+                if (responsePacket.protocolId() != BatchAnswer.PROTOCOL_ID) {
+                    // 单独发送的请求，或者整个BatchAsk处理失败
+                    indexes.forEach(it -> answers[it] = responsePacket);
+                    return;
+                }
+                // 回复数量不一致的时候抛出异常，让整个批量请求的future异常完成，而不是把回复对应到错误的子请求上
+                var batchAnswers = ((BatchAnswer) responsePacket).decodePackets(indexes.size());
+                for (var i = 0; i < indexes.size(); i++) {
+                    answers[indexes.get(i)] = batchAnswers.get(i);
+                }
+            });
+
+            // 超时由SignalBridge的时间轮统一处理
+            SignalBridge.addSignalAttachment(clientSignalAttachment, Router.DEFAULT_TIMEOUT);
+            loadBalancer.beforeLoadBalancer(session, packet, clientSignalAttachment);
+            NetContext.getRouter().send(session, packet, clientSignalAttachment);
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(it -> Arrays.asList(answers));
+    }
+
 }
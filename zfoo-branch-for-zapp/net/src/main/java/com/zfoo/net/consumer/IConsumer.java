@@ -18,6 +18,9 @@ import com.zfoo.net.router.answer.SyncAnswer;
 import com.zfoo.protocol.IPacket;
 import org.springframework.lang.Nullable;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author jaysunxiao
  * @version 3.0
@@ -36,4 +39,20 @@ public interface IConsumer {
 
     <T extends IPacket> AsyncAnswer<T> asyncAsk(IPacket packet, Class<T> answerClass, @Nullable Object argument);
 
+    /**
+     * 同步的批量请求，发往同一个服务提供者的请求会合并成一个BatchAsk，每一个服务提供者只需要一次往返
+     *
+     * @param packets   请求包
+     * @param arguments 每一个请求计算负载均衡的参数，和packets一一对应，元素可以为null
+     * @return 按照packets的顺序返回每一个请求的回复，有任何一个回复是Error的时候抛出ErrorResponseException
+     */
+    List<IPacket> batchAsk(List<IPacket> packets, List<Object> arguments) throws Exception;
+
+    /**
+     * 异步的批量请求，合并的方式同batchAsk，回调在第一个请求的argument对应的TaskBus线程执行
+     *
+     * @return 按照packets的顺序返回每一个请求的回复，处理失败的请求对应的回复是Error
+     */
+    CompletableFuture<List<IPacket>> asyncAskAll(List<IPacket> packets, List<Object> arguments);
+
 }
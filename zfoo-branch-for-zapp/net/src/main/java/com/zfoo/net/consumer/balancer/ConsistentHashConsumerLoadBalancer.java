@@ -22,18 +22,19 @@ import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.exception.RunException;
 import com.zfoo.protocol.model.Pair;
 import com.zfoo.protocol.registration.ProtocolModule;
-import com.zfoo.util.math.ConsistentHash;
+import com.zfoo.util.math.ConsistentHashRing;
 import org.springframework.lang.Nullable;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 /**
  * 一致性hash负载均衡器，同一个session总是发到同一提供者
  * <p>
- * 通过argument计算一致性hash
+ * 通过argument计算一致性hash，服务提供者变化的时候只增量的增加或者删除变化的节点，不会重建整个hash环
  *
  * @author jaysunxiao
  * @version 3.0
@@ -43,7 +44,7 @@ public class ConsistentHashConsumerLoadBalancer extends AbstractConsumerLoadBala
     public static final ConsistentHashConsumerLoadBalancer INSTANCE = new ConsistentHashConsumerLoadBalancer();
 
     private volatile int lastClientSessionChangeId = 0;
-    private static final Map<ProtocolModule, ConsistentHash<String, Long>> consistentHashMap = new ConcurrentHashMap<>();
+    private static final Map<ProtocolModule, ConsistentHashRing<String, Long>> consistentHashMap = new ConcurrentHashMap<>();
     private static final int VIRTUAL_NODE_NUMS = 200;
 
     private ConsistentHashConsumerLoadBalancer() {
@@ -86,27 +87,37 @@ public class ConsistentHashConsumerLoadBalancer extends AbstractConsumerLoadBala
         if (consistentHash == null) {
             throw new RunException("一致性hash负载均衡[protocolId:{}]参数[argument:{}],没有服务提供者提供服务[module:{}]", packet.protocolId(), argument, module);
         }
-        var sid = consistentHash.getRealNode(argument).getValue();
-        return NetContext.getSessionManager().getClientSession(sid);
+        var realNode = consistentHash.getRealNode(argument);
+        if (realNode == null) {
+            throw new RunException("一致性hash负载均衡[protocolId:{}]参数[argument:{}],没有服务提供者提供服务[module:{}]", packet.protocolId(), argument, module);
+        }
+        return NetContext.getSessionManager().getClientSession(realNode.getValue());
 
     }
 
 
+    /**
+     * 和当前的服务提供者比较，只增加新的节点和删除已经不存在的节点
+     */
     @Nullable
-    private ConsistentHash<String, Long> updateModuleToConsistentHash(ProtocolModule module) {
-        var sessionStringList = getSessionsByModule(module)
-                .stream()
-                .map(session -> new Pair<>(session.getAttribute(AttributeType.CONSUMER).toString(), session.getSid()))
-                .sorted((a, b) -> a.getKey().compareTo(b.getKey()))
-                .collect(Collectors.toList());
-
-        if (CollectionUtils.isEmpty(sessionStringList) && !consistentHashMap.containsKey(module)) {
+    private ConsistentHashRing<String, Long> updateModuleToConsistentHash(ProtocolModule module) {
+        var sessionMap = new HashMap<String, Long>();
+        for (var session : getSessionsByModule(module)) {
+            sessionMap.put(session.getAttribute(AttributeType.CONSUMER).toString(), session.getSid());
+        }
+
+        if (CollectionUtils.isEmpty(sessionMap)) {
             consistentHashMap.remove(module);
             return null;
         }
 
-        var consistentHash = new ConsistentHash<>(sessionStringList, VIRTUAL_NODE_NUMS);
-        consistentHashMap.put(module, consistentHash);
+        var consistentHash = consistentHashMap.computeIfAbsent(module, it -> new ConsistentHashRing<>(Collections.emptyList(), VIRTUAL_NODE_NUMS));
+        for (var realNode : consistentHash.getRealNodes()) {
+            if (!sessionMap.containsKey(realNode.getKey())) {
+                consistentHash.removeNode(realNode.getKey());
+            }
+        }
+        sessionMap.forEach((key, sid) -> consistentHash.addNode(new Pair<>(key, sid)));
         return consistentHash;
     }
 
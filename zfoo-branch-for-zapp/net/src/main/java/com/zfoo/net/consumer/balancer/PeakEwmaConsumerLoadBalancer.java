@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.net.consumer.balancer;
+
+import com.zfoo.net.router.attachment.SignalAttachment;
+import com.zfoo.net.session.model.AttributeType;
+import com.zfoo.net.session.model.Session;
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.ProtocolManager;
+import com.zfoo.protocol.exception.RunException;
+import com.zfoo.util.math.RandomUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟感知的负载均衡器，每个服务提供者的session维护一个peak-EWMA延迟和正在处理中的请求数量，
+ * 每次随机选择两个服务提供者，把请求发给负载更低的那一个（power of two choices）
+ * <p>
+ * 负载 = peak-EWMA延迟 * (正在处理中的请求数量 + 1)
+ * 1. 新的延迟比当前的EWMA大的时候直接取新的延迟（peak），慢的节点会被立刻避开
+ * 2. 新的延迟比当前的EWMA小的时候按照距离上一次采样的时间指数衰减，节点变快之后可以慢慢恢复流量
+ * 3. 超时和错误也会作为一次采样，采样的延迟是请求实际等待的时间
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class PeakEwmaConsumerLoadBalancer extends AbstractConsumerLoadBalancer {
+
+    private static final PeakEwmaConsumerLoadBalancer INSTANCE = new PeakEwmaConsumerLoadBalancer();
+
+    /**
+     * EWMA的衰减时间，距离上一次采样越久，旧的延迟权重越小
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 还没有延迟采样但是有正在处理中的请求的session，给一个很大的负载，避免新连接的节点被瞬间打满
+     */
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    private PeakEwmaConsumerLoadBalancer() {
+    }
+
+    public static PeakEwmaConsumerLoadBalancer getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Session loadBalancer(IPacket packet, Object argument) {
+        var module = ProtocolManager.moduleByProtocolId(packet.protocolId());
+        var sessions = getSessionsByModule(module);
+
+        if (sessions.isEmpty()) {
+            throw new RunException("peak-EWMA负载均衡[protocolId:{}]参数[argument:{}],没有服务提供者提供服务[module:{}]", packet.protocolId(), argument, module);
+        }
+
+        var size = sessions.size();
+        if (size == 1) {
+            return sessions.get(0);
+        }
+
+        // 随机选择两个不同的session，选择负载小的那一个
+        var i = RandomUtils.randomInt(size);
+        var j = RandomUtils.randomInt(size - 1);
+        if (j >= i) {
+            j++;
+        }
+
+        var a = sessions.get(i);
+        var b = sessions.get(j);
+        var now = System.nanoTime();
+        return peakEwma(a).cost(now) <= peakEwma(b).cost(now) ? a : b;
+    }
+
+    @Override
+    public void beforeLoadBalancer(Session session, IPacket packet, SignalAttachment attachment) {
+        var peakEwma = peakEwma(session);
+        var start = peakEwma.start();
+
+        // 正常返回，错误返回和超时都会完成responseFuture，所以正在处理中的请求数量一定会被减掉
+        attachment.getResponseFuture().whenComplete((answer, throwable) -> peakEwma.end(start));
+    }
+
+    private PeakEwma peakEwma(Session session) {
+        var peakEwma = (PeakEwma) session.getAttribute(AttributeType.PEAK_EWMA);
+        if (peakEwma != null) {
+            return peakEwma;
+        }
+
+        synchronized (session) {
+            peakEwma = (PeakEwma) session.getAttribute(AttributeType.PEAK_EWMA);
+            if (peakEwma == null) {
+                peakEwma = new PeakEwma();
+                session.putAttribute(AttributeType.PEAK_EWMA, peakEwma);
+            }
+            return peakEwma;
+        }
+    }
+
+    private static class PeakEwma {
+
+        private long stamp = System.nanoTime();
+
+        // 单位纳秒
+        private double cost;
+
+        private int pending;
+
+        private synchronized long start() {
+            pending++;
+            return System.nanoTime();
+        }
+
+        private synchronized void end(long start) {
+            var now = System.nanoTime();
+            pending--;
+            observe(now, now - start);
+        }
+
+        private synchronized double cost(long now) {
+            // 没有新的采样的时候，负载也会随着时间衰减
+            observe(now, 0);
+            if (cost == 0 && pending != 0) {
+                return PENALTY + pending;
+            }
+            return cost * (pending + 1);
+        }
+
+        private void observe(long now, double rtt) {
+            var elapsed = Math.max(now - stamp, 0);
+            stamp = now;
+            if (rtt > cost) {
+                cost = rtt;
+            } else {
+                var weight = Math.exp(-elapsed / DECAY_NANOS);
+                cost = cost * weight + rtt * (1.0 - weight);
+            }
+        }
+    }
+
+}
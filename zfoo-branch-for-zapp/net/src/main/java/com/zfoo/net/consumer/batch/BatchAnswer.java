@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package com.zfoo.net.consumer.batch;
+
+import com.zfoo.net.router.exception.UnexpectedProtocolException;
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * BatchAsk的回复，按照子请求的顺序依次编码每一个子请求的回复，处理失败的子请求回复的是Error
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class BatchAnswer implements IPacket {
+
+    public static final transient short PROTOCOL_ID = 26;
+
+    private byte[] packets;
+
+    public static BatchAnswer valueOf(List<IPacket> packets) {
+        var answer = new BatchAnswer();
+        answer.packets = BatchAsk.encode(packets);
+        return answer;
+    }
+
+    @Override
+    public short protocolId() {
+        return PROTOCOL_ID;
+    }
+
+    public List<IPacket> decodePackets() {
+        return BatchAsk.decode(packets);
+    }
+
+    /**
+     * 回复的数量必须和BatchAsk子请求的数量一致，否则无法把回复对应到子请求上
+     */
+    public List<IPacket> decodePackets(int expectedSize) {
+        var answers = decodePackets();
+        if (answers.size() != expectedSize) {
+            throw new UnexpectedProtocolException(StringUtils.format("batch ask has [{}] packets, but found [{}] answers", expectedSize, answers.size()));
+        }
+        return answers;
+    }
+
+    public byte[] getPackets() {
+        return packets;
+    }
+
+    public void setPackets(byte[] packets) {
+        this.packets = packets;
+    }
+}
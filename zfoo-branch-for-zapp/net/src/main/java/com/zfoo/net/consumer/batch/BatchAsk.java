@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package com.zfoo.net.consumer.batch;
+
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.ProtocolManager;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把发往同一个服务提供者的多个ask合并成一个包，服务提供者收到之后拆开分别交给对应的PacketReceiver处理
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class BatchAsk implements IPacket {
+
+    public static final transient short PROTOCOL_ID = 25;
+
+    /**
+     * 每一个子请求在TaskBus中计算一致性hash的参数
+     */
+    private int[] executorConsistentHashes;
+
+    /**
+     * 依次编码的子请求
+     */
+    private byte[] packets;
+
+    public static BatchAsk valueOf(List<IPacket> packets, int[] executorConsistentHashes) {
+        var ask = new BatchAsk();
+        ask.executorConsistentHashes = executorConsistentHashes;
+        ask.packets = encode(packets);
+        return ask;
+    }
+
+    @Override
+    public short protocolId() {
+        return PROTOCOL_ID;
+    }
+
+    public List<IPacket> decodePackets() {
+        return decode(packets);
+    }
+
+    static byte[] encode(List<IPacket> packets) {
+        var buffer = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            for (var packet : packets) {
+                ProtocolManager.write(buffer, packet);
+            }
+            return ByteBufUtil.getBytes(buffer);
+        } finally {
+            ReferenceCountUtil.release(buffer);
+        }
+    }
+
+    static List<IPacket> decode(byte[] bytes) {
+        var list = new ArrayList<IPacket>();
+        if (bytes == null) {
+            return list;
+        }
+        var buffer = Unpooled.wrappedBuffer(bytes);
+        while (buffer.isReadable()) {
+            list.add(ProtocolManager.read(buffer));
+        }
+        return list;
+    }
+
+    public int[] getExecutorConsistentHashes() {
+        return executorConsistentHashes;
+    }
+
+    public void setExecutorConsistentHashes(int[] executorConsistentHashes) {
+        this.executorConsistentHashes = executorConsistentHashes;
+    }
+
+    public byte[] getPackets() {
+        return packets;
+    }
+
+    public void setPackets(byte[] packets) {
+        this.packets = packets;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package com.zfoo.net.consumer.batch;
+
+import com.zfoo.net.NetContext;
+import com.zfoo.net.router.attachment.SignalAttachment;
+import com.zfoo.net.session.model.Session;
+import com.zfoo.protocol.IPacket;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 服务提供者拆开BatchAsk之后，每一个子请求使用的附加包，不会被序列化
+ * <p>
+ * PacketReceiver通过这个附加包回复的时候，Router不会直接发送回复，而是收集起来，所有子请求都回复之后合并成一个BatchAnswer发送
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class BatchSignalAttachment extends SignalAttachment {
+
+    private final transient Collector collector;
+
+    private final transient int index;
+
+    private BatchSignalAttachment(Collector collector, int index, int executorConsistentHash) {
+        this.collector = collector;
+        this.index = index;
+        setClient(false);
+        setExecutorConsistentHash(executorConsistentHash);
+    }
+
+    /**
+     * 为BatchAsk的每一个子请求创建附加包
+     *
+     * @param session          发送BatchAsk的session
+     * @param signalAttachment BatchAsk的附加包，最终的BatchAnswer通过这个附加包回复
+     */
+    public static BatchSignalAttachment[] valueOf(Session session, SignalAttachment signalAttachment, int[] executorConsistentHashes) {
+        var collector = new Collector(session, signalAttachment, executorConsistentHashes.length);
+        var attachments = new BatchSignalAttachment[executorConsistentHashes.length];
+        for (var i = 0; i < attachments.length; i++) {
+            attachments[i] = new BatchSignalAttachment(collector, i, executorConsistentHashes[i]);
+        }
+        return attachments;
+    }
+
+    /**
+     * 子请求的回复，只有第一次回复有效
+     */
+    public void answer(IPacket packet) {
+        collector.answer(index, packet);
+    }
+
+    private static class Collector {
+
+        private final Session session;
+
+        private final SignalAttachment signalAttachment;
+
+        private final AtomicReferenceArray<IPacket> answers;
+
+        private final AtomicInteger remaining;
+
+        private Collector(Session session, SignalAttachment signalAttachment, int size) {
+            this.session = session;
+            this.signalAttachment = signalAttachment;
+            this.answers = new AtomicReferenceArray<>(size);
+            this.remaining = new AtomicInteger(size);
+        }
+
+        private void answer(int index, IPacket packet) {
+            if (!answers.compareAndSet(index, null, packet)) {
+                return;
+            }
+            if (remaining.decrementAndGet() > 0) {
+                return;
+            }
+            var packets = new IPacket[answers.length()];
+            for (var i = 0; i < packets.length; i++) {
+                packets[i] = answers.get(i);
+            }
+            NetContext.getRouter().send(session, BatchAnswer.valueOf(Arrays.asList(packets)), signalAttachment);
+        }
+    }
+
+}
@@ -55,6 +55,10 @@ public class BaseRouteHandler extends ChannelInboundHandlerAdapter {
             // 有些情况当建立连接过后迅速关闭，这个时候取remoteAddress会有异常
         }
 
+        if (NetContext.getConfigManager().getLocalConfig().isWriteCoalescing()) {
+            SessionUtils.enableWriteCoalescing(session);
+        }
+
         return session;
     }
 
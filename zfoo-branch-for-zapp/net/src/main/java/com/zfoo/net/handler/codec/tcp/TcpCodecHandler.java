@@ -18,7 +18,6 @@ import com.zfoo.net.packet.model.DecodedPacketInfo;
 import com.zfoo.net.packet.model.EncodedPacketInfo;
 import com.zfoo.net.packet.service.PacketService;
 import com.zfoo.net.util.SessionUtils;
-import com.zfoo.protocol.util.StringUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageCodec;
@@ -30,7 +29,10 @@ import java.util.List;
 
 /**
  * header(4byte) + protocolId(2byte) + packet
+ * header的最高位为1的时候packet使用了LZ4压缩，参见PacketService
  * header = body(bytes.length) + protocolId.length(2byte)
+ * <p>
+ * Router.broadcast()已经编码好的ByteBuf不是EncodedPacketInfo，会直接穿过这个encoder写入channel
  *
  * @author jaysunxiao
  * @version 3.0
@@ -46,13 +48,9 @@ public class TcpCodecHandler extends ByteToMessageCodec<EncodedPacketInfo> {
             return;
         }
         in.markReaderIndex();
-        var length = in.readInt();
-
-        // 如果长度非法，则抛出异常断开连接
-        if (length < 0) {
-            throw new IllegalArgumentException(StringUtils.format("[session:{}]的包头长度[length:{}]非法"
-                    , SessionUtils.sessionInfo(ctx), length));
-        }
+        var header = in.readInt();
+        // 包头的最高位是压缩标识，剩下的31位是包体长度
+        var length = PacketService.packetLength(header);
 
         // ByteBuf里的数据太小
         if (in.readableBytes() < length) {
@@ -63,7 +61,8 @@ public class TcpCodecHandler extends ByteToMessageCodec<EncodedPacketInfo> {
         ByteBuf tmpByteBuf = null;
         try {
             tmpByteBuf = in.readRetainedSlice(length);
-            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(tmpByteBuf);
+            var packetByteBuf = PacketService.isCompressed(header) ? NetContext.getPacketService().decompress(tmpByteBuf) : tmpByteBuf;
+            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(packetByteBuf);
             out.add(packetInfo);
         } catch (Exception e) {
             logger.error("[session:{}]解码exception异常", SessionUtils.sessionInfo(ctx), e);
@@ -17,9 +17,7 @@ import com.zfoo.net.packet.model.DecodedPacketInfo;
 import com.zfoo.net.packet.model.EncodedPacketInfo;
 import com.zfoo.net.packet.service.PacketService;
 import com.zfoo.net.router.attachment.UdpAttachment;
-import com.zfoo.net.util.SessionUtils;
 import com.zfoo.protocol.util.JsonUtils;
-import com.zfoo.protocol.util.StringUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
@@ -49,13 +47,9 @@ public class UdpCodecHandler extends MessageToMessageCodec<DatagramPacket, Encod
         }
 
         in.markReaderIndex();
-        var length = in.readInt();
-
-        // 如果长度非法，则抛出异常断开连接
-        if (length < 0) {
-            throw new IllegalArgumentException(StringUtils.format("[session:{}]的包头长度[length:{}]非法"
-                    , SessionUtils.sessionInfo(channelHandlerContext), length));
-        }
+        var header = in.readInt();
+        // 包头的最高位是压缩标识，剩下的31位是包体长度
+        var length = PacketService.packetLength(header);
 
         // ByteBuf里的数据太小
         if (in.readableBytes() < length) {
@@ -66,7 +60,8 @@ public class UdpCodecHandler extends MessageToMessageCodec<DatagramPacket, Encod
         ByteBuf tmpByteBuf = null;
         try {
             tmpByteBuf = in.readRetainedSlice(length);
-            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(tmpByteBuf);
+            var packetByteBuf = PacketService.isCompressed(header) ? NetContext.getPacketService().decompress(tmpByteBuf) : tmpByteBuf;
+            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(packetByteBuf);
             var sender = datagramPacket.sender();
             packetInfo.setAttachment(UdpAttachment.valueOf(sender.getHostString(), sender.getPort()));
             list.add(packetInfo);
@@ -17,9 +17,7 @@ import com.zfoo.net.NetContext;
 import com.zfoo.net.packet.model.DecodedPacketInfo;
 import com.zfoo.net.packet.model.EncodedPacketInfo;
 import com.zfoo.net.packet.service.PacketService;
-import com.zfoo.net.util.SessionUtils;
 import com.zfoo.protocol.util.JsonUtils;
-import com.zfoo.protocol.util.StringUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
@@ -33,12 +31,15 @@ import java.util.List;
 
 /**
  * header(4byte) + protocolId(2byte) + packet
+ * header的最高位为1的时候packet使用了LZ4压缩，参见PacketService
  * header = body(bytes.length) + protocolId.length(2byte)
+ * <p>
+ * 除了EncodedPacketInfo，也接受Router.broadcast()已经编码好的ByteBuf，直接包装成BinaryWebSocketFrame发送
  *
  * @author jaysunxiao
  * @version 3.0
  */
-public class WebSocketCodecHandler extends MessageToMessageCodec<WebSocketFrame, EncodedPacketInfo> {
+public class WebSocketCodecHandler extends MessageToMessageCodec<WebSocketFrame, Object> {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketCodecHandler.class);
 
@@ -52,13 +53,9 @@ public class WebSocketCodecHandler extends MessageToMessageCodec<WebSocketFrame,
         }
 
         in.markReaderIndex();
-        var length = in.readInt();
-
-        // 如果长度非法，则抛出异常断开连接
-        if (length < 0) {
-            throw new IllegalArgumentException(StringUtils.format("[session:{}]的包头长度[length:{}]非法"
-                    , SessionUtils.sessionInfo(channelHandlerContext), length));
-        }
+        var header = in.readInt();
+        // 包头的最高位是压缩标识，剩下的31位是包体长度
+        var length = PacketService.packetLength(header);
 
         // ByteBuf里的数据太小
         if (in.readableBytes() < length) {
@@ -69,7 +66,8 @@ public class WebSocketCodecHandler extends MessageToMessageCodec<WebSocketFrame,
         ByteBuf tmpByteBuf = null;
         try {
             tmpByteBuf = in.readRetainedSlice(length);
-            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(tmpByteBuf);
+            var packetByteBuf = PacketService.isCompressed(header) ? NetContext.getPacketService().decompress(tmpByteBuf) : tmpByteBuf;
+            DecodedPacketInfo packetInfo = NetContext.getPacketService().read(packetByteBuf);
             list.add(packetInfo);
         } catch (Exception e) {
             logger.error("exception异常", e);
@@ -83,7 +81,19 @@ public class WebSocketCodecHandler extends MessageToMessageCodec<WebSocketFrame,
     }
 
     @Override
-    protected void encode(ChannelHandlerContext channelHandlerContext, EncodedPacketInfo out, List<Object> list) {
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof EncodedPacketInfo || msg instanceof ByteBuf;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext channelHandlerContext, Object msg, List<Object> list) {
+        // 已经编码好的广播包，MessageToMessageEncoder在encode之后会release一次，所以这里需要retain
+        if (msg instanceof ByteBuf) {
+            list.add(new BinaryWebSocketFrame(((ByteBuf) msg).retain()));
+            return;
+        }
+
+        var out = (EncodedPacketInfo) msg;
         try {
             var byteBuf = channelHandlerContext.alloc().ioBuffer();
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.net.handler.flush;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并flush，减少系统调用的次数。Router.send()每个包都会writeAndFlush，短时间内大量的小包会产生大量的系统调用。
+ * <p>
+ * 窗口外的第一个flush会立即执行并开启一个合并窗口，所以零星的包不会增加延迟；
+ * 窗口内的flush会被推迟到窗口结束，或者积攒的flush次数达到上限，或者一次读取结束，或者channel的可写状态发生变化的时候再一起执行。
+ * <p>
+ * 每个channel一个实例，不能共享，所有的方法都在channel的EventLoop中执行，所以不需要加锁
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class WriteCoalescingHandler extends ChannelDuplexHandler {
+
+    public static final int DEFAULT_MAX_PENDING_FLUSHES = 64;
+
+    public static final long DEFAULT_WINDOW_MICROS = 100;
+
+    /**
+     * 窗口内最多积攒多少次flush，达到上限立刻flush
+     */
+    private final int maxPendingFlushes;
+
+    /**
+     * 合并窗口的大小，单位微秒
+     */
+    private final long windowMicros;
+
+    private int pendingFlushes;
+
+    private ScheduledFuture<?> windowFuture;
+
+    private ChannelHandlerContext ctx;
+
+    private final Runnable windowTask = () -> {
+        windowFuture = null;
+        flushIfNeeded(ctx);
+    };
+
+    public WriteCoalescingHandler() {
+        this(DEFAULT_MAX_PENDING_FLUSHES, DEFAULT_WINDOW_MICROS);
+    }
+
+    public WriteCoalescingHandler(int maxPendingFlushes, long windowMicros) {
+        if (maxPendingFlushes <= 0) {
+            throw new IllegalArgumentException("maxPendingFlushes must be positive");
+        }
+        if (windowMicros <= 0) {
+            throw new IllegalArgumentException("windowMicros must be positive");
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+        this.windowMicros = windowMicros;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelWindow();
+        flushIfNeeded(ctx);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (windowFuture == null) {
+            // 窗口外的flush立即执行，保证孤立的包没有额外的延迟
+            ctx.flush();
+            windowFuture = ctx.executor().schedule(windowTask, windowMicros, TimeUnit.MICROSECONDS);
+            return;
+        }
+
+        if (++pendingFlushes >= maxPendingFlushes) {
+            flushIfNeeded(ctx);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // 和netty的FlushConsolidationHandler一样，一次读取中产生的响应在读取结束的时候一起写出去
+        flushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // 不可写的时候尽快把缓冲区的数据写出去，重新可写的时候也不要让数据停留在缓冲区
+        flushIfNeeded(ctx);
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfNeeded(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        cancelWindow();
+        flushIfNeeded(ctx);
+        ctx.close(promise);
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            pendingFlushes = 0;
+            ctx.flush();
+        }
+    }
+
+    private void cancelWindow() {
+        if (windowFuture != null) {
+            windowFuture.cancel(false);
+            windowFuture = null;
+        }
+    }
+
+}
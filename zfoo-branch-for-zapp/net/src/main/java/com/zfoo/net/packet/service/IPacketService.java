@@ -31,4 +31,9 @@ public interface IPacketService {
 
     void write(ByteBuf buffer, IPacket packet, @Nullable IAttachment attachment);
 
+    /**
+     * 解压包头带有压缩标识的包体，没有开启压缩的节点直接拒绝
+     */
+    ByteBuf decompress(ByteBuf buffer);
+
 }
@@ -26,13 +26,19 @@ import com.zfoo.protocol.generate.GenerateProtocolFile;
 import com.zfoo.protocol.registration.IProtocolRegistration;
 import com.zfoo.protocol.serializer.CodeLanguage;
 import com.zfoo.protocol.util.DomUtils;
+import com.zfoo.protocol.util.IOUtils;
+import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.protocol.xml.XmlProtocols;
+import com.zfoo.util.security.Lz4Utils;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Predicate;
 
 /**
@@ -48,6 +54,21 @@ public class PacketService implements IPacketService {
      */
     public static final int PACKET_HEAD_LENGTH = 4;
 
+    /**
+     * 包头的最高位表示包体是否使用了LZ4压缩，压缩的包体为：原始长度(4byte) + LZ4压缩的数据
+     */
+    public static final int PACKET_COMPRESS_FLAG = 0x80000000;
+
+    /**
+     * LZ4每个字节最多展开成255个字节，用来拒绝伪造的原始长度
+     */
+    private static final int MAX_COMPRESS_RATIO = 255;
+
+    /**
+     * 解压之后包体的最大长度，和网关HttpObjectAggregator的最大长度保持一致，在分配内存之前拒绝伪造的原始长度
+     */
+    public static final int MAX_PACKET_LENGTH = 16 * IOUtils.BYTES_PER_MB;
+
     /**
      * 网络包的约定规则如下：
      * 1. 客户端的请求约定以Request结尾，服务器的响应约定以Response结尾
@@ -72,6 +93,16 @@ public class PacketService implements IPacketService {
             || registration.protocolConstructor().getDeclaringClass().getSimpleName().endsWith(NET_RESPONSE_SUFFIX)
             || registration.protocolConstructor().getDeclaringClass().getSimpleName().endsWith(NET_NOTICE_SUFFIX);
 
+    /**
+     * 包体大于等于这个长度才压缩，0表示不压缩
+     */
+    private int compressThreshold;
+
+    /**
+     * 为null表示压缩所有的协议
+     */
+    private Set<Short> compressProtocols;
+
     public PacketService() {
 
     }
@@ -106,6 +137,15 @@ public class PacketService implements IPacketService {
             generateOperation.getGenerateLanguages().add(CodeLanguage.GdScript);
         }
 
+        compressThreshold = NetContext.getConfigManager().getLocalConfig().getCompressThreshold();
+        var compressProtocolsConfig = NetContext.getConfigManager().getLocalConfig().getCompressProtocols();
+        if (StringUtils.isNotBlank(compressProtocolsConfig)) {
+            compressProtocols = new HashSet<>();
+            for (var protocolId : compressProtocolsConfig.split(StringUtils.COMMA_REGEX)) {
+                compressProtocols.add(Short.parseShort(StringUtils.trim(protocolId)));
+            }
+        }
+
         // 设置生成协议的过滤器
         GenerateProtocolFile.generateProtocolFilter = netGenerateProtocolFilter;
 
@@ -166,10 +206,88 @@ public class PacketService implements IPacketService {
 
         int packetLength = length - PACKET_HEAD_LENGTH;
 
+        // 小包不压缩，直接走原来的路径
+        if (compressThreshold > 0 && packetLength >= compressThreshold
+                && (compressProtocols == null || compressProtocols.contains(packet.protocolId()))
+                && compress(buffer, packetLength)) {
+            return;
+        }
+
         buffer.writerIndex(0);
 
         buffer.writeInt(packetLength);
 
         buffer.writerIndex(length);
     }
+
+    /**
+     * 压缩包体并重写包头，压缩后没有变小则不做任何修改
+     */
+    private boolean compress(ByteBuf buffer, int packetLength) {
+        byte[] src;
+        int srcOff;
+        if (buffer.hasArray()) {
+            src = buffer.array();
+            srcOff = buffer.arrayOffset() + PACKET_HEAD_LENGTH;
+        } else {
+            src = new byte[packetLength];
+            srcOff = 0;
+            buffer.getBytes(PACKET_HEAD_LENGTH, src);
+        }
+
+        var compressed = new byte[Lz4Utils.maxCompressedLength(packetLength)];
+        var compressedLength = Lz4Utils.compress(src, srcOff, packetLength, compressed, 0);
+        if (compressedLength + PACKET_HEAD_LENGTH >= packetLength) {
+            return false;
+        }
+
+        buffer.writerIndex(0);
+        buffer.writeInt(PACKET_COMPRESS_FLAG | (compressedLength + PACKET_HEAD_LENGTH));
+        buffer.writeInt(packetLength);
+        buffer.writeBytes(compressed, 0, compressedLength);
+        return true;
+    }
+
+    public static boolean isCompressed(int header) {
+        return (header & PACKET_COMPRESS_FLAG) != 0;
+    }
+
+    public static int packetLength(int header) {
+        return header & ~PACKET_COMPRESS_FLAG;
+    }
+
+    /**
+     * 解压包头带有压缩标识的包体，返回的是堆内存的ByteBuf，不需要release
+     * <p>
+     * 只有配置了compress-threshold的节点才接受压缩的包，防止面向公网的节点被不可信的客户端用压缩炸弹攻击
+     */
+    @Override
+    public ByteBuf decompress(ByteBuf buffer) {
+        if (compressThreshold <= 0) {
+            throw new IllegalArgumentException("没有开启压缩，拒绝压缩的包");
+        }
+
+        var originalLength = buffer.readInt();
+        var compressedLength = buffer.readableBytes();
+        if (originalLength < 0 || originalLength > MAX_PACKET_LENGTH || originalLength > (long) compressedLength * MAX_COMPRESS_RATIO) {
+            throw new IllegalArgumentException(StringUtils.format("压缩包的原始长度[originalLength:{}]和压缩长度[compressedLength:{}]不匹配"
+                    , originalLength, compressedLength));
+        }
+
+        byte[] src;
+        int srcOff;
+        if (buffer.hasArray()) {
+            src = buffer.array();
+            srcOff = buffer.arrayOffset() + buffer.readerIndex();
+        } else {
+            src = new byte[compressedLength];
+            srcOff = 0;
+            buffer.getBytes(buffer.readerIndex(), src);
+        }
+        buffer.skipBytes(compressedLength);
+
+        var bytes = new byte[originalLength];
+        Lz4Utils.decompress(src, srcOff, compressedLength, bytes, 0, originalLength);
+        return Unpooled.wrappedBuffer(bytes);
+    }
 }
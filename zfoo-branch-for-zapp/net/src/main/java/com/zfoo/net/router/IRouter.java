@@ -20,6 +20,7 @@ import com.zfoo.net.session.model.Session;
 import com.zfoo.protocol.IPacket;
 import org.springframework.lang.Nullable;
 
+import java.util.Collection;
 
 /**
  * @author jaysunxiao
@@ -34,6 +35,13 @@ public interface IRouter {
      */
     void send(Session session, IPacket packet, @Nullable IAttachment attachment);
 
+    /**
+     * 把同一个包广播给多个session，包只会被序列化一次，然后把同一份ByteBuf的retainedDuplicate()写入每个session，
+     * 适用于网关给大量客户端推送同一个通知，TCP和WebSocket的codec都支持。
+     * 广播的包没有attachment，所以不能用来回复同步或者异步请求。
+     */
+    void broadcast(Collection<Session> sessions, IPacket packet);
+
     void receive(Session session, IPacket packet, @Nullable IAttachment attachment);
 
     void atReceiver(Session session, IPacket packet, @Nullable IAttachment attachment);
@@ -15,6 +15,8 @@ package com.zfoo.net.router;
 
 import com.zfoo.event.manager.EventBus;
 import com.zfoo.net.NetContext;
+import com.zfoo.net.consumer.batch.BatchAsk;
+import com.zfoo.net.consumer.batch.BatchSignalAttachment;
 import com.zfoo.net.core.gateway.model.AuthUidToGatewayCheck;
 import com.zfoo.net.core.gateway.model.AuthUidToGatewayConfirm;
 import com.zfoo.net.core.gateway.model.AuthUidToGatewayEvent;
@@ -36,16 +38,20 @@ import com.zfoo.net.session.model.Session;
 import com.zfoo.net.task.TaskBus;
 import com.zfoo.net.task.model.PacketReceiverTask;
 import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.exception.ExceptionUtils;
 import com.zfoo.protocol.util.JsonUtils;
 import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.util.math.HashUtils;
 import com.zfoo.util.math.RandomUtils;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.FastThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.Nullable;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -86,6 +92,12 @@ public class Router implements IRouter {
                         // 服务器收到signalAttachment，不做任何处理
                         signalAttachment.setClient(false);
 
+                        // 合并的请求拆开之后分别派发
+                        if (packet.protocolId() == BatchAsk.PROTOCOL_ID) {
+                            atBatchAsk(session, (BatchAsk) packet, signalAttachment);
+                            return;
+                        }
+
                     } else {
                         // 客户端收到服务器应答，客户端发送的时候isClient为true，服务器收到的时候将其设置为false
                         var removedAttachment = (SignalAttachment) SignalBridge.removeSignalAttachment(signalAttachment);
@@ -152,12 +164,52 @@ public class Router implements IRouter {
             return;
         }
 
+        // BatchAsk子请求的回复先收集起来，全部回复之后合并成一个BatchAnswer发送
+        if (attachment instanceof BatchSignalAttachment) {
+            ((BatchSignalAttachment) attachment).answer(packet);
+            return;
+        }
+
         var packetInfo = EncodedPacketInfo.valueOf(packet, attachment);
 
+        // 开启了write-coalescing的channel，flush会被WriteCoalescingHandler合并
         var channel = session.getChannel();
         channel.writeAndFlush(packetInfo);
     }
 
+    @Override
+    public void broadcast(Collection<Session> sessions, IPacket packet) {
+        if (CollectionUtils.isEmpty(sessions)) {
+            return;
+        }
+        if (packet == null) {
+            logger.error("packet is null and can not be broadcast.");
+            return;
+        }
+
+        // 只有一个session的时候没有必要预先编码
+        if (sessions.size() == 1) {
+            send(sessions.iterator().next(), packet, null);
+            return;
+        }
+
+        // 只编码一次，每个session写入的是共享同一块内存的retainedDuplicate()，由各自的channel写完后释放
+        var buffer = ByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            NetContext.getPacketService().write(buffer, packet, null);
+
+            for (var session : sessions) {
+                if (session == null) {
+                    logger.error("session is null and can not be broadcast packet:[{}].", packet.getClass().getSimpleName());
+                    continue;
+                }
+                session.getChannel().writeAndFlush(buffer.retainedDuplicate());
+            }
+        } finally {
+            ReferenceCountUtil.release(buffer);
+        }
+    }
+
     @Override
     public void send(Session session, IPacket packet) {
         // 服务器异步返回的消息的发送会有signalAttachment，验证返回的消息是否满足
@@ -220,13 +272,9 @@ public class Router implements IRouter {
             var asyncAnswer = new AsyncAnswer<T>();
             asyncAnswer.setSignalAttachment(clientSignalAttachment);
 
+            // 超时由SignalBridge的时间轮统一处理，超时的时候responseFuture会以NetTimeOutException异常完成
             clientSignalAttachment.getResponseFuture()
-                    .completeOnTimeout(null, DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)
                     .thenApply(answer -> {
-                        if (answer == null) {
-                            throw new NetTimeOutException(StringUtils.format("async ask [{}] timeout exception", packet.getClass().getSimpleName()));
-                        }
-
                         if (answer.protocolId() == Error.errorProtocolId()) {
                             throw new ErrorResponseException((Error) answer);
                         }
@@ -270,7 +318,7 @@ public class Router implements IRouter {
                     }, TaskBus.executor(executorConsistentHash));
 
 
-            SignalBridge.addSignalAttachment(clientSignalAttachment);
+            SignalBridge.addSignalAttachment(clientSignalAttachment, DEFAULT_TIMEOUT);
 
             // 等到上层调用whenComplete才会发送消息
             asyncAnswer.setAskCallback(() -> send(session, packet, clientSignalAttachment));
@@ -282,6 +330,31 @@ public class Router implements IRouter {
     }
 
 
+    /**
+     * 拆开BatchAsk，每一个子请求按照自己的executorConsistentHash交给TaskBus处理，和单独发送过来的请求一样经过PacketBus派发
+     */
+    private void atBatchAsk(Session session, BatchAsk batchAsk, SignalAttachment signalAttachment) {
+        var packets = batchAsk.decodePackets();
+        var attachments = BatchSignalAttachment.valueOf(session, signalAttachment, batchAsk.getExecutorConsistentHashes());
+        if (packets.size() != attachments.length) {
+            // 直接回复错误，调用方不需要等到超时
+            var message = StringUtils.format("batch ask has [{}] packets, but [{}] executorConsistentHashes", packets.size(), attachments.length);
+            logger.error(message);
+            send(session, Error.valueOf(batchAsk, message), signalAttachment);
+            return;
+        }
+
+        for (var i = 0; i < attachments.length; i++) {
+            var packet = packets.get(i);
+            // 没有对应的PacketReceiver的子请求直接回复错误，避免整个BatchAsk等到超时
+            if (PacketBus.packetReceiverList[packet.protocolId()].receiver() == null) {
+                attachments[i].answer(Error.valueOf(packet, StringUtils.format("no any packetReceiver found for this [packet:{}]", packet.getClass().getSimpleName())));
+                continue;
+            }
+            TaskBus.submit(new PacketReceiverTask(session, packet, attachments[i]));
+        }
+    }
+
     /**
      * 正常消息的接收
      * <p>
@@ -13,16 +13,28 @@
 package com.zfoo.net.router.route;
 
 import com.zfoo.net.router.attachment.SignalAttachment;
+import com.zfoo.net.router.exception.NetTimeOutException;
 import com.zfoo.protocol.util.JsonUtils;
+import com.zfoo.protocol.util.StringUtils;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 同步或异步的调用控制器，同步和异步调用的信号沟通桥梁
+ * <p>
+ * 异步请求的超时由一个时间轮管理，时间轮只有一个定时任务，每个tick只处理一个桶，
+ * 超时的SignalAttachment会被移除并且让它的responseFuture异常完成，回调会在asyncAsk指定的TaskBus线程执行
  *
  * @author jaysunxiao
  * @version 3.0
@@ -44,6 +56,53 @@ public class SignalBridge {
      */
     private static final Map<Integer, SignalAttachment> signalAttachmentMap = new ConcurrentHashMap<>(1000);
 
+    /**
+     * 时间轮每一格的时间精度
+     */
+    private static final long TICK_MILLIS = 100;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    // equal with 127，时间轮转一圈12.8秒，超过一圈的超时时间会在到期之前重新放入对应的桶
+    private static final int WHEEL_MASK = 0B00000000_00000000_00000000_01111111;
+
+    private static final Queue<TimeoutNode>[] wheel = new Queue[WHEEL_MASK + 1];
+
+    private static final long startNanoTime = System.nanoTime();
+
+    /**
+     * 下一个需要处理的tick，只有时间轮线程会修改
+     */
+    private static volatile long processedTick = 0;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("signal-bridge-timer", true));
+
+    static {
+        for (var i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                expireTimeout();
+            } catch (Throwable t) {
+                logger.error("SignalBridge时间轮处理超时请求未知异常", t);
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static class TimeoutNode {
+        private final SignalAttachment signalAttachment;
+        private final long deadlineTick;
+
+        private TimeoutNode(SignalAttachment signalAttachment, long deadlineTick) {
+            this.signalAttachment = signalAttachment;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    /**
+     * 同步请求使用，调用者自己等待超时并且在结束的时候移除SignalAttachment
+     */
     public static void addSignalAttachment(SignalAttachment signalAttachment) {
         var signalId = signalAttachment.getSignalId();
         var hash = signalId & SIGNAL_MASK;
@@ -56,6 +115,18 @@ public class SignalBridge {
         signalAttachmentMap.put(signalId, signalAttachment);
     }
 
+    /**
+     * 异步请求使用，超过timeoutMillis还没有收到回复的时候，由时间轮移除SignalAttachment并且让responseFuture以NetTimeOutException异常完成
+     */
+    public static void addSignalAttachment(SignalAttachment signalAttachment, long timeoutMillis) {
+        addSignalAttachment(signalAttachment);
+
+        var deadlineTick = (System.nanoTime() - startNanoTime + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) / TICK_NANOS + 1;
+        // 时间轮已经处理过的tick不会再被处理，放到下一个需要处理的tick
+        var tick = Math.max(deadlineTick, processedTick);
+        wheel[(int) (tick & WHEEL_MASK)].offer(new TimeoutNode(signalAttachment, deadlineTick));
+    }
+
     public static SignalAttachment removeSignalAttachment(SignalAttachment signalAttachment) {
         return removeSignalAttachment(signalAttachment.getSignalId());
     }
@@ -70,6 +141,43 @@ public class SignalBridge {
         return signalAttachmentMap.remove(signalId);
     }
 
+    private static void expireTimeout() {
+        var currentTick = (System.nanoTime() - startNanoTime) / TICK_NANOS;
+        var tick = processedTick;
+        for (; tick <= currentTick; tick++) {
+            var bucket = wheel[(int) (tick & WHEEL_MASK)];
+            if (bucket.isEmpty()) {
+                continue;
+            }
+
+            // 先把桶里的节点取出来，避免重新放入同一个桶的节点在这一轮被重复处理
+            var nodes = new ArrayList<TimeoutNode>();
+            for (var node = bucket.poll(); node != null; node = bucket.poll()) {
+                nodes.add(node);
+            }
+
+            for (var node : nodes) {
+                // 还没有到期的节点（超时时间超过时间轮一圈），等下一圈再处理
+                if (node.deadlineTick > tick) {
+                    bucket.offer(node);
+                    continue;
+                }
+
+                // 已经收到回复的SignalAttachment已经被移除，直接丢弃
+                var attachment = node.signalAttachment;
+                var signalId = attachment.getSignalId();
+                var hash = signalId & SIGNAL_MASK;
+                if (!signalAttachmentArray.compareAndSet(hash, attachment, null) && !signalAttachmentMap.remove(signalId, attachment)) {
+                    continue;
+                }
+
+                attachment.getResponseFuture().completeExceptionally(new NetTimeOutException(StringUtils.format("async ask timeout exception, attachment:[{}]"
+                        , JsonUtils.object2String(attachment))));
+            }
+        }
+        processedTick = tick;
+    }
+
     public static void status() {
         var count = 0;
         for (int i = 0; i < SIGNAL_MASK + 1; i++) {
@@ -82,6 +190,13 @@ public class SignalBridge {
         signalAttachmentMap.forEach((key, value) -> {
             logger.info("signalAttachmentMap has attachment [key:{}][value:{}]", key, JsonUtils.object2String(value));
         });
+
+        for (var i = 0; i < wheel.length; i++) {
+            var size = wheel[i].size();
+            if (size > 0) {
+                logger.info("signal timeout wheel has timeout [index:{}][size:{}]", i, size);
+            }
+        }
     }
 
 }
@@ -96,6 +96,9 @@ public class NetDefinitionParser implements BeanDefinitionParser {
         resolvePlaceholder("fold-protocol", "foldProtocol", builder, element, parserContext);
         resolvePlaceholder("protocol-path", "protocolPath", builder, element, parserContext);
         resolvePlaceholder("protocol-param", "protocolParam", builder, element, parserContext);
+        resolvePlaceholder("write-coalescing", "writeCoalescing", builder, element, parserContext);
+        resolvePlaceholder("compress-threshold", "compressThreshold", builder, element, parserContext);
+        resolvePlaceholder("compress-protocols", "compressProtocols", builder, element, parserContext);
 
         var registryElement = DomUtils.getFirstChildElementByTagName(element, "registry");
         if (registryElement != null) {
@@ -30,6 +30,11 @@ public enum AttributeType {
 
     RESPONSE_TIME,
 
+    /**
+     * peak-EWMA负载均衡器的延迟统计
+     */
+    PEAK_EWMA,
+
     /**
      * session的uid
      */
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package com.zfoo.net.task;
+
+import com.zfoo.protocol.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轻量级的串行任务队列，同一个executorConsistentHash对应一个SerialTaskExecutor，提交的任务按照提交顺序依次执行，
+ * 任务本身调度在TaskBus的work-stealing线程池上，不会独占线程，一个key上的慢任务不会阻塞其它key的任务
+ * <p>
+ * 队列空闲一段时间之后会被TaskBus回收，回收之后还持有这个executor的调用方提交任务时会被转发到新的executor，所以顺序依然是保证的
+ * <p>
+ * 调用shutdown之后不再接受任务，TaskBus会为这个key创建新的executor，底层的线程池由TaskBus统一管理，不会被关闭
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public final class SerialTaskExecutor extends AbstractExecutorService implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerialTaskExecutor.class);
+
+    /**
+     * 每次调度最多连续执行的任务数量，超过之后重新提交到线程池，让其它key的任务也有机会执行
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private final int key;
+
+    private final ExecutorService pool;
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    /**
+     * 是否已经提交到线程池中等待执行或者正在执行
+     */
+    private boolean scheduled = false;
+
+    /**
+     * 是否已经被回收，TaskBus获取executor的时候不加锁读取
+     */
+    private volatile boolean reclaimed = false;
+
+    /**
+     * 是否已经被调用方关闭，TaskBus获取executor的时候不加锁读取
+     */
+    private volatile boolean shutdown = false;
+
+    private long lastActiveTime = System.currentTimeMillis();
+
+    SerialTaskExecutor(int key, ExecutorService pool) {
+        this.key = key;
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException(StringUtils.format("TaskBus任务队列[key:{}]已经关闭", key));
+            }
+            if (!reclaimed) {
+                tasks.addLast(task);
+                if (!scheduled) {
+                    scheduled = true;
+                    pool.execute(this);
+                }
+                return;
+            }
+        }
+        // 已经被回收，转发到这个key新的executor
+        TaskBus.executor(key).execute(task);
+    }
+
+    @Override
+    public void run() {
+        for (var i = 0; i < BATCH_SIZE; i++) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.pollFirst();
+                if (task == null) {
+                    idle();
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("TaskBus任务[key:{}]未知异常", key, t);
+            }
+        }
+
+        synchronized (this) {
+            if (tasks.isEmpty()) {
+                idle();
+                return;
+            }
+        }
+        pool.execute(this);
+    }
+
+    private void idle() {
+        scheduled = false;
+        lastActiveTime = System.currentTimeMillis();
+        if (shutdown) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * 空闲超过idleMillis的时候标记为已回收，回收之后不会再接受任务，TaskBus在同一个临界区中把它从map中删除
+     */
+    synchronized boolean tryReclaim(long now, long idleMillis) {
+        if (scheduled || !tasks.isEmpty() || now - lastActiveTime < idleMillis) {
+            return false;
+        }
+        reclaimed = true;
+        return true;
+    }
+
+    /**
+     * 被回收或者被关闭之后不再接受任务，提交的任务会被转发或者拒绝
+     */
+    boolean isReclaimed() {
+        return reclaimed;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    /**
+     * 标记为已回收并且不再接受新的任务，已经提交的任务会继续执行，线程池由TaskBus统一关闭
+     */
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        reclaimed = true;
+        if (!scheduled) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * 不再接受新的任务，并且返回还没有执行的任务，正在执行的任务不会被中断
+     */
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown();
+        var remainTasks = new ArrayList<>(tasks);
+        tasks.clear();
+        return remainTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown || pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (this) {
+            if (shutdown && !scheduled && tasks.isEmpty()) {
+                return true;
+            }
+        }
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (shutdown) {
+                var nanos = unit.toNanos(timeout);
+                var deadline = System.nanoTime() + nanos;
+                while (scheduled || !tasks.isEmpty()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, nanos);
+                    nanos = deadline - System.nanoTime();
+                }
+                return true;
+            }
+        }
+        return pool.awaitTermination(timeout, unit);
+    }
+
+}
@@ -16,13 +16,20 @@ package com.zfoo.net.task;
 import com.zfoo.net.NetContext;
 import com.zfoo.net.task.dispatcher.AbstractTaskDispatch;
 import com.zfoo.net.task.dispatcher.ITaskDispatch;
+import com.zfoo.net.task.dispatcher.WorkStealingTaskDispatch;
 import com.zfoo.net.task.model.PacketReceiverTask;
 import com.zfoo.protocol.util.StringUtils;
+import com.zfoo.scheduler.manager.SchedulerBus;
+import com.zfoo.scheduler.util.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author jaysunxiao
@@ -40,9 +47,21 @@ public final class TaskBus {
 
     /**
      * 使用不同的线程池，让线程池之间实现隔离，互不影响
+     * <p>
+     * work-stealing模式下只有一个ForkJoinPool
      */
     private static final ExecutorService[] executors;
 
+    /**
+     * work-stealing模式下，每一个executorConsistentHash对应一个串行任务队列
+     */
+    private static final ConcurrentHashMap<Integer, SerialTaskExecutor> serialExecutors = new ConcurrentHashMap<>();
+
+    /**
+     * 串行任务队列空闲超过这个时间会被回收
+     */
+    public static final long SERIAL_EXECUTOR_IDLE_MILLIS = TimeUtils.MILLIS_PER_MINUTE;
+
     static {
         var localConfig = NetContext.getConfigManager().getLocalConfig();
         var providerConfig = localConfig.getProvider();
@@ -53,10 +72,21 @@ public final class TaskBus {
                 ? (Runtime.getRuntime().availableProcessors() + 1)
                 : Integer.parseInt(providerConfig.getThread());
 
-        executors = new ExecutorService[EXECUTOR_SIZE];
-        for (int i = 0; i < executors.length; i++) {
-            var namedThreadFactory = new TaskThreadFactory();
-            executors[i] = Executors.newSingleThreadExecutor(namedThreadFactory);
+        if (taskDispatch instanceof WorkStealingTaskDispatch) {
+            var threadNumber = new AtomicInteger(1);
+            var pool = new ForkJoinPool(EXECUTOR_SIZE, forkJoinPool -> {
+                var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("task-ws-t" + threadNumber.getAndIncrement());
+                return thread;
+            }, (thread, e) -> logger.error(thread.toString(), e), true);
+            executors = new ExecutorService[]{pool};
+            SchedulerBus.scheduleAtFixedRate(() -> reclaimSerialExecutors(SERIAL_EXECUTOR_IDLE_MILLIS), SERIAL_EXECUTOR_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            executors = new ExecutorService[EXECUTOR_SIZE];
+            for (int i = 0; i < executors.length; i++) {
+                var namedThreadFactory = new TaskThreadFactory();
+                executors[i] = Executors.newSingleThreadExecutor(namedThreadFactory);
+            }
         }
     }
 
@@ -83,7 +113,32 @@ public final class TaskBus {
         taskDispatch.getExecutor(task).execute(task);
     }
 
+    /**
+     * consistent-hash等模式下，executorConsistentHash对EXECUTOR_SIZE取模相同的任务在同一个线程执行；
+     * work-stealing模式下，只有executorConsistentHash相同的任务才会串行执行，不同的executorConsistentHash之间可能并发执行
+     */
     public static ExecutorService executor(int executorConsistentHash) {
+        if (taskDispatch instanceof WorkStealingTaskDispatch) {
+            var serialExecutor = serialExecutors.computeIfAbsent(executorConsistentHash, key -> new SerialTaskExecutor(key, executors[0]));
+            // 被回收或者被调用方关闭的executor不再接受任务，替换成新的executor
+            if (serialExecutor.isReclaimed() && !executors[0].isShutdown()) {
+                serialExecutor = serialExecutors.compute(executorConsistentHash, (key, value) -> (value == null || value.isReclaimed()) ? new SerialTaskExecutor(key, executors[0]) : value);
+            }
+            return serialExecutor;
+        }
         return executors[Math.abs(executorConsistentHash % EXECUTOR_SIZE)];
     }
+
+    /**
+     * 回收空闲的串行任务队列，避免大量只访问过一次的key一直占用内存
+     * <p>
+     * 标记回收和从map中删除在同一个computeIfPresent中完成，executor()不会拿到已经回收但是还在map中的executor，
+     * 否则这个executor会一直把任务转发给自己
+     */
+    static void reclaimSerialExecutors(long idleMillis) {
+        var now = System.currentTimeMillis();
+        for (var key : serialExecutors.keySet()) {
+            serialExecutors.computeIfPresent(key, (k, serialExecutor) -> serialExecutor.tryReclaim(now, idleMillis) ? null : serialExecutor);
+        }
+    }
 }
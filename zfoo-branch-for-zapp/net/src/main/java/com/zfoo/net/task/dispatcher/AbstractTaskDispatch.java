@@ -29,6 +29,8 @@ public abstract class AbstractTaskDispatch implements ITaskDispatch {
                 return new SessionIdTaskDispatch();
             case "consistent-hash":
                 return new ConsistentHashTaskDispatch();
+            case "work-stealing":
+                return new WorkStealingTaskDispatch();
             default:
                 throw new RuntimeException(StringUtils.format("没有找到对应的taskDispatch[{}]", taskDispatchName));
         }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package com.zfoo.net.task.dispatcher;
+
+import com.zfoo.net.task.model.PacketReceiverTask;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 和consistent-hash使用同样的executorConsistentHash，但是每一个executorConsistentHash都有自己的串行任务队列，
+ * 队列调度在work-stealing线程池上，一个用户的慢任务不会阻塞hash到同一个线程的其它用户
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class WorkStealingTaskDispatch extends AbstractTaskDispatch {
+
+    private static final WorkStealingTaskDispatch INSTANCE = new WorkStealingTaskDispatch();
+
+    public static WorkStealingTaskDispatch getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public ExecutorService getExecutor(PacketReceiverTask packetReceiverTask) {
+        return ConsistentHashTaskDispatch.getINSTANCE().getExecutor(packetReceiverTask);
+    }
+
+}
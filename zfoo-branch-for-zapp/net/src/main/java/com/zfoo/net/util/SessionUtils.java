@@ -13,6 +13,7 @@
 
 package com.zfoo.net.util;
 
+import com.zfoo.net.handler.flush.WriteCoalescingHandler;
 import com.zfoo.net.session.model.AttributeType;
 import com.zfoo.net.session.model.Session;
 import com.zfoo.protocol.util.StringUtils;
@@ -43,6 +44,22 @@ public abstract class SessionUtils {
         return sessionAttr.get();
     }
 
+    /**
+     * 给这个session的channel开启flush合并，参见WriteCoalescingHandler
+     */
+    public static void enableWriteCoalescing(Session session) {
+        enableWriteCoalescing(session, WriteCoalescingHandler.DEFAULT_MAX_PENDING_FLUSHES, WriteCoalescingHandler.DEFAULT_WINDOW_MICROS);
+    }
+
+    public static void enableWriteCoalescing(Session session, int maxPendingFlushes, long windowMicros) {
+        var pipeline = session.getChannel().pipeline();
+        if (pipeline.get(WriteCoalescingHandler.class) != null) {
+            return;
+        }
+        // 放在最靠近head的位置，所有handler的flush最终都会经过它
+        pipeline.addFirst(WriteCoalescingHandler.class.getSimpleName(), new WriteCoalescingHandler(maxPendingFlushes, windowMicros));
+    }
+
     public static String sessionInfo(ChannelHandlerContext ctx) {
         var session = SessionUtils.getSession(ctx);
         if (session == null) {
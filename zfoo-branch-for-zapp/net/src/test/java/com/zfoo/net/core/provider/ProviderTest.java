@@ -150,4 +150,27 @@ public class ProviderTest {
     }
 
 
+    /**
+     * peak-EWMA延迟感知的消费方式
+     */
+    @Test
+    public void startPeakEwmaConsumer() {
+        var context = new ClassPathXmlApplicationContext("provider/consumer_peak_ewma_config.xml");
+        SessionUtils.printSessionInfo();
+
+        var ask = new ProviderMessAsk();
+        ask.setMessage("Hello, this is the consumer!");
+        var atomicInteger = new AtomicInteger(0);
+
+        for (int i = 0; i < 1000; i++) {
+            ThreadUtils.sleep(3000);
+            NetContext.getConsumer().asyncAsk(ask, ProviderMessAnswer.class, null).whenComplete(answer -> {
+                logger.info("消费者请求[{}]收到消息[{}]", atomicInteger.incrementAndGet(), JsonUtils.object2String(answer));
+            });
+        }
+
+        ThreadUtils.sleep(Long.MAX_VALUE);
+    }
+
+
 }
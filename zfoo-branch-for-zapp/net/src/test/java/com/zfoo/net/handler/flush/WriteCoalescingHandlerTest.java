@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.net.handler.flush;
+
+import com.zfoo.util.ThreadUtils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class WriteCoalescingHandlerTest {
+
+    /**
+     * 足够大的窗口，测试过程中不会结束
+     */
+    private static final long LONG_WINDOW_MICROS = 60_000_000L;
+
+    /**
+     * 放在WriteCoalescingHandler后面，统计真正传到底层的flush次数
+     */
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        private int flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            ctx.flush();
+        }
+    }
+
+    private static void writeAndFlush(EmbeddedChannel channel, Object msg) {
+        channel.write(msg);
+        channel.flush();
+    }
+
+    @Test
+    public void coalesceTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(64, 1_000L));
+
+        // 窗口外的第一个flush立即执行
+        writeAndFlush(channel, "a");
+        Assert.assertEquals(1, counter.flushes);
+        Assert.assertEquals(1, channel.outboundMessages().size());
+
+        // 窗口内的flush被推迟
+        writeAndFlush(channel, "b");
+        writeAndFlush(channel, "c");
+        writeAndFlush(channel, "d");
+        Assert.assertEquals(1, counter.flushes);
+        Assert.assertEquals(1, channel.outboundMessages().size());
+
+        // 窗口结束的时候只flush一次
+        ThreadUtils.sleep(50);
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(4, channel.outboundMessages().size());
+
+        Assert.assertEquals("a", channel.readOutbound());
+        Assert.assertEquals("b", channel.readOutbound());
+        Assert.assertEquals("c", channel.readOutbound());
+        Assert.assertEquals("d", channel.readOutbound());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void thresholdTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(3, LONG_WINDOW_MICROS));
+
+        writeAndFlush(channel, "a");
+        writeAndFlush(channel, "b");
+        writeAndFlush(channel, "c");
+        Assert.assertEquals(1, counter.flushes);
+        Assert.assertEquals(1, channel.outboundMessages().size());
+
+        // 积攒的flush次数达到上限，立刻flush
+        writeAndFlush(channel, "d");
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(4, channel.outboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void readCompleteTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(64, LONG_WINDOW_MICROS));
+
+        writeAndFlush(channel, "a");
+        writeAndFlush(channel, "b");
+        writeAndFlush(channel, "c");
+        Assert.assertEquals(1, counter.flushes);
+
+        // 一次读取结束，读取中产生的响应一起写出去
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(3, channel.outboundMessages().size());
+
+        // 没有积攒的flush，读取结束不会产生多余的flush
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(2, counter.flushes);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void explicitFlushTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(64, 1_000L));
+
+        writeAndFlush(channel, "a");
+        Assert.assertEquals(1, counter.flushes);
+
+        // 窗口结束之后没有积攒的flush，不会产生多余的flush
+        ThreadUtils.sleep(50);
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(1, counter.flushes);
+
+        // 窗口外的flush依然立即执行
+        writeAndFlush(channel, "b");
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(2, channel.outboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void closeTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(64, LONG_WINDOW_MICROS));
+
+        writeAndFlush(channel, "a");
+        writeAndFlush(channel, "b");
+        Assert.assertEquals(1, channel.outboundMessages().size());
+
+        // 关闭之前把积攒的数据写出去
+        channel.close();
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(2, channel.outboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void handlerRemovedTest() {
+        var counter = new FlushCounter();
+        var channel = new EmbeddedChannel(counter, new WriteCoalescingHandler(64, LONG_WINDOW_MICROS));
+
+        writeAndFlush(channel, "a");
+        writeAndFlush(channel, "b");
+        Assert.assertEquals(1, channel.outboundMessages().size());
+
+        // 移除handler的时候把积攒的数据写出去，之后的flush直接透传
+        channel.pipeline().remove(WriteCoalescingHandler.class);
+        Assert.assertEquals(2, counter.flushes);
+        Assert.assertEquals(2, channel.outboundMessages().size());
+
+        writeAndFlush(channel, "c");
+        Assert.assertEquals(3, counter.flushes);
+        Assert.assertEquals(3, channel.outboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+}
@@ -14,11 +14,17 @@
 package com.zfoo.net.protocol;
 
 import com.zfoo.net.NetContext;
+import com.zfoo.net.consumer.batch.BatchAnswer;
+import com.zfoo.net.consumer.batch.BatchAsk;
 import com.zfoo.net.packet.*;
+import com.zfoo.net.packet.common.Error;
 import com.zfoo.net.packet.model.DecodedPacketInfo;
 import com.zfoo.net.packet.service.IPacketService;
 import com.zfoo.net.packet.service.PacketService;
 import com.zfoo.net.router.attachment.SignalAttachment;
+import com.zfoo.net.router.exception.UnexpectedProtocolException;
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.util.ReflectionUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.Assert;
@@ -248,4 +254,104 @@ public class ProtocolTest {
         Assert.assertNull(packetInfo.getAttachment());
     }
 
+    @Test
+    public void testBatchAsk() {
+        CM_Int cmInt = new CM_Int();
+        cmInt.setC(Integer.MAX_VALUE);
+        cmInt.setF("batch");
+        CM_Object cmObject = new CM_Object();
+        cmObject.setA(Integer.MIN_VALUE);
+        cmObject.setB(objectA0);
+        List<IPacket> packets = List.of(cmInt, cmObject, cmInt);
+        int[] executorConsistentHashes = new int[]{1, -2, Integer.MAX_VALUE};
+
+        ByteBuf writeBuff = Unpooled.buffer();
+        packetService.write(writeBuff, BatchAsk.valueOf(packets, executorConsistentHashes), attachment);
+
+        writeBuff.readerIndex(PacketService.PACKET_HEAD_LENGTH);// 信息头的长度
+
+        DecodedPacketInfo packetInfo = packetService.read(writeBuff);
+
+        BatchAsk batchAsk = (BatchAsk) packetInfo.getPacket();
+        Assert.assertArrayEquals(executorConsistentHashes, batchAsk.getExecutorConsistentHashes());
+        Assert.assertEquals(packets, batchAsk.decodePackets());
+        Assert.assertEquals(packetInfo.getAttachment(), attachment);
+    }
+
+    @Test
+    public void testBatchAnswer() {
+        CM_Int cmInt = new CM_Int();
+        cmInt.setF("answer");
+        List<IPacket> answers = List.of(cmInt, Error.valueOf(cmInt, 1, "error"));
+
+        ByteBuf writeBuff = Unpooled.buffer();
+        packetService.write(writeBuff, BatchAnswer.valueOf(answers), attachment);
+
+        writeBuff.readerIndex(PacketService.PACKET_HEAD_LENGTH);// 信息头的长度
+
+        DecodedPacketInfo packetInfo = packetService.read(writeBuff);
+
+        BatchAnswer batchAnswer = (BatchAnswer) packetInfo.getPacket();
+        List<IPacket> decodedAnswers = batchAnswer.decodePackets(answers.size());
+        Assert.assertEquals(cmInt, decodedAnswers.get(0));
+        Error error = (Error) decodedAnswers.get(1);
+        Assert.assertEquals(1, error.getErrorCode());
+        Assert.assertEquals("error", error.getErrorMessage());
+
+        // 回复的数量和子请求的数量不一致
+        try {
+            batchAnswer.decodePackets(answers.size() + 1);
+            Assert.fail();
+        } catch (UnexpectedProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompress() {
+        var compressPacketService = new PacketService();
+        var compressThresholdField = ReflectionUtils.getFieldByNameInPOJOClass(PacketService.class, "compressThreshold");
+        ReflectionUtils.makeAccessible(compressThresholdField);
+        ReflectionUtils.setField(compressThresholdField, compressPacketService, 64);
+
+        CM_Int cm = new CM_Int();
+        cm.setF("compress".repeat(100));
+
+        ByteBuf writeBuff = Unpooled.buffer();
+        compressPacketService.write(writeBuff, cm, attachment);
+
+        var header = writeBuff.readInt();
+        Assert.assertTrue(PacketService.isCompressed(header));
+        Assert.assertEquals(writeBuff.readableBytes(), PacketService.packetLength(header));
+
+        DecodedPacketInfo packetInfo = compressPacketService.read(compressPacketService.decompress(writeBuff));
+        Assert.assertEquals(cm, packetInfo.getPacket());
+        Assert.assertEquals(attachment, packetInfo.getAttachment());
+
+        // 原始长度超过最大的包长度，在分配内存之前拒绝
+        ByteBuf bombBuff = Unpooled.buffer();
+        bombBuff.writeInt(PacketService.MAX_PACKET_LENGTH + 1);
+        bombBuff.writeZero(PacketService.MAX_PACKET_LENGTH / 255 + 1);
+        try {
+            compressPacketService.decompress(bombBuff);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompressDisabled() {
+        // 没有配置压缩的节点拒绝压缩的包
+        ByteBuf writeBuff = Unpooled.buffer();
+        writeBuff.writeInt(16);
+        writeBuff.writeZero(8);
+        try {
+            packetService.decompress(writeBuff);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.net.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class SerialTaskExecutorTest {
+
+    /**
+     * 一个进程中只能初始化一次协议，所以需要TaskBus的测试共用一个work-stealing模式的context
+     */
+    private static final ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("task/work_stealing_config.xml");
+
+    private static final int KEY_SIZE = 8;
+    private static final int TASK_SIZE = 20_000;
+
+    /**
+     * 同一个key的任务在work-stealing线程池中按照提交顺序执行，并且不会并发执行
+     */
+    @Test
+    public void fifoTest() throws InterruptedException {
+        var pool = new ForkJoinPool(4, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        var executors = new ArrayList<SerialTaskExecutor>();
+        for (var key = 0; key < KEY_SIZE; key++) {
+            executors.add(new SerialTaskExecutor(key, pool));
+        }
+
+        var checker = new OrderChecker();
+        var threads = new ArrayList<Thread>();
+        for (var key = 0; key < KEY_SIZE; key++) {
+            var executor = executors.get(key);
+            var keyIndex = key;
+            threads.add(new Thread(() -> {
+                for (var i = 0; i < TASK_SIZE; i++) {
+                    executor.execute(checker.task(keyIndex, i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        checker.await();
+        pool.shutdown();
+    }
+
+    @Test
+    public void shutdownTest() throws InterruptedException {
+        var pool = new ForkJoinPool(2, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        var executor = new SerialTaskExecutor(1, pool);
+
+        var blockLatch = new CountDownLatch(1);
+        var count = new AtomicInteger(0);
+        executor.execute(() -> {
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (var i = 0; i < 10; i++) {
+            executor.execute(count::incrementAndGet);
+        }
+
+        // shutdown之后已经提交的任务继续执行，新的任务被拒绝
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertFalse(executor.isTerminated());
+        try {
+            executor.execute(count::incrementAndGet);
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Assert.assertFalse(executor.awaitTermination(10, TimeUnit.MILLISECONDS));
+
+        blockLatch.countDown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(10, count.get());
+        Assert.assertFalse(pool.isShutdown());
+        pool.shutdown();
+    }
+
+    @Test
+    public void shutdownNowTest() throws InterruptedException {
+        var pool = new ForkJoinPool(2, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        var executor = new SerialTaskExecutor(1, pool);
+
+        var blockLatch = new CountDownLatch(1);
+        var startLatch = new CountDownLatch(1);
+        var count = new AtomicInteger(0);
+        executor.execute(() -> {
+            startLatch.countDown();
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        startLatch.await();
+        for (var i = 0; i < 10; i++) {
+            executor.execute(count::incrementAndGet);
+        }
+
+        // 正在执行的任务不会被中断，还没有执行的任务被返回
+        var remainTasks = executor.shutdownNow();
+        Assert.assertEquals(10, remainTasks.size());
+        Assert.assertEquals(0, executor.size());
+
+        blockLatch.countDown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, count.get());
+
+        remainTasks.forEach(Runnable::run);
+        Assert.assertEquals(10, count.get());
+        pool.shutdown();
+    }
+
+    /**
+     * 回收和提交任务并发执行，持有旧的executor提交的任务被转发到TaskBus中这个key新的executor，顺序依然是保证的
+     */
+    @Test
+    public void reclaimTest() throws InterruptedException {
+        var checker = new OrderChecker();
+        var running = new AtomicBoolean(true);
+        var reclaimCount = new AtomicInteger(0);
+        var reclaimThread = new Thread(() -> {
+            while (running.get()) {
+                TaskBus.reclaimSerialExecutors(0);
+                reclaimCount.incrementAndGet();
+                Thread.yield();
+            }
+        });
+        reclaimThread.setDaemon(true);
+        reclaimThread.start();
+
+        var threads = new ArrayList<Thread>();
+        for (var key = 0; key < KEY_SIZE; key++) {
+            var keyIndex = key;
+            threads.add(new Thread(() -> {
+                // 一半的任务通过一直持有的旧executor提交，一半的任务每次都从TaskBus获取executor
+                var staleExecutor = TaskBus.executor(keyIndex);
+                for (var i = 0; i < TASK_SIZE; i++) {
+                    var executor = (i % 2 == 0) ? staleExecutor : TaskBus.executor(keyIndex);
+                    executor.execute(checker.task(keyIndex, i));
+                    if (i % 100 == 0) {
+                        // 让队列有机会空闲，从而被回收
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        checker.await();
+        running.set(false);
+        reclaimThread.join();
+        Assert.assertTrue(reclaimCount.get() > 0);
+
+        // 被关闭的executor不再接受任务，TaskBus会替换成新的executor
+        var executor = TaskBus.executor(KEY_SIZE);
+        executor.shutdown();
+        Assert.assertNotSame(executor, TaskBus.executor(KEY_SIZE));
+        Assert.assertFalse(TaskBus.executor(KEY_SIZE).isShutdown());
+    }
+
+    /**
+     * 已经标记为回收但是还留在map中的executor，TaskBus会替换成新的executor，提交的任务不会一直转发给自己
+     */
+    @Test
+    public void reclaimedInMapTest() throws InterruptedException {
+        var executor = (SerialTaskExecutor) TaskBus.executor(KEY_SIZE);
+        Assert.assertTrue(executor.tryReclaim(System.currentTimeMillis(), 0));
+
+        var latch = new CountDownLatch(2);
+        executor.execute(latch::countDown);
+        var newExecutor = TaskBus.executor(KEY_SIZE);
+        Assert.assertNotSame(executor, newExecutor);
+        newExecutor.execute(latch::countDown);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 回收线程不停地回收的同时，每次都从TaskBus获取executor提交任务，不能拿到已经标记为回收但是还没有从map中删除的executor，
+     * 否则这个executor会一直把任务转发给自己，最后StackOverflowError
+     */
+    @Test
+    public void reclaimRaceTest() throws InterruptedException {
+        var running = new AtomicBoolean(true);
+        var reclaimThread = new Thread(() -> {
+            while (running.get()) {
+                TaskBus.reclaimSerialExecutors(0);
+            }
+        });
+        reclaimThread.setDaemon(true);
+        reclaimThread.start();
+
+        var count = new AtomicInteger(0);
+        var errors = new ConcurrentLinkedQueue<Throwable>();
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 4; i++) {
+            var thread = new Thread(() -> {
+                for (var j = 0; j < TASK_SIZE * 10; j++) {
+                    try {
+                        TaskBus.executor(j % KEY_SIZE).execute(count::incrementAndGet);
+                    } catch (Throwable t) {
+                        errors.add(t);
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        reclaimThread.join();
+
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        var deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (count.get() < 4 * TASK_SIZE * 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(4 * TASK_SIZE * 10, count.get());
+    }
+
+    /**
+     * 检查每个key的任务是否按照提交的顺序执行，并且同一个key的任务没有并发执行
+     */
+    private static class OrderChecker {
+        private final int[] nextSequences = new int[KEY_SIZE];
+        private final AtomicBoolean[] runnings = new AtomicBoolean[KEY_SIZE];
+        private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        private final CountDownLatch latch = new CountDownLatch(KEY_SIZE * TASK_SIZE);
+
+        private OrderChecker() {
+            for (var i = 0; i < runnings.length; i++) {
+                runnings[i] = new AtomicBoolean(false);
+            }
+        }
+
+        private Runnable task(int key, int sequence) {
+            return () -> {
+                if (!runnings[key].compareAndSet(false, true)) {
+                    errors.add("key:" + key + " concurrent");
+                }
+                if (nextSequences[key] != sequence) {
+                    errors.add("key:" + key + " expect:" + nextSequences[key] + " actual:" + sequence);
+                }
+                nextSequences[key] = sequence + 1;
+                runnings[key].set(false);
+                latch.countDown();
+            };
+        }
+
+        private void await() throws InterruptedException {
+            Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+            List<String> errorList = new ArrayList<>(errors);
+            Assert.assertTrue(errorList.toString(), errorList.isEmpty());
+        }
+    }
+
+}
@@ -111,7 +111,7 @@ public class OrmContext implements ApplicationListener<ApplicationContextEvent>,
         try {
             instance.ormManager
                     .getAllEntityCaches()
-                    .forEach(it -> it.persistAll());
+                    .forEach(it -> it.persistAllByScan());
         } catch (Exception e) {
             logger.error("关闭服务器时，持久化缓存数据异常", e);
         } finally {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.lpmap;
+
+import com.zfoo.protocol.IPacket;
+
+import java.io.Closeable;
+import java.util.function.BiConsumer;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class ConcurrentOffHeapMap<V extends IPacket> implements LpMap<V>, Closeable {
+
+    private OffHeapMap<V> offHeapMap;
+
+    public ConcurrentOffHeapMap(Class<V> clazz) {
+        offHeapMap = new OffHeapMap<>(clazz);
+    }
+
+    public ConcurrentOffHeapMap(Class<V> clazz, int initialCapacity, int slabSize) {
+        offHeapMap = new OffHeapMap<>(clazz, initialCapacity, slabSize);
+    }
+
+    @Override
+    public synchronized V put(long key, V value) {
+        return offHeapMap.put(key, value);
+    }
+
+    @Override
+    public synchronized V putIfAbsent(long key, V packet) {
+        return offHeapMap.putIfAbsent(key, packet);
+    }
+
+    @Override
+    public synchronized V delete(long key) {
+        return offHeapMap.delete(key);
+    }
+
+    @Override
+    public synchronized V get(long key) {
+        return offHeapMap.get(key);
+    }
+
+    @Override
+    public synchronized long getMaxIndex() {
+        return offHeapMap.getMaxIndex();
+    }
+
+    @Override
+    public synchronized long getIncrementIndex() {
+        return offHeapMap.getIncrementIndex();
+    }
+
+    @Override
+    public synchronized void clear() {
+        offHeapMap.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        offHeapMap.close();
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<Long, V> biConsumer) {
+        offHeapMap.forEach(biConsumer);
+    }
+
+}
@@ -0,0 +1,820 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.lpmap;
+
+import com.zfoo.event.manager.EventBus;
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.ProtocolManager;
+import com.zfoo.protocol.exception.RunException;
+import com.zfoo.protocol.registration.IProtocolRegistration;
+import com.zfoo.protocol.registration.ProtocolAnalysis;
+import com.zfoo.protocol.util.FileUtils;
+import com.zfoo.protocol.util.IOUtils;
+import com.zfoo.protocol.util.StringUtils;
+import com.zfoo.util.math.NumberUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 基于内存映射文件的LpMap，线程安全。
+ * <p>
+ * 数据追加写入固定大小的段文件，索引文件保存每个key对应的数据位置，段文件和索引文件都通过mmap访问，get的时候直接从映射的内存中反序列化，不需要系统调用。
+ * <p>
+ * 被覆盖和删除的数据超过一半的段文件会在后台压缩，有效的数据被搬到当前写入的段文件之后删除旧的段文件，所以频繁更新的数据不会让文件无限增长。
+ * <p>
+ * 每次修改索引之前会写一条WAL日志，checkpoint把段文件和索引刷到磁盘之后清空WAL；启动的时候通过WAL和数据的校验和修复索引，保证索引不会指向没有写完整的数据。
+ * 数据只保证在checkpoint之后落盘，checkpoint在WAL写满、压缩完成和关闭的时候执行，也可以调用flush主动执行。
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class MappedFileMap<V extends IPacket> implements LpMap<V>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileMap.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * IOUtils.BYTES_PER_MB;
+
+    /**
+     * 数据记录的头部：key(8) + length(4) + crc(4)
+     */
+    private static final int RECORD_HEADER = 16;
+
+    /**
+     * 索引文件的头部：maxIndex(8) + 保留(8)，每个key的索引：position(8) + length(8)
+     */
+    private static final int INDEX_HEADER = 16;
+    private static final int INDEX_ENTRY = 16;
+    private static final int INDEX_CHUNK_SHIFT = 20;
+    private static final int INDEX_CHUNK_SIZE = 1 << INDEX_CHUNK_SHIFT;
+
+    /**
+     * WAL的头部：epoch(8) + watermark(8)，watermark是checkpoint时候的写入位置，之后写入的数据都在watermark之后
+     * <p>
+     * 每条日志：key(8) + position(8) + length(4) + previousPosition(8) + previousLength(4) + crc(4) + 补齐(4)
+     */
+    private static final int WAL_HEADER = 16;
+    private static final int WAL_ENTRY = 40;
+    private static final int WAL_SIZE = WAL_HEADER + WAL_ENTRY * 25600;
+
+    /**
+     * 有效数据小于等于这个比例的段文件会被压缩
+     */
+    private static final double COMPACT_RATIO = 0.5D;
+
+    /**
+     * 压缩的时候每次加锁处理的记录数量，避免长时间阻塞读写
+     */
+    private static final int COMPACT_BATCH = 256;
+
+    /**
+     * getFrom和forEach每次加锁读取的key的数量
+     */
+    private static final int RANGE_BATCH = 4096;
+
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 写入的字节数，重启之后打开的段文件不再写入，按照整个文件的大小计算
+         */
+        private int writeOffset;
+
+        /**
+         * 有效数据的字节数
+         */
+        private long liveBytes;
+
+        /**
+         * 压缩失败的段文件不再压缩
+         */
+        private boolean compactable = true;
+
+        private Segment(int id, File file, MappedByteBuffer buffer, int writeOffset) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.writeOffset = writeOffset;
+        }
+    }
+
+    private final File dbDirectory;
+    private final String name;
+    private final int segmentSize;
+    private final IProtocolRegistration protocolRegistration;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private RandomAccessFile indexFileRandomAccess;
+    private FileChannel indexFileChannel;
+    private final Map<Integer, MappedByteBuffer> indexChunks = new ConcurrentHashMap<>();
+
+    private RandomAccessFile walFileRandomAccess;
+    private MappedByteBuffer wal;
+    private long walEpoch;
+    private int walOffset;
+
+    /**
+     * 下面的属性只能在写锁中修改
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Set<Segment> dirtySegments = new HashSet<>();
+    private Segment activeSegment;
+    private volatile long maxIndex;
+    private volatile boolean closed;
+
+    private final ByteBuf writeBuffer = ByteBufAllocator.DEFAULT.ioBuffer(1024);
+    private final CRC32C crc = new CRC32C();
+
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    public MappedFileMap(String dbPath, Class<V> clazz) {
+        this(dbPath, clazz, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileMap(String dbPath, Class<V> clazz, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER) {
+            throw new RunException("段文件的大小[{}]太小", segmentSize);
+        }
+        try {
+            this.dbDirectory = FileUtils.createDirectory(dbPath);
+            this.name = clazz.getSimpleName();
+            this.segmentSize = segmentSize;
+
+            var protocolId = ProtocolAnalysis.getProtocolIdByClass(clazz);
+            this.protocolRegistration = ProtocolManager.getProtocol(protocolId);
+
+            var indexFile = FileUtils.getOrCreateFile(dbPath, StringUtils.format("{}.mindex", name));
+            this.indexFileRandomAccess = new RandomAccessFile(indexFile, "rw");
+            this.indexFileChannel = indexFileRandomAccess.getChannel();
+            this.maxIndex = indexChunk(0).getLong(0);
+
+            var walFile = FileUtils.getOrCreateFile(dbPath, StringUtils.format("{}.wal", name));
+            this.walFileRandomAccess = new RandomAccessFile(walFile, "rw");
+            this.wal = walFileRandomAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, WAL_SIZE);
+
+            loadSegments();
+            recover();
+            // 重启之后总是写入新的段文件，旧的段文件只读，没有写满的部分由压缩回收
+            rollSegment();
+            checkpoint();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        compactIfNecessary();
+    }
+
+    @Override
+    public V put(long key, V packet) {
+        checkKey(key);
+
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            var previousValue = doGet(key);
+            doPut(key, packet);
+            return previousValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(long key, V packet) {
+        checkKey(key);
+
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            var previousValue = doGet(key);
+            if (previousValue == null) {
+                doPut(key, packet);
+            }
+            return previousValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V delete(long key) {
+        checkKey(key);
+
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            if (key > maxIndex || readLength(key) <= 0) {
+                return null;
+            }
+            var previousValue = doGet(key);
+            updateIndex(key, 0L, 0);
+            return previousValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V get(long key) {
+        checkKey(key);
+
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            return doGet(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取从startKey到endKey的值，按照key从小到大排列。
+     * <p>
+     * 每一批key的索引在一次加锁中读出，然后按照数据在段文件中的位置顺序读取，避免随机访问。
+     *
+     * @param startKey inclusive
+     * @param endKey   exclusive
+     * @return list
+     */
+    public List<V> getFrom(long startKey, long endKey) {
+        checkKey(startKey);
+        checkKey(endKey);
+
+        if (startKey >= endKey) {
+            throw new RunException("range error startKey < endKey");
+        }
+
+        var list = new ArrayList<V>();
+        readRange(startKey, endKey, (key, value) -> list.add(value));
+        return list;
+    }
+
+    @Override
+    public long getMaxIndex() {
+        return maxIndex;
+    }
+
+    /**
+     * 自增的索引和数据一样先写WAL，重启的时候通过重放WAL恢复，所以进程崩溃之后不会回退。
+     * <p>
+     * 和数据一样只保证在checkpoint之后落盘，操作系统崩溃的时候最后一次checkpoint之后分配的索引可能会再次分配，
+     * 如果分配出去的索引没有写入这个map又要求严格不重复，需要在分配之后调用flush
+     */
+    @Override
+    public long getIncrementIndex() {
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            maxIndex++;
+            // 只记录key的日志，重放的时候索引还是空的，但是maxIndex会恢复
+            appendWal(maxIndex, 0L, 0, 0L, 0);
+            writeMaxIndex();
+            return maxIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 回调不在锁中执行，所以可以在回调中修改这个map
+     */
+    @Override
+    public void forEach(BiConsumer<Long, V> biConsumer) {
+        readRange(0L, Long.MAX_VALUE, biConsumer);
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            for (var segment : segments.values()) {
+                PlatformDependent.freeDirectBuffer(segment.buffer);
+                FileUtils.deleteFile(segment.file);
+            }
+            segments.clear();
+            dirtySegments.clear();
+            activeSegment = null;
+
+            indexChunks.values().forEach(it -> PlatformDependent.freeDirectBuffer(it));
+            indexChunks.clear();
+            indexFileRandomAccess.setLength(0);
+            maxIndex = 0;
+            writeMaxIndex();
+
+            rollSegment();
+            checkpoint();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把数据和索引刷到磁盘，之前写入的数据在进程或者操作系统崩溃之后都不会丢失
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            checkpoint();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            checkpoint();
+            closed = true;
+
+            segments.values().forEach(it -> PlatformDependent.freeDirectBuffer(it.buffer));
+            segments.clear();
+            dirtySegments.clear();
+            indexChunks.values().forEach(it -> PlatformDependent.freeDirectBuffer(it));
+            indexChunks.clear();
+            PlatformDependent.freeDirectBuffer(wal);
+            IOUtils.closeIO(indexFileRandomAccess, indexFileChannel, walFileRandomAccess);
+            ReferenceCountUtil.release(writeBuffer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private V doGet(long key) {
+        if (key > maxIndex) {
+            return null;
+        }
+        var length = readLength(key);
+        if (length <= 0) {
+            return null;
+        }
+        return decode(key, readPosition(key), length);
+    }
+
+    private void doPut(long key, V packet) {
+        writeBuffer.clear();
+        protocolRegistration.write(writeBuffer, packet);
+
+        var length = writeBuffer.readableBytes();
+        var position = append(key, writeBuffer.nioBuffer(), length);
+        updateIndex(key, position, length);
+
+        if (key > maxIndex) {
+            maxIndex = key;
+            writeMaxIndex();
+        }
+    }
+
+    private V decode(long key, long position, int length) {
+        var segment = segments.get(segmentOf(position));
+        try {
+            var slice = slice(segment.buffer, offsetOf(position) + RECORD_HEADER, length);
+            return (V) protocolRegistration.read(Unpooled.wrappedBuffer(slice));
+        } catch (Exception e) {
+            logger.error("[{}]读取[key:{}][segment:{}][offset:{}]的数据异常", name, key, segmentOf(position), offsetOf(position), e);
+            return null;
+        }
+    }
+
+    private void readRange(long startKey, long endKey, BiConsumer<Long, V> biConsumer) {
+        var keys = new long[RANGE_BATCH];
+        var positions = new long[RANGE_BATCH];
+        var lengths = new int[RANGE_BATCH];
+        var order = new Integer[RANGE_BATCH];
+        var values = new Object[RANGE_BATCH];
+
+        for (var batchStart = startKey; batchStart < endKey; ) {
+            var size = 0;
+            lock.readLock().lock();
+            try {
+                checkClosed();
+                var batchEnd = Math.min(Math.min(endKey, maxIndex + 1), batchStart + RANGE_BATCH);
+                if (batchStart >= batchEnd) {
+                    return;
+                }
+                for (var key = batchStart; key < batchEnd; key++) {
+                    var length = readLength(key);
+                    if (length > 0) {
+                        keys[size] = key;
+                        positions[size] = readPosition(key);
+                        lengths[size] = length;
+                        order[size] = size;
+                        size++;
+                    }
+                }
+                // 按照数据在文件中的位置顺序读取
+                Arrays.sort(order, 0, size, Comparator.comparingLong(it -> positions[it]));
+                for (var i = 0; i < size; i++) {
+                    var index = order[i];
+                    values[index] = decode(keys[index], positions[index], lengths[index]);
+                }
+                batchStart = batchEnd;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            for (var i = 0; i < size; i++) {
+                var value = (V) values[i];
+                values[i] = null;
+                if (value != null) {
+                    biConsumer.accept(keys[i], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把一条记录追加到当前的段文件
+     *
+     * @return 记录的位置
+     */
+    private long append(long key, ByteBuffer payload, int length) {
+        var recordSize = RECORD_HEADER + length;
+        if (recordSize > segmentSize) {
+            throw new RunException("[{}]的数据[key:{}]大小[{}]超过了段文件的大小[{}]", name, key, length, segmentSize);
+        }
+        if (activeSegment.writeOffset + recordSize > segmentSize) {
+            rollSegment();
+        }
+
+        var segment = activeSegment;
+        var buffer = segment.buffer;
+        var offset = segment.writeOffset;
+        slice(buffer, offset + RECORD_HEADER, length).put(payload);
+        buffer.putLong(offset, key);
+        buffer.putInt(offset + 8, length);
+        buffer.putInt(offset + 12, crc(buffer, offset + RECORD_HEADER, length));
+
+        segment.writeOffset += recordSize;
+        dirtySegments.add(segment);
+        return position(segment.id, offset);
+    }
+
+    /**
+     * 修改索引，先写WAL，然后修改索引，最后统计段文件的有效数据
+     */
+    private void updateIndex(long key, long position, int length) {
+        var previousPosition = readPosition(key);
+        var previousLength = readLength(key);
+
+        appendWal(key, position, length, previousPosition, previousLength);
+        writeIndex(key, position, length);
+
+        if (length > 0) {
+            segments.get(segmentOf(position)).liveBytes += RECORD_HEADER + length;
+        }
+        if (previousLength > 0) {
+            var segment = segments.get(segmentOf(previousPosition));
+            if (segment != null) {
+                segment.liveBytes -= RECORD_HEADER + previousLength;
+                if (needCompact(segment)) {
+                    compactIfNecessary();
+                }
+            }
+        }
+    }
+
+    private void rollSegment() {
+        var id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        var file = new File(dbDirectory, StringUtils.format("{}.{}.seg", name, id));
+        try (var randomAccess = new RandomAccessFile(file, "rw")) {
+            var buffer = randomAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            var segment = new Segment(id, file, buffer, 0);
+            segments.put(id, segment);
+            dirtySegments.add(segment);
+
+            var previousSegment = activeSegment;
+            activeSegment = segment;
+            if (previousSegment != null && needCompact(previousSegment)) {
+                compactIfNecessary();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkpoint() {
+        dirtySegments.forEach(it -> it.buffer.force());
+        dirtySegments.clear();
+        indexChunks.values().forEach(it -> it.force());
+
+        // 数据和索引都落盘之后才切换WAL，旧的WAL重放多次也是一样的结果
+        walEpoch++;
+        wal.putLong(0, walEpoch);
+        wal.putLong(8, position(activeSegment.id, activeSegment.writeOffset));
+        wal.force();
+        walOffset = WAL_HEADER;
+    }
+
+    private void appendWal(long key, long position, int length, long previousPosition, int previousLength) {
+        if (walOffset + WAL_ENTRY > WAL_SIZE) {
+            checkpoint();
+        }
+        wal.putLong(walOffset, key);
+        wal.putLong(walOffset + 8, position);
+        wal.putInt(walOffset + 16, length);
+        wal.putLong(walOffset + 20, previousPosition);
+        wal.putInt(walOffset + 28, previousLength);
+        wal.putInt(walOffset + 32, walCrc(walOffset));
+        walOffset += WAL_ENTRY;
+    }
+
+    private int walCrc(int offset) {
+        crc.reset();
+        crc.update(slice(wal, offset, 32));
+        for (var i = 0; i < Long.BYTES; i++) {
+            crc.update((int) (walEpoch >>> (i * 8)));
+        }
+        return (int) crc.getValue();
+    }
+
+    private int crc(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(slice(buffer, offset, length));
+        return (int) crc.getValue();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private void loadSegments() throws IOException {
+        var prefix = name + StringUtils.PERIOD;
+        var files = dbDirectory.listFiles((dir, fileName) -> fileName.startsWith(prefix) && fileName.endsWith(".seg"));
+        if (files == null) {
+            return;
+        }
+        for (var file : files) {
+            var fileName = file.getName();
+            var idStr = fileName.substring(prefix.length(), fileName.length() - ".seg".length());
+            if (!NumberUtils.isNumeric(idStr)) {
+                continue;
+            }
+            var id = Integer.parseInt(idStr);
+            try (var randomAccess = new RandomAccessFile(file, "r")) {
+                var buffer = randomAccess.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccess.length());
+                segments.put(id, new Segment(id, file, buffer, (int) randomAccess.length()));
+            }
+        }
+    }
+
+    /**
+     * 重放WAL，然后检查checkpoint之后写入的索引是否指向完整的数据，最后统计每个段文件的有效数据
+     */
+    private void recover() {
+        walEpoch = wal.getLong(0);
+        var watermark = wal.getLong(8);
+
+        var replayCount = 0;
+        for (var offset = WAL_HEADER; offset + WAL_ENTRY <= WAL_SIZE; offset += WAL_ENTRY) {
+            if (wal.getInt(offset + 32) != walCrc(offset)) {
+                break;
+            }
+            var key = wal.getLong(offset);
+            var position = wal.getLong(offset + 8);
+            var length = wal.getInt(offset + 16);
+            // 数据没有完整写入的时候恢复成之前的值
+            if (length > 0 && !isValidRecord(key, position, length)) {
+                position = wal.getLong(offset + 20);
+                length = wal.getInt(offset + 28);
+            }
+            writeIndex(key, position, length);
+            maxIndex = Math.max(maxIndex, key);
+            replayCount++;
+        }
+
+        var brokenCount = 0;
+        for (var key = 0L; key <= maxIndex; key++) {
+            var length = readLength(key);
+            if (length <= 0) {
+                continue;
+            }
+            var position = readPosition(key);
+            var segment = segments.get(segmentOf(position));
+            if (segment == null || (position >= watermark && !isValidRecord(key, position, length))) {
+                writeIndex(key, 0L, 0);
+                brokenCount++;
+                continue;
+            }
+            segment.liveBytes += RECORD_HEADER + length;
+        }
+        writeMaxIndex();
+
+        if (replayCount > 0 || brokenCount > 0) {
+            logger.warn("[{}]没有正常关闭，重放了[{}]条WAL日志，丢弃了[{}]条不完整的数据", name, replayCount, brokenCount);
+        }
+    }
+
+    private boolean isValidRecord(long key, long position, int length) {
+        var segment = segments.get(segmentOf(position));
+        if (segment == null) {
+            return false;
+        }
+        var offset = offsetOf(position);
+        if (offset < 0 || (long) offset + RECORD_HEADER + length > segment.buffer.capacity()) {
+            return false;
+        }
+        var buffer = segment.buffer;
+        return buffer.getLong(offset) == key
+                && buffer.getInt(offset + 8) == length
+                && buffer.getInt(offset + 12) == crc(buffer, offset + RECORD_HEADER, length);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private boolean needCompact(Segment segment) {
+        return segment != activeSegment && segment.compactable && segment.liveBytes <= segment.writeOffset * COMPACT_RATIO;
+    }
+
+    private void compactIfNecessary() {
+        if (closed || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        EventBus.execute(name.hashCode()).execute(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                logger.error("[{}]压缩段文件异常", name, e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    private void compact() {
+        while (true) {
+            Segment segment = null;
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                for (var value : segments.values()) {
+                    if (needCompact(value)) {
+                        segment = value;
+                        break;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (segment == null) {
+                return;
+            }
+            compactSegment(segment);
+        }
+    }
+
+    /**
+     * 把段文件中还有效的记录搬到当前的段文件，然后删除这个段文件
+     */
+    private void compactSegment(Segment segment) {
+        var buffer = segment.buffer;
+        var offset = 0;
+        var finished = false;
+        while (!finished) {
+            lock.writeLock().lock();
+            try {
+                if (closed || segments.get(segment.id) != segment) {
+                    return;
+                }
+                for (var i = 0; i < COMPACT_BATCH && !finished; i++) {
+                    if (segment.liveBytes <= 0 || offset + RECORD_HEADER > segment.writeOffset) {
+                        finished = true;
+                        break;
+                    }
+                    var key = buffer.getLong(offset);
+                    var length = buffer.getInt(offset + 8);
+                    if (length <= 0 || offset + RECORD_HEADER + length > segment.writeOffset) {
+                        finished = true;
+                        break;
+                    }
+                    var position = position(segment.id, offset);
+                    if (key >= 0 && key <= maxIndex && readPosition(key) == position && readLength(key) == length) {
+                        var newPosition = append(key, slice(buffer, offset + RECORD_HEADER, length), length);
+                        updateIndex(key, newPosition, length);
+                    }
+                    offset += RECORD_HEADER + length;
+                }
+
+                if (finished) {
+                    if (segment.liveBytes > 0) {
+                        segment.compactable = false;
+                        logger.error("[{}]的段文件[{}]压缩之后还有[{}]字节的有效数据，数据可能已经损坏", name, segment.file, segment.liveBytes);
+                        return;
+                    }
+                    // 搬走的数据落盘之后才能删除旧的段文件
+                    checkpoint();
+                    segments.remove(segment.id);
+                    dirtySegments.remove(segment);
+                    PlatformDependent.freeDirectBuffer(buffer);
+                    FileUtils.deleteFile(segment.file);
+                    logger.info("[{}]压缩段文件[{}]完成", name, segment.file.getName());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private MappedByteBuffer indexChunk(int chunk) {
+        return indexChunks.computeIfAbsent(chunk, it -> {
+            try {
+                return indexFileChannel.map(FileChannel.MapMode.READ_WRITE, (long) it << INDEX_CHUNK_SHIFT, INDEX_CHUNK_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private long readPosition(long key) {
+        var offset = INDEX_HEADER + key * INDEX_ENTRY;
+        return indexChunk((int) (offset >>> INDEX_CHUNK_SHIFT)).getLong((int) (offset & (INDEX_CHUNK_SIZE - 1)));
+    }
+
+    private int readLength(long key) {
+        var offset = INDEX_HEADER + key * INDEX_ENTRY + 8;
+        return (int) indexChunk((int) (offset >>> INDEX_CHUNK_SHIFT)).getLong((int) (offset & (INDEX_CHUNK_SIZE - 1)));
+    }
+
+    private void writeIndex(long key, long position, int length) {
+        var offset = INDEX_HEADER + key * INDEX_ENTRY;
+        var chunk = indexChunk((int) (offset >>> INDEX_CHUNK_SHIFT));
+        var chunkOffset = (int) (offset & (INDEX_CHUNK_SIZE - 1));
+        chunk.putLong(chunkOffset, position);
+        chunk.putLong(chunkOffset + 8, length);
+    }
+
+    private void writeMaxIndex() {
+        indexChunk(0).putLong(0, maxIndex);
+    }
+
+    /**
+     * ByteBuffer.slice(int, int)在jdk13才有，这里用duplicate之后的slice代替，不会修改原来buffer的position和limit
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        return buffer.duplicate().position(offset).limit(offset + length).slice();
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new RunException("[{}]已经关闭", name);
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.lpmap;
+
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.ProtocolManager;
+import com.zfoo.protocol.exception.RunException;
+import com.zfoo.protocol.registration.IProtocolRegistration;
+import com.zfoo.protocol.registration.ProtocolAnalysis;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 堆外内存的LpMap，value序列化之后保存在直接内存的slab中，get的时候再反序列化，非线程安全
+ * <p>
+ * 索引是开放寻址的long -> address哈希表，只有两个long数组，大量数据的时候堆中不会有大量的对象，减少老年代的占用和GC停顿。
+ * <p>
+ * 被覆盖和删除的数据超过一半的slab会把有效数据搬到当前的slab之后释放，所以频繁更新的时候堆外内存不会无限增长。
+ * 不再使用的时候需要调用close释放堆外内存。
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class OffHeapMap<V extends IPacket> implements LpMap<V>, Closeable {
+
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * slab中每条记录的头部：key(8) + length(4)
+     */
+    private static final int RECORD_HEADER = 12;
+
+    private static final long EMPTY_KEY = -1L;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
+    /**
+     * 有效数据小于等于这个比例的slab会被压缩
+     */
+    private static final double COMPACT_RATIO = 0.5D;
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private static class Slab {
+        private final ByteBuf buffer;
+        private int writeOffset;
+        private int liveBytes;
+
+        private Slab(ByteBuf buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final IProtocolRegistration protocolRegistration;
+
+    private final int slabSize;
+
+    /**
+     * 释放的slab的位置为null，新的slab会复用这个位置
+     */
+    private final List<Slab> slabs = new ArrayList<>();
+
+    private int activeSlab = -1;
+
+    /**
+     * 开放寻址的哈希表，addresses的高32位是slab的位置，低32位是记录在slab中的偏移
+     */
+    private long[] keys;
+    private long[] addresses;
+    private int mask;
+    private int shift;
+    private int size;
+
+    private long maxIndex = 0;
+
+    private final ByteBuf writeBuffer = ByteBufAllocator.DEFAULT.heapBuffer(256);
+
+    public OffHeapMap(Class<V> clazz) {
+        this(clazz, 128, DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapMap(Class<V> clazz, int initialCapacity, int slabSize) {
+        if (slabSize <= RECORD_HEADER) {
+            throw new RunException("slab的大小[{}]太小", slabSize);
+        }
+        var protocolId = ProtocolAnalysis.getProtocolIdByClass(clazz);
+        this.protocolRegistration = ProtocolManager.getProtocol(protocolId);
+        this.slabSize = slabSize;
+        initTable(tableSizeFor(initialCapacity));
+    }
+
+    @Override
+    public V put(long key, V packet) {
+        checkKey(key);
+
+        if (key > maxIndex) {
+            maxIndex = key;
+        }
+
+        writeBuffer.clear();
+        protocolRegistration.write(writeBuffer, packet);
+        var address = append(key, writeBuffer, writeBuffer.readerIndex(), writeBuffer.readableBytes());
+
+        var slot = find(key);
+        if (slot >= 0) {
+            var previousAddress = addresses[slot];
+            var previousValue = decode(previousAddress);
+            addresses[slot] = address;
+            release(previousAddress);
+            return previousValue;
+        }
+
+        insert(key, address);
+        return null;
+    }
+
+    @Override
+    public V delete(long key) {
+        checkKey(key);
+        if (key > maxIndex) {
+            return null;
+        }
+
+        var slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        var address = addresses[slot];
+        var previousValue = decode(address);
+        removeSlot(slot);
+        release(address);
+        return previousValue;
+    }
+
+    @Override
+    public V get(long key) {
+        checkKey(key);
+        var slot = find(key);
+        return slot < 0 ? null : decode(addresses[slot]);
+    }
+
+    @Override
+    public long getMaxIndex() {
+        return maxIndex;
+    }
+
+    @Override
+    public long getIncrementIndex() {
+        maxIndex++;
+        return maxIndex;
+    }
+
+    @Override
+    public void clear() {
+        maxIndex = 0;
+        releaseSlabs();
+        initTable(keys.length);
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, V> biConsumer) {
+        for (var i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                biConsumer.accept(keys[i], decode(addresses[i]));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        releaseSlabs();
+        ReferenceCountUtil.release(writeBuffer);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private V decode(long address) {
+        var slab = slabs.get(slabOf(address)).buffer;
+        var offset = offsetOf(address);
+        var length = slab.getInt(offset + 8);
+        return (V) protocolRegistration.read(slab.slice(offset + RECORD_HEADER, length));
+    }
+
+    /**
+     * 把一条记录追加到当前的slab，比slab还大的记录单独使用一个slab
+     *
+     * @return 记录的地址
+     */
+    private long append(long key, ByteBuf payload, int payloadIndex, int length) {
+        var recordSize = RECORD_HEADER + length;
+        // 压缩上一个slab的时候会把数据搬到新的slab，所以需要重新检查剩余的空间
+        while (activeSlab < 0 || slabs.get(activeSlab).writeOffset + recordSize > slabs.get(activeSlab).buffer.capacity()) {
+            var previousSlab = activeSlab;
+            activeSlab = newSlab(Math.max(slabSize, recordSize));
+            if (previousSlab >= 0 && needCompact(previousSlab)) {
+                compact(previousSlab);
+            }
+        }
+
+        var slab = slabs.get(activeSlab);
+        var offset = slab.writeOffset;
+        slab.buffer.setLong(offset, key);
+        slab.buffer.setInt(offset + 8, length);
+        slab.buffer.setBytes(offset + RECORD_HEADER, payload, payloadIndex, length);
+        slab.writeOffset += recordSize;
+        slab.liveBytes += recordSize;
+        return address(activeSlab, offset);
+    }
+
+    private void release(long address) {
+        var index = slabOf(address);
+        var slab = slabs.get(index);
+        slab.liveBytes -= RECORD_HEADER + slab.buffer.getInt(offsetOf(address) + 8);
+        if (needCompact(index)) {
+            compact(index);
+        }
+    }
+
+    private boolean needCompact(int index) {
+        var slab = slabs.get(index);
+        return index != activeSlab && slab.liveBytes <= slab.writeOffset * COMPACT_RATIO;
+    }
+
+    /**
+     * 把slab中还有效的记录搬到当前的slab，然后释放这个slab
+     */
+    private void compact(int index) {
+        var slab = slabs.get(index);
+        var buffer = slab.buffer;
+        for (var offset = 0; offset < slab.writeOffset && slab.liveBytes > 0; ) {
+            var key = buffer.getLong(offset);
+            var length = buffer.getInt(offset + 8);
+            var slot = find(key);
+            if (slot >= 0 && addresses[slot] == address(index, offset)) {
+                addresses[slot] = append(key, buffer, offset + RECORD_HEADER, length);
+                slab.liveBytes -= RECORD_HEADER + length;
+            }
+            offset += RECORD_HEADER + length;
+        }
+        slabs.set(index, null);
+        ReferenceCountUtil.release(buffer);
+    }
+
+    private int newSlab(int capacity) {
+        var slab = new Slab(ByteBufAllocator.DEFAULT.directBuffer(capacity, capacity));
+        var index = slabs.indexOf(null);
+        if (index < 0) {
+            slabs.add(slab);
+            return slabs.size() - 1;
+        }
+        slabs.set(index, slab);
+        return index;
+    }
+
+    private void releaseSlabs() {
+        for (var slab : slabs) {
+            if (slab != null) {
+                ReferenceCountUtil.release(slab.buffer);
+            }
+        }
+        slabs.clear();
+        activeSlab = -1;
+    }
+
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private void initTable(int capacity) {
+        keys = new long[capacity];
+        addresses = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        var size = Math.max(16, capacity);
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private int hash(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+    private int find(long key) {
+        for (var i = hash(key); keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long key, long address) {
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        var i = hash(key);
+        while (keys[i] != EMPTY_KEY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        addresses[i] = address;
+        size++;
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldAddresses = addresses;
+        initTable(oldKeys.length << 1);
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                insert(oldKeys[i], oldAddresses[i]);
+            }
+        }
+    }
+
+    /**
+     * 线性探测的删除，把后面的元素向前移动，不需要墓碑标记
+     */
+    private void removeSlot(int slot) {
+        var i = slot;
+        keys[i] = EMPTY_KEY;
+        size--;
+        for (var j = (i + 1) & mask; keys[j] != EMPTY_KEY; j = (j + 1) & mask) {
+            var k = hash(keys[j]);
+            // k在(i, j]之间的时候，j不能移动到i
+            var stay = (i <= j) ? (i < k && k <= j) : (i < k || k <= j);
+            if (!stay) {
+                keys[i] = keys[j];
+                addresses[i] = addresses[j];
+                keys[j] = EMPTY_KEY;
+                i = j;
+            }
+        }
+    }
+
+}
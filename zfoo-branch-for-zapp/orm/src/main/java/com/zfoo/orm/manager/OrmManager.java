@@ -38,6 +38,7 @@ import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.util.math.RandomUtils;
 import com.zfoo.util.net.HostAndPort;
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
@@ -77,6 +78,23 @@ public class OrmManager implements IOrmManager {
 
     private final Map<Class<? extends IEntity<?>>, String> collectionNameMap = new ConcurrentHashMap<>();
 
+    /**
+     * 通过META-INF/services注册的自定义CodecProvider，这些类型由自定义的编解码器负责序列化，不需要按照javabean检查
+     */
+    private final List<CodecProvider> customCodecProviders = new ArrayList<>();
+
+    private final CodecRegistry codecRegistry;
+
+    public OrmManager() {
+        ServiceLoader.load(CodecProvider.class).forEach(it -> customCodecProviders.add(it));
+
+        // 自定义的CodecProvider优先于默认的编解码器，没有自定义的CodecProvider时fromProviders不允许传入空列表
+        var codecProviders = new ArrayList<>(customCodecProviders);
+        codecProviders.add(MongoClientSettings.getDefaultCodecRegistry());
+        codecProviders.add(PojoCodecProvider.builder().automatic(true).build());
+        codecRegistry = CodecRegistries.fromProviders(codecProviders);
+    }
+
     public OrmConfig getOrmConfig() {
         return ormConfig;
     }
@@ -95,13 +113,9 @@ public class OrmManager implements IOrmManager {
             allEntityCachesUsableMap.put(entityDef.getClazz(), false);
         }
 
-        CodecRegistry pojoCodecRegistry = CodecRegistries.fromRegistries(
-                MongoClientSettings.getDefaultCodecRegistry(),
-                CodecRegistries.fromProviders(PojoCodecProvider.builder().automatic(true).build()));
-
         var mongoBuilder = MongoClientSettings
                 .builder()
-                .codecRegistry(pojoCodecRegistry);
+                .codecRegistry(codecRegistry);
 
         // 设置数据库地址
         var hostConfig = ormConfig.getHost();
@@ -336,7 +350,7 @@ public class OrmManager implements IOrmManager {
             indexTextDefMap.put(field.getName(), indexTextDef);
         }
 
-        return EntityDef.valueOf(idField, clazz, cacheSize, expireMillisecond, persisterStrategy, indexDefMap, indexTextDefMap);
+        return EntityDef.valueOf(idField, clazz, cacheSize, expireMillisecond, persisterStrategy, persister.diff(), indexDefMap, indexTextDefMap);
     }
 
     private void analyze(Class<?> clazz) {
@@ -499,6 +513,8 @@ public class OrmManager implements IOrmManager {
                 checkSubEntity(clazz, types[0], entitySubClassMap);
             } else if (Map.class.isAssignableFrom(fieldType)) {
                 throw new RunException("ORM[class:{}]类型声明不正确，不支持Map类型", clazz.getCanonicalName());
+            } else if (isCustomCodecType(fieldType)) {
+                // 由自定义的CodecProvider编解码，内部结构不需要满足javabean的要求
             } else {
                 entitySubClassMap.get(clazz).add(fieldType);
                 checkEntity(fieldType, entitySubClassMap);
@@ -533,6 +549,8 @@ public class OrmManager implements IOrmManager {
                 throw new RunException("ORM不支持多维数组或集合嵌套数组[type:{}]类型，仅支持一维数组", type);
             } else if (clazz.equals(List.class) || clazz.equals(Set.class) || clazz.equals(Map.class)) {
                 throw new RunException("ORM不支持数组和集合联合使用[type:{}]类型", type);
+            } else if (isCustomCodecType(clazz)) {
+                return;
             } else {
                 entitySubClassMap.get(currentEntityClass).add(clazz);
                 checkEntity(clazz, entitySubClassMap);
@@ -545,4 +563,13 @@ public class OrmManager implements IOrmManager {
     private boolean isBaseType(Class<?> clazz) {
         return clazz.isPrimitive() || Number.class.isAssignableFrom(clazz) || String.class.isAssignableFrom(clazz);
     }
+
+    private boolean isCustomCodecType(Class<?> clazz) {
+        for (var codecProvider : customCodecProviders) {
+            if (codecProvider.get(clazz, codecRegistry) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -16,6 +16,7 @@ package com.zfoo.orm.model.accessor;
 import com.zfoo.orm.model.entity.IEntity;
 import org.springframework.lang.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -45,4 +46,9 @@ public interface IAccessor {
     @Nullable
     <E extends IEntity<?>> E load(Object pk, Class<E> entityClazz);
 
+    /**
+     * 通过一次$in查询批量加载，数据库中不存在的主键不会出现在返回值中
+     */
+    <E extends IEntity<?>> List<E> loadAll(Collection<?> pks, Class<E> entityClazz);
+
 }
@@ -23,6 +23,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -144,4 +146,15 @@ public class MongodbAccessor implements IAccessor {
         return result.get(0);
     }
 
+    @Override
+    public <E extends IEntity<?>> List<E> loadAll(Collection<?> pks, Class<E> entityClazz) {
+        if (CollectionUtils.isEmpty(pks)) {
+            return Collections.emptyList();
+        }
+        var collection = OrmContext.getOrmManager().getCollection(entityClazz);
+        var result = new ArrayList<E>(pks.size());
+        collection.find(in("_id", pks)).forEach((Consumer<E>) document -> result.add(document));
+        return result;
+    }
+
 }
@@ -26,4 +26,10 @@ public @interface Persister {
 
     String value() default "default";
 
+    /**
+     * 是否只把变化的字段写入数据库。开启后会在内存中保存每个实体上一次写入数据库的BsonDocument快照，
+     * 持久化的时候用$set，$unset，$push只更新变化的路径，适合字段很多或者包含大集合，但是每次只修改很少字段的实体
+     */
+    boolean diff() default false;
+
 }
@@ -18,24 +18,33 @@ import com.mongodb.WriteConcern;
 import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.zfoo.orm.OrmContext;
 import com.zfoo.orm.model.entity.IEntity;
 import com.zfoo.orm.model.persister.IOrmPersister;
 import com.zfoo.orm.model.persister.PNode;
 import com.zfoo.orm.model.query.Page;
 import com.zfoo.orm.model.vo.EntityDef;
+import com.zfoo.orm.util.BsonDiffUtils;
 import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.util.AssertionUtils;
 import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.scheduler.util.TimeUtils;
+import org.bson.BsonDocument;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
@@ -50,12 +59,33 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
 
     private static final int BATCH_SIZE = 512;
 
+    /**
+     * 每执行多少次persistAll()做一次全量扫描
+     */
+    private static final int SCAN_PERSIST_PERIOD = 60;
+
     private final EntityDef entityDef;
 
     private final LoadingCache<PK, PNode<E>> cache;
 
+    /**
+     * 脏数据集合，update()的时候放入主键，persistAll()只需要持久化这里面的实体，而不用遍历整个缓存
+     */
+    private final Set<PK> dirtyPks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个实体上一次写入数据库的快照，只有开启了Persister.diff()才会使用，持久化的时候只更新和快照不同的字段
+     */
+    private final Map<PK, BsonDocument> snapshots;
+
+    /**
+     * persistAll()只在同一个EventBus线程中执行
+     */
+    private long persistCount = 0;
+
     public EntityCaches(EntityDef entityDef) {
         this.entityDef = entityDef;
+        this.snapshots = entityDef.isDiffUpdate() ? new ConcurrentHashMap<>() : null;
 
         this.cache = Caffeine.newBuilder()
                 .expireAfterAccess(entityDef.getExpireMillisecond(), TimeUnit.MILLISECONDS)
@@ -65,6 +95,10 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
                 .removalListener(new RemovalListener<PK, PNode<E>>() {
                     @Override
                     public void onRemoval(@Nullable PK pk, @Nullable PNode<E> pnode, @NonNull RemovalCause removalCause) {
+                        if (snapshots != null && pk != null) {
+                            snapshots.remove(pk);
+                        }
+
                         if (pnode.getWriteToDbTime() == pnode.getModifiedTime()) {
                             return;
                         }
@@ -95,10 +129,39 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
                         if (entity == null) {
                             entity = (E) entityDef.newEntity(pk);
                             logger.error("数据库[{}]没有包含主键[pk:{}]的文档，返回默认值", entityDef.getClazz().getSimpleName(), pk);
+                        } else if (snapshots != null) {
+                            snapshots.put(pk, toBsonDocument(entity));
                         }
 
                         return new PNode<E>(entity);
                     }
+
+                    @Override
+                    public @NonNull Map<@NonNull PK, @NonNull PNode<E>> loadAll(@NonNull Iterable<? extends @NonNull PK> pks) {
+                        var pkList = new ArrayList<PK>();
+                        pks.forEach(it -> pkList.add(it));
+
+                        // 一次$in查询加载所有缺失的主键
+                        var entities = (List<E>) OrmContext.getAccessor().loadAll(pkList, (Class<IEntity<?>>) entityDef.getClazz());
+                        var pnodeMap = new HashMap<PK, PNode<E>>(CollectionUtils.comfortableCapacity(pkList.size()));
+                        for (var entity : entities) {
+                            if (snapshots != null) {
+                                snapshots.put(entity.id(), toBsonDocument(entity));
+                            }
+                            pnodeMap.put(entity.id(), new PNode<E>(entity));
+                        }
+
+                        // 如果数据库中不存在则给一个默认值
+                        for (var pk : pkList) {
+                            if (pnodeMap.containsKey(pk)) {
+                                continue;
+                            }
+                            var entity = (E) entityDef.newEntity(pk);
+                            logger.error("数据库[{}]没有包含主键[pk:{}]的文档，返回默认值", entityDef.getClazz().getSimpleName(), pk);
+                            pnodeMap.put(pk, new PNode<E>(entity));
+                        }
+                        return pnodeMap;
+                    }
                 });
 
         if (CollectionUtils.isNotEmpty(entityDef.getIndexDefMap())) {
@@ -133,6 +196,30 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
         return entity;
     }
 
+    @Override
+    public Map<PK, E> loadAll(Collection<PK> pks) {
+        if (CollectionUtils.isEmpty(pks)) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            var pnodeMap = cache.getAll(pks);
+            var entityMap = new HashMap<PK, E>(CollectionUtils.comfortableCapacity(pnodeMap.size()));
+            pnodeMap.forEach((pk, pnode) -> entityMap.put(pk, pnode.getEntity()));
+            return entityMap;
+        } catch (Exception e) {
+            logger.error("数据库[{}]缓存批量加载[size:{}]发生exception异常，逐个加载", entityDef.getClazz().getSimpleName(), pks.size(), e);
+        } catch (Throwable t) {
+            logger.error("数据库[{}]缓存批量加载[size:{}]发生error异常，逐个加载", entityDef.getClazz().getSimpleName(), pks.size(), t);
+        }
+
+        var entityMap = new HashMap<PK, E>(CollectionUtils.comfortableCapacity(pks.size()));
+        for (var pk : pks) {
+            entityMap.put(pk, load(pk));
+        }
+        return entityMap;
+    }
+
     @Override
     public void update(E entity) {
         AssertionUtils.notNull(entity);
@@ -146,6 +233,7 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
 
         // 加100以防止，立刻加载并且立刻修改数据的情况发生时，服务器取到的时间戳相同
         currentPnode.setModifiedTime(TimeUtils.now() + 100);
+        dirtyPks.add(entity.id());
     }
 
     @Override
@@ -159,6 +247,48 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
     // 游戏中80%都是执行更新的操作，这样做会极大的提高更新速度
     @Override
     public void persistAll() {
+        // 每隔一段时间做一次全量扫描，兜底并校验脏数据集合是否有遗漏
+        if (++persistCount % SCAN_PERSIST_PERIOD == 0) {
+            persistAllByScan();
+            return;
+        }
+
+        try {
+            if (dirtyPks.isEmpty()) {
+                return;
+            }
+
+            var updateList = new ArrayList<E>();
+            var currentTime = TimeUtils.currentTimeMillis();
+            var iterator = dirtyPks.iterator();
+            while (iterator.hasNext()) {
+                var pk = iterator.next();
+                // 先移除再读取，持久化期间又被update的主键会重新进入脏数据集合，等待下一次持久化
+                iterator.remove();
+
+                // 已经不在缓存中的实体在removalListener中已经写入数据库
+                var pnode = cache.getIfPresent(pk);
+                if (pnode == null) {
+                    continue;
+                }
+
+                if (pnode.getModifiedTime() != pnode.getWriteToDbTime()) {
+                    pnode.setWriteToDbTime(currentTime);
+                    pnode.setModifiedTime(currentTime);
+                    updateList.add(pnode.getEntity());
+                }
+            }
+
+            persistList(updateList);
+        } catch (Exception e) {
+            logger.error("数据库持久化器[{}]的持久化过程中exception异常退出", entityDef.getClazz().getSimpleName(), e);
+        } catch (Throwable t) {
+            logger.error("数据库持久化器[{}]的持久化过程中throwable异常退出", entityDef.getClazz().getSimpleName(), t);
+        }
+    }
+
+    @Override
+    public void persistAllByScan() {
         try {
             var allPnodes = cache.asMap().values();
 
@@ -167,10 +297,14 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
             }
 
             var updateList = new ArrayList<E>();
+            var missCount = 0;
             var currentTime = TimeUtils.currentTimeMillis();
             for (var pnode : allPnodes) {
                 var entity = pnode.getEntity();
                 if (pnode.getModifiedTime() != pnode.getWriteToDbTime()) {
+                    if (!dirtyPks.remove(entity.id())) {
+                        missCount++;
+                    }
                     pnode.setWriteToDbTime(currentTime);
                     pnode.setModifiedTime(currentTime);
                     updateList.add(entity);
@@ -182,54 +316,95 @@ public class EntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>> impl
                 }
             }
 
-            // 执行更新
-            if (updateList.isEmpty()) {
-                return;
+            if (missCount > 0) {
+                logger.warn("数据库[{}]全量扫描发现[{}]个被修改的实体不在脏数据集合中，请检查是否有绕过update()的修改"
+                        , entityDef.getClazz().getSimpleName(), missCount);
             }
 
-            var page = Page.valueOf(1, BATCH_SIZE, updateList.size());
-            var maxPageSize = page.totalPage();
+            persistList(updateList);
+        } catch (Exception e) {
+            logger.error("数据库持久化器[{}]的持久化过程中exception异常退出", entityDef.getClazz().getSimpleName(), e);
+        } catch (Throwable t) {
+            logger.error("数据库持久化器[{}]的持久化过程中throwable异常退出", entityDef.getClazz().getSimpleName(), t);
+        }
+    }
 
-            for (var currentPage = 1; currentPage <= maxPageSize; currentPage++) {
-                page.setPage(currentPage);
-                var currentUpdateList = page.currentPageList(updateList);
-                try {
-                    var collection = OrmContext.getOrmManager().getCollection((Class<E>) entityDef.getClazz()).withWriteConcern(WriteConcern.ACKNOWLEDGED);
+    private void persistList(List<E> updateList) {
+        // 执行更新
+        if (updateList.isEmpty()) {
+            return;
+        }
+
+        var page = Page.valueOf(1, BATCH_SIZE, updateList.size());
+        var maxPageSize = page.totalPage();
 
-                    var batchList = currentUpdateList.stream()
-                            .map(it -> {
-                                var version = it.gvs();
-                                it.svs(version + 1);
+        for (var currentPage = 1; currentPage <= maxPageSize; currentPage++) {
+            page.setPage(currentPage);
+            var currentUpdateList = page.currentPageList(updateList);
+            try {
+                var collection = OrmContext.getOrmManager().getCollection((Class<E>) entityDef.getClazz()).withWriteConcern(WriteConcern.ACKNOWLEDGED);
 
-                                var filter = it.gvs() > 0
-                                        ? Filters.and(Filters.eq("_id", it.id()), Filters.eq("vs", version))
-                                        : Filters.eq("_id", it.id());
+                var newSnapshots = snapshots == null ? null : new ArrayList<BsonDocument>(currentUpdateList.size());
+                var batchList = new ArrayList<WriteModel<E>>(currentUpdateList.size());
+                for (var it : currentUpdateList) {
+                    var version = it.gvs();
+                    it.svs(version + 1);
 
-                                return new ReplaceOneModel<>(filter, it);
-                            })
-                            .collect(Collectors.toList());
+                    var filter = it.gvs() > 0
+                            ? Filters.and(Filters.eq("_id", it.id()), Filters.eq("vs", version))
+                            : Filters.eq("_id", it.id());
 
-                    var result = collection.bulkWrite(batchList, new BulkWriteOptions().ordered(false));
-                    if (result.getModifiedCount() == batchList.size()) {
+                    if (snapshots == null) {
+                        batchList.add(new ReplaceOneModel<>(filter, it));
                         continue;
                     }
 
-                    logger.error("在数据库[{}]的批量更新操作中需要更新的数量[{}]和最终更新的数量[{}]不相同，开始执行容错操作"
-                            , entityDef.getClazz().getSimpleName(), currentUpdateList.size(), result.getModifiedCount());
-                    persistAllAndCompare(currentUpdateList);
-                } catch (Throwable t) {
-                    logger.error("数据库[{}]批量更新操作未知异常，开始执行容错操作", entityDef.getClazz().getSimpleName(), t);
-                    persistAllAndCompare(currentUpdateList);
+                    // 有快照的实体只更新变化的字段，vs每次都会变化，所以更新语句一定不为空
+                    var newSnapshot = toBsonDocument(it);
+                    newSnapshots.add(newSnapshot);
+                    var oldSnapshot = snapshots.get(it.id());
+                    var update = oldSnapshot == null ? null : BsonDiffUtils.diff(oldSnapshot, newSnapshot);
+                    batchList.add(update == null ? new ReplaceOneModel<>(filter, it) : new UpdateOneModel<>(filter, update));
+                }
+
+                var result = collection.bulkWrite(batchList, new BulkWriteOptions().ordered(false));
+                if (result.getModifiedCount() == batchList.size()) {
+                    if (snapshots != null) {
+                        for (var i = 0; i < currentUpdateList.size(); i++) {
+                            snapshots.put(currentUpdateList.get(i).id(), newSnapshots.get(i));
+                        }
+                    }
+                    continue;
                 }
+
+                logger.error("在数据库[{}]的批量更新操作中需要更新的数量[{}]和最终更新的数量[{}]不相同，开始执行容错操作"
+                        , entityDef.getClazz().getSimpleName(), currentUpdateList.size(), result.getModifiedCount());
+                removeSnapshots(currentUpdateList);
+                persistAllAndCompare(currentUpdateList);
+            } catch (Throwable t) {
+                logger.error("数据库[{}]批量更新操作未知异常，开始执行容错操作", entityDef.getClazz().getSimpleName(), t);
+                removeSnapshots(currentUpdateList);
+                persistAllAndCompare(currentUpdateList);
             }
+        }
 
-            updateList.clear();
+        updateList.clear();
+    }
 
-        } catch (Exception e) {
-            logger.error("数据库持久化器[{}]的持久化过程中exception异常退出", entityDef.getClazz().getSimpleName(), e);
-        } catch (Throwable t) {
-            logger.error("数据库持久化器[{}]的持久化过程中throwable异常退出", entityDef.getClazz().getSimpleName(), t);
-        } finally {
+    private BsonDocument toBsonDocument(E entity) {
+        var collection = OrmContext.getOrmManager().getCollection((Class<E>) entityDef.getClazz());
+        return BsonDiffUtils.toBsonDocument(entity, collection.getCodecRegistry());
+    }
+
+    /**
+     * 无法确认数据库中的文档是否和快照一致，移除快照，下一次持久化的时候会整个文档替换
+     */
+    private void removeSnapshots(List<E> entities) {
+        if (snapshots == null) {
+            return;
+        }
+        for (var entity : entities) {
+            snapshots.remove(entity.id());
         }
     }
 
@@ -15,7 +15,9 @@ package com.zfoo.orm.model.cache;
 
 import com.zfoo.orm.model.entity.IEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 /**
@@ -29,6 +31,13 @@ public interface IEntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>>
      */
     E load(PK pk);
 
+    /**
+     * 批量加载，缓存中不存在的主键通过一次$in查询从数据库加载，数据库也不存在的主键和load一样返回默认值
+     *
+     * @return key为主键，value为对应的实体，包含所有的主键
+     */
+    Map<PK, E> loadAll(Collection<PK> pks);
+
     /**
      * 更新缓存中的数据，只更新缓存的时间戳，并通过一定策略写入到数据库
      */
@@ -42,10 +51,15 @@ public interface IEntityCaches<PK extends Comparable<PK>, E extends IEntity<PK>>
     void invalidate(PK pk);
 
     /**
-     * 持久化所有缓存数据
+     * 持久化所有被修改过的缓存数据，只会遍历update()过的主键
      */
     void persistAll();
 
+    /**
+     * 遍历整个缓存持久化所有被修改过的数据，作为persistAll()的兜底和校验，关闭服务器的时候也会调用
+     */
+    void persistAllByScan();
+
     /**
      * 获取所有存在的缓存对象
      */
@@ -36,18 +36,24 @@ public class EntityDef {
 
     private PersisterStrategy persisterStrategy;
 
+    /**
+     * 是否只把变化的字段写入数据库，对应于Persister.diff()
+     */
+    private boolean diffUpdate;
+
     private Map<String, IndexDef> indexDefMap;
 
     private Map<String, IndexTextDef> indexTextDefMap;
 
     public static EntityDef valueOf(Field idField, Class<? extends IEntity<?>> clazz, int cacheSize, long expireMillisecond
-            , PersisterStrategy persisterStrategy, Map<String, IndexDef> indexDefMap, Map<String, IndexTextDef> indexTextDefMap) {
+            , PersisterStrategy persisterStrategy, boolean diffUpdate, Map<String, IndexDef> indexDefMap, Map<String, IndexTextDef> indexTextDefMap) {
         var entityDef = new EntityDef();
         entityDef.idField = idField;
         entityDef.clazz = clazz;
         entityDef.cacheSize = cacheSize;
         entityDef.expireMillisecond = expireMillisecond;
         entityDef.persisterStrategy = persisterStrategy;
+        entityDef.diffUpdate = diffUpdate;
         entityDef.indexDefMap = indexDefMap;
         entityDef.indexTextDefMap = indexTextDefMap;
         return entityDef;
@@ -74,6 +80,10 @@ public class EntityDef {
         return persisterStrategy;
     }
 
+    public boolean isDiffUpdate() {
+        return diffUpdate;
+    }
+
     public Map<String, IndexDef> getIndexDefMap() {
         return indexDefMap;
     }
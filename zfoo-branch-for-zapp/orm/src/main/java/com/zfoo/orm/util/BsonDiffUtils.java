@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.util;
+
+import com.zfoo.protocol.util.StringUtils;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.lang.Nullable;
+
+/**
+ * 计算两个BsonDocument之间的差异，生成只包含变化字段的$set，$unset，$push更新语句
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public abstract class BsonDiffUtils {
+
+    private static final String ID = "_id";
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().isEncodingCollectibleDocument(true).build();
+
+    public static <E> BsonDocument toBsonDocument(E entity, CodecRegistry codecRegistry) {
+        var encoder = (Encoder<E>) codecRegistry.get(entity.getClass());
+        var document = new BsonDocument();
+        encoder.encode(new BsonDocumentWriter(document), entity, ENCODER_CONTEXT);
+        return document;
+    }
+
+    /**
+     * 生成从oldDocument变为newDocument的更新语句
+     * <p>
+     * 1. 子文档会递归比较，只$set变化的路径
+     * 2. 新数组以旧数组为前缀的时候（只在尾部追加），使用$push追加新增的元素
+     * 3. 新文档中不存在的字段使用$unset
+     *
+     * @return 更新语句，如果两个文档没有差异则返回null
+     */
+    @Nullable
+    public static BsonDocument diff(BsonDocument oldDocument, BsonDocument newDocument) {
+        var setDocument = new BsonDocument();
+        var unsetDocument = new BsonDocument();
+        var pushDocument = new BsonDocument();
+
+        diff(StringUtils.EMPTY, oldDocument, newDocument, setDocument, unsetDocument, pushDocument);
+
+        var update = new BsonDocument();
+        if (!setDocument.isEmpty()) {
+            update.append("$set", setDocument);
+        }
+        if (!unsetDocument.isEmpty()) {
+            update.append("$unset", unsetDocument);
+        }
+        if (!pushDocument.isEmpty()) {
+            update.append("$push", pushDocument);
+        }
+        return update.isEmpty() ? null : update;
+    }
+
+    private static void diff(String prefix, BsonDocument oldDocument, BsonDocument newDocument
+            , BsonDocument setDocument, BsonDocument unsetDocument, BsonDocument pushDocument) {
+        for (var entry : newDocument.entrySet()) {
+            var key = entry.getKey();
+            if (prefix.isEmpty() && ID.equals(key)) {
+                continue;
+            }
+
+            var path = prefix + key;
+            var newValue = entry.getValue();
+            var oldValue = oldDocument.get(key);
+
+            if (oldValue == null) {
+                setDocument.append(path, newValue);
+                continue;
+            }
+
+            if (oldValue.equals(newValue)) {
+                continue;
+            }
+
+            if (oldValue.isDocument() && newValue.isDocument()
+                    && isPathSafe(oldValue.asDocument()) && isPathSafe(newValue.asDocument())) {
+                diff(path + StringUtils.PERIOD, oldValue.asDocument(), newValue.asDocument(), setDocument, unsetDocument, pushDocument);
+                continue;
+            }
+
+            if (oldValue.isArray() && newValue.isArray() && isAppendOnly(oldValue.asArray(), newValue.asArray())) {
+                var oldArray = oldValue.asArray();
+                var newArray = newValue.asArray();
+                var appendArray = new BsonArray(newArray.getValues().subList(oldArray.size(), newArray.size()));
+                pushDocument.append(path, new BsonDocument("$each", appendArray));
+                continue;
+            }
+
+            setDocument.append(path, newValue);
+        }
+
+        for (var key : oldDocument.keySet()) {
+            if (!newDocument.containsKey(key)) {
+                unsetDocument.append(prefix + key, new BsonString(StringUtils.EMPTY));
+            }
+        }
+    }
+
+    private static boolean isAppendOnly(BsonArray oldArray, BsonArray newArray) {
+        if (newArray.size() <= oldArray.size()) {
+            return false;
+        }
+        for (var i = 0; i < oldArray.size(); i++) {
+            if (!oldArray.get(i).equals(newArray.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Map序列化后的key可能包含点号或者以$开头，不能作为更新路径的一部分，这种情况直接$set整个子文档
+     */
+    private static boolean isPathSafe(BsonDocument document) {
+        for (var key : document.keySet()) {
+            if (key.isEmpty() || key.indexOf('.') >= 0 || key.charAt(0) == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
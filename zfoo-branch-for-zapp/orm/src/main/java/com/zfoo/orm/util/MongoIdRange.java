@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.util;
+
+import com.zfoo.event.manager.EventBus;
+import com.zfoo.scheduler.util.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段方式（hi/lo）的自增id生成器，每次从MongoDB中原子的申请一段连续的id，然后在内存中通过CAS分配。
+ * <p>
+ * 当前号段使用了一半的时候在后台预取下一个号段，号段的大小根据消耗速度自动调整，尽量让一个号段使用LEASE_MILLIS的时间。
+ * <p>
+ * 后申请的号段一定比先申请的号段大，所以同一个进程分配的id是单调递增的；不同进程之间的id唯一但是会交错，
+ * 进程重启的时候没有用完的号段会被丢弃，所以id不是连续的。
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class MongoIdRange {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIdRange.class);
+
+    public static final int MIN_BLOCK_SIZE = 8;
+
+    public static final int MAX_BLOCK_SIZE = 8192;
+
+    /**
+     * 一个号段期望的使用时间
+     */
+    private static final long LEASE_MILLIS = 10 * TimeUtils.MILLIS_PER_SECOND;
+
+    private static class Segment {
+        private static final Segment EMPTY = new Segment(1, 0);
+
+        /**
+         * 号段的范围[start, end]
+         */
+        private final long start;
+        private final long end;
+        private final AtomicLong cursor;
+
+        /**
+         * 分配到这个id的时候开始预取下一个号段
+         */
+        private final long prefetchId;
+
+        private final long leaseTime;
+
+        private Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.cursor = new AtomicLong(start);
+            this.prefetchId = start + (end - start) / 2;
+            this.leaseTime = TimeUtils.currentTimeMillis();
+        }
+    }
+
+    private final String collectionName;
+
+    private final String documentName;
+
+    private volatile Segment current = Segment.EMPTY;
+
+    /**
+     * 下面的属性都通过this加锁访问
+     */
+    private CompletableFuture<Segment> prefetch;
+
+    private int blockSize = MIN_BLOCK_SIZE;
+
+    public MongoIdRange(String collectionName, String documentName) {
+        this.collectionName = collectionName;
+        this.documentName = documentName;
+    }
+
+    public long nextId() {
+        while (true) {
+            var segment = current;
+            var id = segment.cursor.getAndIncrement();
+            if (id <= segment.end) {
+                if (id == segment.prefetchId) {
+                    prefetch(segment);
+                }
+                return id;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    private synchronized void prefetch(Segment segment) {
+        if (prefetch != null || segment != current) {
+            return;
+        }
+
+        // 根据当前号段前一半的消耗速度，计算出LEASE_MILLIS时间内需要的id数量，每次最多翻倍或者减半
+        var elapsed = Math.max(1L, TimeUtils.currentTimeMillis() - segment.leaseTime);
+        var consumed = segment.prefetchId - segment.start + 1;
+        var expect = consumed * LEASE_MILLIS / elapsed;
+        blockSize = (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, Math.max(blockSize / 2, Math.min(blockSize * 2L, expect))));
+
+        var size = blockSize;
+        prefetch = CompletableFuture.supplyAsync(() -> fetch(size), EventBus.execute(documentName.hashCode()));
+    }
+
+    private synchronized void switchSegment(Segment exhausted) {
+        if (exhausted != current) {
+            return;
+        }
+
+        Segment next = null;
+        if (prefetch != null) {
+            try {
+                next = prefetch.join();
+            } catch (Exception e) {
+                logger.error("预取[collection:{}][document:{}]的id号段失败，重新申请", collectionName, documentName, e);
+            }
+            prefetch = null;
+        }
+        current = (next == null) ? fetch(blockSize) : next;
+    }
+
+    private Segment fetch(int size) {
+        var end = MongoIdUtils.incrementIdFromMongo(collectionName, documentName, size);
+        return new Segment(end - size + 1, end);
+    }
+
+}
@@ -14,6 +14,8 @@
 package com.zfoo.orm.util;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
 import com.zfoo.orm.OrmContext;
 import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.protocol.util.AssertionUtils;
@@ -21,6 +23,8 @@ import com.zfoo.protocol.util.StringUtils;
 import org.bson.Document;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 
@@ -36,6 +40,8 @@ public abstract class MongoIdUtils {
 
     private static final String COUNT = "count";
 
+    private static final Map<String, MongoIdRange> idRangeMap = new ConcurrentHashMap<>();
+
 
     /**
      * 分布式唯一Id生成器，利用MongoDB数据库存储自增的ID，可以保证原子性，一致性。
@@ -72,6 +78,50 @@ public abstract class MongoIdUtils {
     }
 
 
+    // ----------------------------------------------------------------------------------------------------
+
+    /**
+     * 号段方式的分布式唯一Id生成器，和getIncrementIdFromMongo使用同一个文档，从MongoDB中批量申请id，在内存中分配，不需要每次都访问数据库。
+     * <p>
+     * 线程安全，进程安全，同一个进程分配的id单调递增；不同进程的id会交错，重启的时候没有用完的id会被丢弃，所以id不连续。
+     *
+     * @param collectionName 存储的集合名称
+     * @param documentName   文档id
+     * @return 唯一id
+     */
+    public static long getIncrementIdFromRange(String collectionName, String documentName) {
+        return idRangeMap.computeIfAbsent(rangeKey(collectionName, documentName), it -> new MongoIdRange(collectionName, documentName)).nextId();
+    }
+
+    public static long getIncrementIdFromRangeDefault(String documentName) {
+        return getIncrementIdFromRange(COLLECTION_NAME, documentName);
+    }
+
+    public static long getIncrementIdFromRangeDefault(Class<?> clazz) {
+        return getIncrementIdFromRange(COLLECTION_NAME, StringUtils.uncapitalize(clazz.getSimpleName()));
+    }
+
+    /**
+     * 原子的给documentName增加delta，文档不存在的时候会创建文档
+     *
+     * @return 增加后的数值
+     */
+    static long incrementIdFromMongo(String collectionName, String documentName, long delta) {
+        var collection = OrmContext.getOrmManager().getCollection(collectionName);
+
+        var document = collection.findOneAndUpdate(Filters.eq("_id", documentName)
+                , new Document("$inc", new Document(COUNT, delta))
+                , new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+
+        AssertionUtils.notNull(document);
+        return document.getLong(COUNT);
+    }
+
+    private static String rangeKey(String collectionName, String documentName) {
+        return collectionName + StringUtils.PERIOD + documentName;
+    }
+
+
     // ----------------------------------------------------------------------------------------------------
 
     /**
@@ -92,6 +142,9 @@ public abstract class MongoIdUtils {
     }
 
     public static void setIncrementIdFromMongo(String collectionName, String documentName, long value) {
+        // 丢弃内存中的号段，下一次分配id的时候重新申请
+        idRangeMap.remove(rangeKey(collectionName, documentName));
+
         var collection = OrmContext.getOrmManager().getCollection(collectionName);
         var document = collection.findOneAndUpdate(Filters.eq("_id", documentName), new Document("$set", new Document(COUNT, value)));
 
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.lpmap;
+
+import com.zfoo.orm.lpmap.model.MyPacket;
+import com.zfoo.protocol.ProtocolManager;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+@Ignore
+public class MappedFileMapTest {
+
+    @Test
+    public void test() throws IOException {
+        ProtocolManager.initProtocol(Set.of(MyPacket.class));
+
+        // 段文件设置的很小，让压缩频繁的执行
+        var map = new MappedFileMap<MyPacket>("db", MyPacket.class, 4096);
+        map.clear();
+        var expectMap = new HashMap<Long, MyPacket>();
+        var random = new Random(1);
+        for (var i = 0; i < 20_0000; i++) {
+            var key = (long) random.nextInt(500);
+            if (random.nextInt(10) == 0) {
+                Assert.assertEquals(expectMap.remove(key), map.delete(key));
+            } else {
+                var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+                Assert.assertEquals(expectMap.put(key, myPacket), map.put(key, myPacket));
+            }
+        }
+
+        var expectList = new ArrayList<MyPacket>();
+        for (var key = 100L; key < 300L; key++) {
+            if (expectMap.containsKey(key)) {
+                expectList.add(expectMap.get(key));
+            }
+        }
+        Assert.assertEquals(expectList, map.getFrom(100, 300));
+
+        map.close();
+        map = new MappedFileMap<MyPacket>("db", MyPacket.class, 4096);
+        for (var key = 0L; key < 500L; key++) {
+            Assert.assertTrue(Objects.equals(expectMap.get(key), map.get(key)));
+        }
+        map.close();
+    }
+
+    @Test
+    public void incrementIndexTest() throws IOException {
+        ProtocolManager.initProtocol(Set.of(MyPacket.class));
+
+        var map = new MappedFileMap<MyPacket>("db", MyPacket.class, 4096);
+        map.clear();
+        map.put(3, MyPacket.valueOf(3, "3"));
+        for (var i = 0; i < 10; i++) {
+            map.getIncrementIndex();
+        }
+        Assert.assertEquals(13L, map.getMaxIndex());
+
+        // 不关闭map模拟进程崩溃，并且把索引文件头部的maxIndex改回去，重启之后通过WAL恢复
+        try (var indexFile = new RandomAccessFile(new File("db", "MyPacket.mindex"), "rw")) {
+            indexFile.writeLong(0L);
+        }
+        var recoverMap = new MappedFileMap<MyPacket>("db", MyPacket.class, 4096);
+        Assert.assertEquals(13L, recoverMap.getMaxIndex());
+        Assert.assertEquals(14L, recoverMap.getIncrementIndex());
+        Assert.assertEquals(MyPacket.valueOf(3, "3"), recoverMap.get(3));
+        recoverMap.close();
+    }
+
+    @Test
+    public void benchmarkTest() throws IOException {
+        ProtocolManager.initProtocol(Set.of(MyPacket.class));
+
+        var map = new MappedFileMap<MyPacket>("db", MyPacket.class);
+        var count = 1000_0000;
+        for (var i = 0; i < count; i++) {
+            var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+            map.put(i, myPacket);
+        }
+
+        for (var i = 0; i < count; i++) {
+            var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+            var packet = map.get(i);
+            Assert.assertEquals(myPacket, packet);
+        }
+
+        var packets = map.getFrom(0, count);
+        Assert.assertEquals(count, packets.size());
+        map.close();
+    }
+}
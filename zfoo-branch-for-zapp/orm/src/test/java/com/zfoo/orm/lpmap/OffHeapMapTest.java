@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.lpmap;
+
+import com.zfoo.orm.lpmap.model.MyPacket;
+import com.zfoo.protocol.ProtocolManager;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+@Ignore
+public class OffHeapMapTest {
+
+    @Test
+    public void test() {
+        ProtocolManager.initProtocol(Set.of(MyPacket.class));
+
+        // slab设置的很小，让压缩频繁的执行
+        var map = new OffHeapMap<MyPacket>(MyPacket.class, 16, 256);
+        var expectMap = new HashMap<Long, MyPacket>();
+        var random = new Random(1);
+        for (var i = 0; i < 20_0000; i++) {
+            var key = (long) random.nextInt(2000);
+            if (random.nextInt(10) < 3) {
+                Assert.assertEquals(expectMap.remove(key), map.delete(key));
+            } else {
+                var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+                Assert.assertEquals(expectMap.put(key, myPacket), map.put(key, myPacket));
+            }
+        }
+
+        Assert.assertEquals(expectMap.size(), map.size());
+        map.forEach((key, value) -> Assert.assertEquals(expectMap.get(key), value));
+        map.close();
+    }
+
+    @Test
+    public void benchmarkTest() {
+        ProtocolManager.initProtocol(Set.of(MyPacket.class));
+
+        var map = new OffHeapMap<MyPacket>(MyPacket.class);
+
+        var count = 1000_0000;
+        for (var i = 0; i < count; i++) {
+            var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+            map.put(i, myPacket);
+        }
+
+        for (var i = 0; i < count; i++) {
+            var myPacket = MyPacket.valueOf(i, String.valueOf(i));
+            var packet = map.get(i);
+            Assert.assertEquals(myPacket, packet);
+        }
+        map.close();
+    }
+
+}
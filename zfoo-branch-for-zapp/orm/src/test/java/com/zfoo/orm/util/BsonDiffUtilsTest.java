@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.orm.util;
+
+import com.mongodb.MongoClientSettings;
+import com.zfoo.orm.entity.UserEntity;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class BsonDiffUtilsTest {
+
+    private static final CodecRegistry codecRegistry = CodecRegistries.fromRegistries(MongoClientSettings.getDefaultCodecRegistry()
+            , CodecRegistries.fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+
+    @Test
+    public void unchangedTest() {
+        var oldDocument = BsonDocument.parse("{_id: 1, a: 1, b: {c: [1, 2], d: 'd'}}");
+        Assert.assertNull(BsonDiffUtils.diff(oldDocument, oldDocument.clone()));
+
+        // 主键不会出现在更新语句中
+        Assert.assertNull(BsonDiffUtils.diff(oldDocument, BsonDocument.parse("{_id: 2, a: 1, b: {c: [1, 2], d: 'd'}}")));
+
+        var entity = newUserEntity();
+        Assert.assertNull(BsonDiffUtils.diff(BsonDiffUtils.toBsonDocument(entity, codecRegistry), BsonDiffUtils.toBsonDocument(entity, codecRegistry)));
+    }
+
+    @Test
+    public void nestedDocumentTest() {
+        var oldDocument = BsonDocument.parse("{_id: 1, a: {b: 1, c: {d: 1}}, e: 1}");
+        var newDocument = BsonDocument.parse("{_id: 1, a: {b: 2, c: {d: 1, f: 'f'}}, e: 1}");
+        Assert.assertEquals(BsonDocument.parse("{$set: {'a.b': 2, 'a.c.f': 'f'}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+
+        // 子文档变成了其它类型，整个替换
+        newDocument = BsonDocument.parse("{_id: 1, a: 'a', e: 1}");
+        Assert.assertEquals(BsonDocument.parse("{$set: {a: 'a'}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+
+        // Map序列化后的key包含点号，不能作为路径，整个子文档替换
+        oldDocument = BsonDocument.parse("{_id: 1, m: {'a.b': 1}}");
+        newDocument = BsonDocument.parse("{_id: 1, m: {'a.b': 2}}");
+        Assert.assertEquals(BsonDocument.parse("{$set: {m: {'a.b': 2}}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+    }
+
+    @Test
+    public void removedFieldTest() {
+        var oldDocument = BsonDocument.parse("{_id: 1, a: 1, b: {c: 1, d: 2}}");
+        var newDocument = BsonDocument.parse("{_id: 1, b: {c: 1}}");
+        Assert.assertEquals(BsonDocument.parse("{$unset: {a: '', 'b.d': ''}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+
+        // 实体中为null的字段不会被序列化
+        var entity = newUserEntity();
+        var oldEntityDocument = BsonDiffUtils.toBsonDocument(entity, codecRegistry);
+        entity.setF(null);
+        Assert.assertEquals(BsonDocument.parse("{$unset: {f: ''}}"), BsonDiffUtils.diff(oldEntityDocument, BsonDiffUtils.toBsonDocument(entity, codecRegistry)));
+    }
+
+    @Test
+    public void arrayTest() {
+        var oldDocument = BsonDocument.parse("{_id: 1, l: [1, 2], n: {l: [{a: 1}]}}");
+
+        // 只在尾部追加使用$push
+        var newDocument = BsonDocument.parse("{_id: 1, l: [1, 2, 3, 4], n: {l: [{a: 1}, {a: 2}]}}");
+        Assert.assertEquals(BsonDocument.parse("{$push: {l: {$each: [3, 4]}, 'n.l': {$each: [{a: 2}]}}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+
+        // 修改了已有的元素，删除了元素，或者在头部插入，整个数组替换
+        newDocument = BsonDocument.parse("{_id: 1, l: [1, 3], n: {l: []}}");
+        Assert.assertEquals(BsonDocument.parse("{$set: {l: [1, 3], 'n.l': []}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+        newDocument = BsonDocument.parse("{_id: 1, l: [0, 1, 2], n: {l: [{a: 1}]}}");
+        Assert.assertEquals(BsonDocument.parse("{$set: {l: [0, 1, 2]}}"), BsonDiffUtils.diff(oldDocument, newDocument));
+    }
+
+    @Test
+    public void entityTest() {
+        var entity = newUserEntity();
+        var oldDocument = BsonDiffUtils.toBsonDocument(entity, codecRegistry);
+
+        entity.setC(entity.getC() + 1);
+        entity.getL().add(3);
+        var update = BsonDiffUtils.diff(oldDocument, BsonDiffUtils.toBsonDocument(entity, codecRegistry));
+        Assert.assertEquals(BsonDocument.parse("{$set: {c: 101}, $push: {l: {$each: [3]}}}"), update);
+    }
+
+    private UserEntity newUserEntity() {
+        var entity = new UserEntity(1L, (byte) 1, (short) 10, 100, true, "e", "f");
+        entity.setL(new ArrayList<>(List.of(1, 2)));
+        return entity;
+    }
+
+}
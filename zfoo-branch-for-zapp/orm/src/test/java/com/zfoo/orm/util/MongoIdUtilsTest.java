@@ -14,6 +14,7 @@
 package com.zfoo.orm.util;
 
 import com.zfoo.util.ThreadUtils;
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -70,6 +71,20 @@ public class MongoIdUtilsTest {
         ThreadUtils.sleep(Long.MAX_VALUE);
     }
 
+    @Test
+    public void rangeIdTest() {
+        var context = new ClassPathXmlApplicationContext("application.xml");
+
+        var lastId = 0L;
+        for (int i = 0; i < 100_0000; i++) {
+            var id = MongoIdUtils.getIncrementIdFromRangeDefault("myRangeDocument");
+            Assert.assertTrue(id > lastId);
+            lastId = id;
+        }
+        System.out.println(lastId);
+        System.out.println(MongoIdUtils.getMaxIdFromMongoDefault("myRangeDocument"));
+    }
+
     @Test
     public void reset() {
         var context = new ClassPathXmlApplicationContext("application.xml");
@@ -19,7 +19,6 @@ import com.zfoo.protocol.registration.IProtocolRegistration;
 import com.zfoo.protocol.util.StringUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
-import io.netty.util.ReferenceCountUtil;
 
 import java.util.Collection;
 import java.util.List;
@@ -169,29 +168,6 @@ public abstract class ByteBufUtils {
     }
 
 
-    private static int writeIntCount(int value) {
-        value = (value << 1) ^ (value >> 31);
-
-        if (value >>> 7 == 0) {
-            return 1;
-        }
-
-        if (value >>> 14 == 0) {
-            return 2;
-        }
-
-        if (value >>> 21 == 0) {
-            return 3;
-        }
-
-        if (value >>> 28 == 0) {
-            return 4;
-        }
-
-        return 5;
-    }
-
-
     public static void writeIntBox(ByteBuf byteBuf, Integer value) {
         writeInt(byteBuf, value == null ? 0 : value);
     }
@@ -343,38 +319,41 @@ public abstract class ByteBufUtils {
             return;
         }
 
-        // 预估需要写入的字节数，并预留位置
-        var maxLength = ByteBufUtil.utf8MaxBytes(value);
-        var writeIntCountByte = writeInt(byteBuf, maxLength);
-
-        var length = byteBuf.writeCharSequence(value, StringUtils.DEFAULT_CHARSET);
-
-        var currentWriteIndex = byteBuf.writerIndex();
-
-        // 因为写入的是可变长的int，如果预留的位置过多，则清除多余的位置
-        var padding = writeIntCountByte - writeIntCount(length);
-        if (padding == 0) {
-            byteBuf.writerIndex(currentWriteIndex - length - writeIntCountByte);
-            writeInt(byteBuf, length);
-            byteBuf.writerIndex(currentWriteIndex);
-        } else {
-            var retainedByteBuf = byteBuf.retainedSlice(currentWriteIndex - length, length);
-            byteBuf.writerIndex(currentWriteIndex - length - writeIntCountByte);
-            writeInt(byteBuf, length);
-            byteBuf.writeBytes(retainedByteBuf);
-            ReferenceCountUtil.release(retainedByteBuf);
-        }
+        // 一次遍历计算出准确的utf8字节数（全是ascii的字符串只需要判断每个字符的范围），先写入长度，再直接编码到byteBuf中，不需要预留和移动
+        var length = ByteBufUtil.utf8Bytes(value);
+        writeInt(byteBuf, length);
+        ByteBufUtil.reserveAndWriteUtf8(byteBuf, value, length);
     }
 
     public static String readString(ByteBuf byteBuf) {
         int length = readInt(byteBuf);
-        return length <= 0 ? StringUtils.EMPTY : (String) byteBuf.readCharSequence(length, StringUtils.DEFAULT_CHARSET);
+        if (length <= 0) {
+            return StringUtils.EMPTY;
+        }
+
+        var readerIndex = byteBuf.readerIndex();
+        String value;
+        if (byteBuf.hasArray()) {
+            // 堆内存直接在底层数组上解码，不需要中间的byte[]，jdk对全是ascii的utf8字节有快速路径
+            value = new String(byteBuf.array(), byteBuf.arrayOffset() + readerIndex, length, StringUtils.DEFAULT_CHARSET);
+        } else {
+            // 堆外内存只能先拷贝出来，netty会复用线程本地的byte[]
+            value = byteBuf.toString(readerIndex, length, StringUtils.DEFAULT_CHARSET);
+        }
+        byteBuf.readerIndex(readerIndex + length);
+        return value;
     }
 
 
     //---------------------------------char--------------------------------------
     // 很多脚本语言没有char，所以这里使用string代替
     public static void writeChar(ByteBuf byteBuf, char value) {
+        // ascii字符直接写入，不需要创建字符串
+        if (value > 0 && value < 0x80) {
+            writeInt(byteBuf, 1);
+            byteBuf.writeByte(value);
+            return;
+        }
         writeString(byteBuf, String.valueOf(value));
     }
 
@@ -46,6 +46,11 @@ public class GenerateOperation {
      */
     private String protocolParam;
 
+    /**
+     * 生成java协议注册类源文件的路径，为空则不生成，参见GenerateProtocolRegistration
+     */
+    private String protocolRegistrationPath;
+
     /**
      * 需要生成的协议文件
      */
@@ -75,6 +80,14 @@ public class GenerateOperation {
         this.protocolParam = protocolParam;
     }
 
+    public String getProtocolRegistrationPath() {
+        return protocolRegistrationPath;
+    }
+
+    public void setProtocolRegistrationPath(String protocolRegistrationPath) {
+        this.protocolRegistrationPath = protocolRegistrationPath;
+    }
+
     public Set<CodeLanguage> getGenerateLanguages() {
         return generateLanguages;
     }
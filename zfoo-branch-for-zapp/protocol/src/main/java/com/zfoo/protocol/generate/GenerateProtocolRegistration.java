@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.protocol.generate;
+
+import com.zfoo.protocol.ProtocolManager;
+import com.zfoo.protocol.registration.EnhanceUtils;
+import com.zfoo.protocol.util.ClassUtils;
+import com.zfoo.protocol.util.DomUtils;
+import com.zfoo.protocol.util.FileUtils;
+import com.zfoo.protocol.util.IOUtils;
+import com.zfoo.protocol.util.StringUtils;
+import com.zfoo.protocol.xml.XmlProtocols;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * 编译期生成协议注册类的入口，生成的类和javassist在启动时增强的类完全相同，ProtocolManager初始化的时候会优先加载
+ * <p>
+ * 参数：protocol.xml在类路径中的位置，生成的java源文件路径，编译后的class文件路径（可选，不填则只生成源文件），编译的java版本（可选）
+ * <p>
+ * 需要使用项目的classpath运行，一般通过maven的exec插件在process-classes阶段调用，参见zapp-common的protocol-registration profile
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public abstract class GenerateProtocolRegistration {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerateProtocolRegistration.class);
+
+    public static void main(String[] args) {
+        // 协议类的静态初始化可能会启动非守护线程，生成完成过后需要主动退出，否则构建会一直阻塞
+        var status = 0;
+        try {
+            generate(args);
+        } catch (Throwable t) {
+            logger.error("生成协议注册类异常", t);
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    private static void generate(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("usage: GenerateProtocolRegistration <protocolLocation> <sourceDirectory> [classesDirectory] [release]");
+        }
+
+        var protocolLocation = args[0];
+        var sourceDirectory = args[1];
+
+        var inputStream = ClassUtils.getFileFromClassPath(protocolLocation);
+        XmlProtocols xmlProtocols;
+        try {
+            xmlProtocols = DomUtils.inputStream2Object(inputStream, XmlProtocols.class);
+        } finally {
+            IOUtils.closeIO(inputStream);
+        }
+
+        var generateOperation = new GenerateOperation();
+        generateOperation.setProtocolRegistrationPath(sourceDirectory);
+        ProtocolManager.initProtocol(xmlProtocols, generateOperation);
+
+        if (args.length > 2) {
+            compile(sourceDirectory, args[2], args.length > 3 ? args[3] : null);
+        }
+    }
+
+    private static void compile(String sourceDirectory, String classesDirectory, String release) {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("没有找到java编译器，需要使用jdk运行");
+        }
+
+        var arguments = new ArrayList<String>();
+        arguments.add("-encoding");
+        arguments.add(StringUtils.DEFAULT_CHARSET_NAME);
+        arguments.add("-proc:none");
+        arguments.add("-nowarn");
+        arguments.add("-classpath");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(classesDirectory);
+        // 和项目的其它类保持相同的字节码版本
+        if (StringUtils.isNotBlank(release)) {
+            arguments.add("--release");
+            arguments.add(release);
+        }
+        FileUtils.getAllReadableFiles(new File(sourceDirectory))
+                .stream()
+                .filter(it -> EnhanceUtils.isGeneratedSource(it))
+                .forEach(it -> arguments.add(it.getAbsolutePath()));
+
+        var result = compiler.run(null, null, null, arguments.toArray(new String[0]));
+        if (result != 0) {
+            throw new IllegalStateException(StringUtils.format("编译协议注册类[{}]失败", sourceDirectory));
+        }
+    }
+
+}
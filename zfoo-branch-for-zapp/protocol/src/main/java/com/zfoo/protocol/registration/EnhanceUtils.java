@@ -21,26 +21,51 @@ import com.zfoo.protocol.generate.GenerateProtocolFile;
 import com.zfoo.protocol.registration.field.IFieldRegistration;
 import com.zfoo.protocol.serializer.enhance.*;
 import com.zfoo.protocol.serializer.reflect.*;
+import com.zfoo.protocol.util.FileUtils;
 import com.zfoo.protocol.util.ReflectionUtils;
 import com.zfoo.protocol.util.StringUtils;
 import io.netty.buffer.ByteBuf;
 import javassist.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 对应于ProtocolRegistration
+ * <p>
+ * 优先使用编译期通过GenerateProtocolRegistration生成的协议注册类，没有生成或者协议改动过后生成的类已经过期，才在启动的时候使用javassist增强
  *
  * @author jaysunxiao
  * @version 3.0
  */
 public abstract class EnhanceUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(EnhanceUtils.class);
+
+    /**
+     * 编译期生成的协议注册类的类名后缀，和协议类在同一个包下
+     */
+    public static final String GENERATED_CLASS_SUFFIX = "Registration";
+
+    /**
+     * 编译期生成的协议注册类中保存协议签名的静态变量，签名不一致说明协议在生成之后改动过
+     */
+    public static final String GENERATED_SIGNATURE_FIELD = "SIGNATURE";
+
+    /**
+     * 生成的协议注册类源文件的第一行，重新生成的时候只删除带有这个标识的文件
+     */
+    public static final String GENERATED_SOURCE_HEADER = "// 由GenerateProtocolRegistration根据协议类生成，不要手动修改";
+
     // 临时变量，是一个基本类型序列化器对应的增强类型序列化器
     private static Map<ISerializer, IEnhanceSerializer> tempEnhanceSerializerMap = new HashMap<>();
 
@@ -139,10 +164,7 @@ public abstract class EnhanceUtils {
         enhanceClazz.addField(receiverFiled);
 
         // 定义类所包含的所有子协议成员
-        var allSubProtocolIds = ProtocolAnalysis.getAllSubProtocolIds(protocolId)
-                .stream()
-                .sorted((a, b) -> Short.compare(a, b))
-                .collect(Collectors.toList());
+        var allSubProtocolIds = sortedSubProtocolIds(protocolId);
 
         for (var subProtocolId : allSubProtocolIds) {
             var protocolRegistrationField = new CtField(classPool.get(IProtocolRegistration.class.getCanonicalName()), getProtocolRegistrationFieldNameByProtocolId(subProtocolId), enhanceClazz);
@@ -196,6 +218,204 @@ public abstract class EnhanceUtils {
         return (IProtocolRegistration) resultConstructor.newInstance(registration.protocolConstructor());
     }
 
+    /**
+     * 加载编译期生成的协议注册类
+     *
+     * @return 没有生成，生成的类已经过期，或者同名的类不是生成的协议注册类，返回null
+     */
+    public static IProtocolRegistration loadProtocolRegistration(ProtocolRegistration registration) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        var protocolClazz = registration.getConstructor().getDeclaringClass();
+        Class<?> generatedClazz;
+        try {
+            generatedClazz = Class.forName(generatedClassName(protocolClazz), true, protocolClazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        // 同名的类可能是用户自己定义的其它类
+        if (!IProtocolRegistration.class.isAssignableFrom(generatedClazz)) {
+            logger.warn("[class:{}]不是协议注册类[{}]，使用javassist字节码增强", generatedClazz.getCanonicalName(), IProtocolRegistration.class.getSimpleName());
+            return null;
+        }
+
+        // 没有签名和签名不一致一样处理
+        Object signature;
+        try {
+            var signatureField = generatedClazz.getField(GENERATED_SIGNATURE_FIELD);
+            signature = Modifier.isStatic(signatureField.getModifiers()) ? signatureField.get(null) : null;
+        } catch (NoSuchFieldException e) {
+            signature = null;
+        }
+        if (!protocolRegistrationSignature(registration).equals(signature)) {
+            logger.warn("[class:{}]在生成[{}]之后改动过，使用javassist字节码增强，请重新生成协议注册类", protocolClazz.getCanonicalName(), generatedClazz.getSimpleName());
+            return null;
+        }
+
+        return (IProtocolRegistration) generatedClazz.getConstructor(Constructor.class).newInstance(registration.protocolConstructor());
+    }
+
+    /**
+     * 是否是GenerateProtocolRegistration生成的协议注册类源文件
+     */
+    public static boolean isGeneratedSource(File file) {
+        if (!file.isFile() || !file.getName().endsWith(GENERATED_CLASS_SUFFIX + ".java")) {
+            return false;
+        }
+        var lines = FileUtils.readFileToStringList(file);
+        return !lines.isEmpty() && GENERATED_SOURCE_HEADER.equals(lines.get(0));
+    }
+
+    public static String generatedClassName(Class<?> protocolClazz) {
+        return StringUtils.format("{}.{}{}", protocolClazz.getPackageName(), protocolClazz.getSimpleName(), GENERATED_CLASS_SUFFIX);
+    }
+
+    /**
+     * 协议的签名，协议号，模块，子协议，序列化和反序列化的代码任何一个改动都会导致签名改变
+     */
+    public static String protocolRegistrationSignature(ProtocolRegistration registration) throws NoSuchMethodException {
+        GenerateProtocolFile.index.set(0);
+
+        var builder = new StringBuilder();
+        builder.append(registration.protocolId()).append(StringUtils.COMMA);
+        builder.append(registration.module()).append(StringUtils.COMMA);
+        builder.append(sortedSubProtocolIds(registration.protocolId())).append(StringUtils.COMMA);
+        builder.append(writeMethodBody(registration));
+        builder.append(readMethodBody(registration));
+
+        try {
+            var digest = MessageDigest.getInstance("MD5").digest(StringUtils.bytes(builder.toString()));
+            var signature = new StringBuilder();
+            for (var b : digest) {
+                signature.append(String.format("%02x", b));
+            }
+            return signature.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 生成和javassist增强的类完全相同的java源文件，序列化和反序列化的方法体和createProtocolRegistration()共用
+     */
+    public static String protocolRegistrationSource(ProtocolRegistration registration) throws NoSuchMethodException {
+        var protocolId = registration.protocolId();
+        var protocolClazz = registration.getConstructor().getDeclaringClass();
+        var className = protocolClazz.getSimpleName() + GENERATED_CLASS_SUFFIX;
+        var signature = protocolRegistrationSignature(registration);
+
+        GenerateProtocolFile.index.set(0);
+        var writeMethodBody = writeMethodBody(registration);
+        var readMethodBody = readMethodBody(registration);
+
+        var builder = new StringBuilder();
+        builder.append(GENERATED_SOURCE_HEADER).append(FileUtils.LS);
+        builder.append(StringUtils.format("package {};", protocolClazz.getPackageName())).append(FileUtils.LS).append(FileUtils.LS);
+
+        // 只使用单类型导入，避免和协议所在包下的同名类冲突
+        var imports = List.of(IPacket.class, ByteBufUtils.class, ArrayUtils.class, CollectionUtils.class, IProtocolRegistration.class, ByteBuf.class
+                , Constructor.class, Collections.class, Iterator.class, List.class, ArrayList.class, Map.class, HashMap.class, Set.class, HashSet.class);
+        for (var clazz : imports) {
+            // java包和其它包之间空一行
+            if (clazz == Constructor.class) {
+                builder.append(FileUtils.LS);
+            }
+            builder.append(StringUtils.format("import {};", clazz.getCanonicalName())).append(FileUtils.LS);
+        }
+        builder.append(FileUtils.LS);
+
+        builder.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})").append(FileUtils.LS);
+        builder.append(StringUtils.format("public final class {} implements IProtocolRegistration {", className)).append(FileUtils.LS).append(FileUtils.LS);
+        builder.append(StringUtils.format("    public static final String {} = \"{}\";", GENERATED_SIGNATURE_FIELD, signature)).append(FileUtils.LS).append(FileUtils.LS);
+        builder.append("    private Constructor constructor;").append(FileUtils.LS);
+        builder.append("    private Object receiver;").append(FileUtils.LS);
+        for (var subProtocolId : sortedSubProtocolIds(protocolId)) {
+            builder.append(StringUtils.format("    private IProtocolRegistration {};", getProtocolRegistrationFieldNameByProtocolId(subProtocolId))).append(FileUtils.LS);
+        }
+        builder.append(FileUtils.LS);
+
+        builder.append(StringUtils.format("    public {}(Constructor constructor) {", className)).append(FileUtils.LS);
+        builder.append("        this.constructor = constructor;").append(FileUtils.LS);
+        builder.append("    }").append(FileUtils.LS).append(FileUtils.LS);
+
+        appendMethod(builder, "public final short protocolId()", StringUtils.format("{return {};}", protocolId));
+        appendMethod(builder, "public final byte module()", StringUtils.format("{return {};}", registration.module()));
+        appendMethod(builder, "public final Constructor protocolConstructor()", "{return this.constructor;}");
+        appendMethod(builder, "public final Object receiver()", "{return this.receiver;}");
+        // javassist的方法体使用$1，$2表示参数，在java中也是合法的变量名
+        appendMethod(builder, "public final void write(ByteBuf $1, IPacket $2)", writeMethodBody);
+        appendMethod(builder, "public final Object read(ByteBuf $1)", readMethodBody);
+
+        // 最后一个方法后面多了一个空行
+        builder.setLength(builder.length() - FileUtils.LS.length());
+        builder.append("}").append(FileUtils.LS);
+        return builder.toString();
+    }
+
+    private static List<Short> sortedSubProtocolIds(short protocolId) {
+        return ProtocolAnalysis.getAllSubProtocolIds(protocolId)
+                .stream()
+                .sorted((a, b) -> Short.compare(a, b))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 把javassist的单行方法体格式化成多行，小括号里的分号不换行
+     */
+    private static void appendMethod(StringBuilder builder, String declaration, String body) {
+        builder.append("    @Override").append(FileUtils.LS);
+        builder.append("    ").append(declaration).append(" {").append(FileUtils.LS);
+
+        // 去掉方法体最外层的大括号
+        body = body.trim();
+        body = body.substring(1, body.length() - 1);
+
+        var indent = 2;
+        var parenthesis = 0;
+        var line = new StringBuilder();
+        for (var c : body.toCharArray()) {
+            switch (c) {
+                case '(':
+                    parenthesis++;
+                    line.append(c);
+                    break;
+                case ')':
+                    parenthesis--;
+                    line.append(c);
+                    break;
+                case '{':
+                    line.append(c);
+                    appendLine(builder, line, indent);
+                    indent++;
+                    break;
+                case '}':
+                    appendLine(builder, line, indent);
+                    indent--;
+                    line.append(c);
+                    appendLine(builder, line, indent);
+                    break;
+                case ';':
+                    line.append(c);
+                    if (parenthesis == 0) {
+                        appendLine(builder, line, indent);
+                    }
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+        appendLine(builder, line, indent);
+        builder.append("    }").append(FileUtils.LS).append(FileUtils.LS);
+    }
+
+    private static void appendLine(StringBuilder builder, StringBuilder line, int indent) {
+        var content = line.toString().trim();
+        line.setLength(0);
+        if (StringUtils.isEmpty(content)) {
+            return;
+        }
+        builder.append("    ".repeat(indent)).append(content).append(FileUtils.LS);
+    }
+
     // see: ProtocolRegistration.write()
     private static String writeMethodBody(ProtocolRegistration registration) {
         short protocolId = registration.getId();
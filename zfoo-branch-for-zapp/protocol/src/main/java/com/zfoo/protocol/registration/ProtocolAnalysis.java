@@ -28,12 +28,14 @@ import com.zfoo.protocol.serializer.js.GenerateJsUtils;
 import com.zfoo.protocol.serializer.lua.GenerateLuaUtils;
 import com.zfoo.protocol.serializer.reflect.*;
 import com.zfoo.protocol.util.AssertionUtils;
+import com.zfoo.protocol.util.FileUtils;
 import com.zfoo.protocol.util.ReflectionUtils;
 import com.zfoo.protocol.util.StringUtils;
 import com.zfoo.protocol.xml.XmlProtocols;
 import javassist.CannotCompileException;
 import javassist.NotFoundException;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.*;
 import java.util.*;
@@ -109,7 +111,7 @@ public class ProtocolAnalysis {
             enhanceProtocolBefore(generateOperation);
 
             // 通过指定类注册的协议，全部使用字节码增强
-            enhanceProtocolRegistration(Arrays.stream(protocols).filter(it -> Objects.nonNull(it)).collect(Collectors.toList()));
+            enhanceProtocolRegistration(Arrays.stream(protocols).filter(it -> Objects.nonNull(it)).collect(Collectors.toList()), generateOperation);
 
             enhanceProtocolAfter();
         } catch (Exception e) {
@@ -173,7 +175,7 @@ public class ProtocolAnalysis {
 
             enhanceProtocolBefore(generateOperation);
 
-            enhanceProtocolRegistration(enhanceList);
+            enhanceProtocolRegistration(enhanceList, generateOperation);
 
             enhanceProtocolAfter();
         } catch (Exception e) {
@@ -181,10 +183,20 @@ public class ProtocolAnalysis {
         }
     }
 
-    private static void enhanceProtocolRegistration(List<IProtocolRegistration> enhanceList) throws NoSuchMethodException, IllegalAccessException, InstantiationException, CannotCompileException, NotFoundException, InvocationTargetException, NoSuchFieldException {
-        // 字节码增强
+    private static void enhanceProtocolRegistration(List<IProtocolRegistration> enhanceList, GenerateOperation generateOperation) throws NoSuchMethodException, IllegalAccessException, InstantiationException, CannotCompileException, NotFoundException, InvocationTargetException, NoSuchFieldException {
+        // 生成协议注册类的java源文件
+        var protocolRegistrationPath = generateOperation.getProtocolRegistrationPath();
+        if (StringUtils.isNotBlank(protocolRegistrationPath)) {
+            generateProtocolRegistrationSource(enhanceList, protocolRegistrationPath);
+        }
+
+        // 优先使用编译期生成的类，没有的话使用字节码增强
         for (var registration : enhanceList) {
-            protocols[registration.protocolId()] = EnhanceUtils.createProtocolRegistration((ProtocolRegistration) registration);
+            var enhanceProtocolRegistration = EnhanceUtils.loadProtocolRegistration((ProtocolRegistration) registration);
+            if (enhanceProtocolRegistration == null) {
+                enhanceProtocolRegistration = EnhanceUtils.createProtocolRegistration((ProtocolRegistration) registration);
+            }
+            protocols[registration.protocolId()] = enhanceProtocolRegistration;
         }
 
         // 字节码增强过后，初始化各个子协议成员变量
@@ -199,6 +211,29 @@ public class ProtocolAnalysis {
         }
     }
 
+    /**
+     * 目录是用户配置的，只删除之前生成的协议注册类，不会删除目录下的其它文件，也不会覆盖同名的非生成文件
+     */
+    private static void generateProtocolRegistrationSource(List<IProtocolRegistration> enhanceList, String protocolRegistrationPath) throws NoSuchMethodException {
+        var directory = new File(protocolRegistrationPath);
+        if (directory.exists()) {
+            FileUtils.getAllReadableFiles(directory)
+                    .stream()
+                    .filter(it -> EnhanceUtils.isGeneratedSource(it))
+                    .forEach(it -> FileUtils.deleteFile(it));
+        }
+
+        for (var registration : enhanceList) {
+            var protocolClazz = registration.protocolConstructor().getDeclaringClass();
+            var fileName = StringUtils.format("{}.java", EnhanceUtils.generatedClassName(protocolClazz).replace(StringUtils.PERIOD, File.separator));
+            var file = new File(FileUtils.joinPath(protocolRegistrationPath, fileName));
+            if (file.exists()) {
+                throw new RunException("[file:{}]不是生成的协议注册类，不能覆盖", file.getAbsolutePath());
+            }
+            FileUtils.writeStringToFile(file, EnhanceUtils.protocolRegistrationSource((ProtocolRegistration) registration));
+        }
+    }
+
     private static void enhanceProtocolBefore(GenerateOperation generateOperation) throws IOException {
         // 检查协议格式
         checkAllProtocolClass();
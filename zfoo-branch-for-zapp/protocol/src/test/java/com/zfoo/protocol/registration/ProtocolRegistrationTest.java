@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.protocol.registration;
+
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.ProtocolManager;
+import com.zfoo.protocol.generate.GenerateOperation;
+import com.zfoo.protocol.packet.*;
+import com.zfoo.protocol.registration.model.*;
+import com.zfoo.protocol.util.ClassUtils;
+import com.zfoo.protocol.util.FileUtils;
+import com.zfoo.protocol.util.IOUtils;
+import com.zfoo.protocol.util.ReflectionUtils;
+import com.zfoo.protocol.util.StringUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期生成的协议注册类和javassist增强的协议注册类序列化的结果必须完全相同
+ * <p>
+ * 一个进程只能初始化一次协议，所以在同一次初始化中生成源文件，协议本身使用javassist增强，再把生成的源文件编译之后单独加载出来对比
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class ProtocolRegistrationTest {
+
+    private static final List<Class<?>> generatedProtocols = List.of(ComplexObject.class, NormalObject.class, SimpleObject.class, ObjectA.class, ObjectB.class);
+
+    private static final File protocolRegistrationDirectory;
+
+    static {
+        try {
+            protocolRegistrationDirectory = Files.createTempDirectory("protocolRegistration").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // 目录下用户自己的文件和之前生成的文件
+        FileUtils.writeStringToFile(new File(protocolRegistrationDirectory, "readme.txt"), "user file");
+        FileUtils.writeStringToFile(new File(protocolRegistrationDirectory, "com/zfoo/protocol/packet/HandWrittenRegistration.java"), "// hand written");
+        FileUtils.writeStringToFile(new File(protocolRegistrationDirectory, "com/zfoo/protocol/packet/OldObjectRegistration.java"), EnhanceUtils.GENERATED_SOURCE_HEADER + FileUtils.LS);
+
+        var op = new GenerateOperation();
+        op.setProtocolRegistrationPath(protocolRegistrationDirectory.getAbsolutePath());
+        var protocolClassSet = new HashSet<Class<?>>(generatedProtocols);
+        protocolClassSet.addAll(Set.of(StaleObject.class, UnsignedObject.class, UnrelatedObject.class));
+        ProtocolManager.initProtocol(protocolClassSet, op);
+    }
+
+    /**
+     * 重新生成的时候只删除之前生成的文件，不会删除目录下的其它文件
+     */
+    @Test
+    public void generateSourceTest() {
+        Assert.assertTrue(new File(protocolRegistrationDirectory, "readme.txt").exists());
+        Assert.assertTrue(new File(protocolRegistrationDirectory, "com/zfoo/protocol/packet/HandWrittenRegistration.java").exists());
+        Assert.assertFalse(new File(protocolRegistrationDirectory, "com/zfoo/protocol/packet/OldObjectRegistration.java").exists());
+
+        for (var protocolClass : generatedProtocols) {
+            Assert.assertTrue(EnhanceUtils.isGeneratedSource(sourceFile(protocolClass)));
+        }
+    }
+
+    /**
+     * 把生成的源文件编译之后加载，和javassist增强的协议注册类序列化的结果逐字节对比
+     */
+    @Test
+    public void generatedSerializationTest() throws Exception {
+        var classesDirectory = Files.createTempDirectory("protocolRegistrationClasses").toFile();
+        var arguments = new ArrayList<String>(List.of("-encoding", StringUtils.DEFAULT_CHARSET_NAME, "-proc:none", "-nowarn"
+                , "-classpath", System.getProperty("java.class.path"), "-d", classesDirectory.getAbsolutePath()));
+        for (var protocolClass : generatedProtocols) {
+            arguments.add(sourceFile(protocolClass).getAbsolutePath());
+        }
+        Assert.assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])));
+
+        var generatedRegistrations = new HashMap<Short, IProtocolRegistration>();
+        try (var classLoader = new URLClassLoader(new URL[]{classesDirectory.toURI().toURL()}, getClass().getClassLoader())) {
+            for (var protocolClass : generatedProtocols) {
+                var enhanceRegistration = ProtocolManager.getProtocol(ProtocolAnalysis.getProtocolIdByClass(protocolClass));
+                var generatedClazz = classLoader.loadClass(EnhanceUtils.generatedClassName(protocolClass));
+                Assert.assertSame(classLoader, generatedClazz.getClassLoader());
+                var generatedRegistration = (IProtocolRegistration) generatedClazz.getConstructor(Constructor.class).newInstance(enhanceRegistration.protocolConstructor());
+                generatedRegistrations.put(generatedRegistration.protocolId(), generatedRegistration);
+            }
+        }
+        // 和ProtocolAnalysis一样注入子协议，成员变量的名称是前缀加上子协议号
+        var fieldNamePrefix = StringUtils.uncapitalize(ProtocolRegistration.class.getSimpleName());
+        for (var generatedRegistration : generatedRegistrations.values()) {
+            for (var field : generatedRegistration.getClass().getDeclaredFields()) {
+                if (field.getType() != IProtocolRegistration.class) {
+                    continue;
+                }
+                var subProtocolId = Short.parseShort(StringUtils.substringAfterFirst(field.getName(), fieldNamePrefix));
+                ReflectionUtils.makeAccessible(field);
+                ReflectionUtils.setField(field, generatedRegistration, generatedRegistrations.get(subProtocolId));
+            }
+        }
+
+        var inputStream = ClassUtils.getFileFromClassPath("ComplexObject.bytes");
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(inputStream);
+        } finally {
+            IOUtils.closeIO(inputStream);
+        }
+        var complexObject = (ComplexObject) ProtocolManager.read(Unpooled.wrappedBuffer(bytes));
+        var packets = List.<IPacket>of(complexObject, complexObject.getKk(), complexObject.getKk().getObjectB(), simpleObject(), normalObject(complexObject));
+
+        for (var packet : packets) {
+            var enhanceRegistration = ProtocolManager.getProtocol(packet.protocolId());
+            var generatedRegistration = generatedRegistrations.get(packet.protocolId());
+
+            var expectBytes = write(enhanceRegistration, packet);
+            Assert.assertArrayEquals(expectBytes, write(generatedRegistration, packet));
+
+            // 生成的类反序列化出来的对象再用javassist增强的类序列化，结果不变
+            var generatedPacket = (IPacket) generatedRegistration.read(Unpooled.wrappedBuffer(expectBytes));
+            Assert.assertArrayEquals(expectBytes, write(enhanceRegistration, generatedPacket));
+        }
+    }
+
+    /**
+     * 同名的类签名不一致，没有签名，或者不是协议注册类，都使用javassist增强
+     */
+    @Test
+    public void fallbackTest() {
+        var notGeneratedClasses = Map.of(StaleObject.PROTOCOL_ID, StaleObjectRegistration.class
+                , UnsignedObject.PROTOCOL_ID, UnsignedObjectRegistration.class
+                , UnrelatedObject.PROTOCOL_ID, UnrelatedObjectRegistration.class);
+        for (var entry : notGeneratedClasses.entrySet()) {
+            var registration = ProtocolManager.getProtocol(entry.getKey());
+            Assert.assertNotSame(entry.getValue(), registration.getClass());
+            Assert.assertEquals(entry.getKey().shortValue(), registration.protocolId());
+        }
+
+        var staleObject = new StaleObject();
+        staleObject.setA(Integer.MAX_VALUE);
+        var buffer = Unpooled.buffer();
+        ProtocolManager.write(buffer, staleObject);
+        Assert.assertEquals(Integer.MAX_VALUE, ((StaleObject) ProtocolManager.read(buffer)).getA());
+    }
+
+    private static File sourceFile(Class<?> protocolClass) {
+        var fileName = StringUtils.format("{}.java", EnhanceUtils.generatedClassName(protocolClass).replace(StringUtils.PERIOD, File.separator));
+        return new File(protocolRegistrationDirectory, fileName);
+    }
+
+    private static byte[] write(IProtocolRegistration registration, IPacket packet) {
+        ByteBuf buffer = Unpooled.buffer();
+        registration.write(buffer, packet);
+        return ByteBufUtil.getBytes(buffer);
+    }
+
+    private static SimpleObject simpleObject() {
+        var simpleObject = new SimpleObject();
+        simpleObject.setC(Integer.MIN_VALUE);
+        simpleObject.setG(true);
+        return simpleObject;
+    }
+
+    private static NormalObject normalObject(ComplexObject complexObject) {
+        var normalObject = new NormalObject();
+        normalObject.setA(complexObject.getA());
+        normalObject.setAaa(complexObject.getAaa());
+        normalObject.setB(complexObject.getB());
+        normalObject.setC(complexObject.getC());
+        normalObject.setD(complexObject.getD());
+        normalObject.setE(complexObject.getE());
+        normalObject.setF(complexObject.getF());
+        normalObject.setG(complexObject.isG());
+        normalObject.setJj(complexObject.getJj());
+        normalObject.setKk(complexObject.getKk());
+        normalObject.setL(complexObject.getL());
+        normalObject.setLll(List.of(complexObject.getKk(), complexObject.getKk()));
+        normalObject.setLlll(complexObject.getLlll());
+        normalObject.setM(complexObject.getM());
+        normalObject.setMm(complexObject.getMm());
+        normalObject.setS(complexObject.getS());
+        normalObject.setSsss(complexObject.getSsss());
+        return normalObject;
+    }
+
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.protocol.registration.model;
+
+/**
+ * 和生成的协议注册类同名，但是不是协议注册类
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class UnrelatedObjectRegistration {
+
+    public static final int SIGNATURE = 0;
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.protocol.registration.model;
+
+import com.zfoo.protocol.IPacket;
+import com.zfoo.protocol.registration.IProtocolRegistration;
+import io.netty.buffer.ByteBuf;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * 没有签名的协议注册类，加载的时候和签名不一致一样处理
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class UnsignedObjectRegistration implements IProtocolRegistration {
+
+    @Override
+    public short protocolId() {
+        return UnsignedObject.PROTOCOL_ID;
+    }
+
+    @Override
+    public byte module() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Constructor<?> protocolConstructor() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object receiver() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(ByteBuf buffer, IPacket packet) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object read(ByteBuf buffer) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -31,7 +31,8 @@ import org.springframework.core.Ordered;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author jaysunxiao
@@ -69,10 +70,12 @@ public class SchedulerContext implements ApplicationListener<ApplicationContextE
         stop = true;
 
         try {
-            Field field = SchedulerBus.class.getDeclaredField("executor");
-            ReflectionUtils.makeAccessible(field);
-            var executor = (ScheduledExecutorService) ReflectionUtils.getField(field, null);
-            ThreadUtils.shutdown(executor);
+            for (var fieldName : List.of("executor", "cronExecutor")) {
+                Field field = SchedulerBus.class.getDeclaredField(fieldName);
+                ReflectionUtils.makeAccessible(field);
+                var executor = (ExecutorService) ReflectionUtils.getField(field, null);
+                ThreadUtils.shutdown(executor);
+            }
         } catch (Throwable e) {
             logger.error("Scheduler thread pool failed shutdown.", e);
             return;
@@ -13,7 +13,6 @@
 
 package com.zfoo.scheduler.manager;
 
-import com.zfoo.protocol.collection.CollectionUtils;
 import com.zfoo.scheduler.SchedulerContext;
 import com.zfoo.scheduler.model.vo.SchedulerDefinition;
 import com.zfoo.scheduler.util.TimeUtils;
@@ -22,13 +21,23 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * cron任务通过分层时间轮TimingWheel按照下一次触发时间索引，每一秒只处理到期的任务；
+ * 到期的任务交给有界的cronExecutor线程池执行，同一个任务不会重叠执行，慢任务不会拖慢其它任务的触发
+ *
  * @author jaysunxiao
  * @version 3.0
  */
@@ -36,22 +45,42 @@ public abstract class SchedulerBus {
 
     private static final Logger logger = LoggerFactory.getLogger(SchedulerBus.class);
 
+    public static final long TRIGGER_MILLIS_INTERVAL = TimeUtils.MILLIS_PER_SECOND;
+
+    /**
+     * cron任务执行线程池的线程数量
+     */
+    public static final int CRON_EXECUTOR_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /**
+     * cron任务执行线程池的队列长度，因为同一个任务不会重叠执行，所以排队的任务数量不会超过cron任务的数量
+     */
+    public static final int CRON_EXECUTOR_QUEUE_SIZE = 1024;
+
+    /**
+     * 所有的cron任务，只在scheduler线程中添加，用于时间被调整之后重新计算触发时间
+     */
     private static final List<SchedulerDefinition> schedulerDefList = new CopyOnWriteArrayList<>();
     /**
-     * scheduler默认只有一个单线程的线程池
+     * 新注册的cron任务，在scheduler线程中挂到时间轮上
+     */
+    private static final Queue<SchedulerDefinition> registerQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * scheduler默认只有一个单线程的线程池，负责推进时间轮和执行schedule，scheduleAtFixedRate的任务
      */
     private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new SchedulerThreadFactory(1));
     /**
-     * 上一次trigger触发时间
+     * 执行cron任务的有界线程池
      */
-    private static long lastTriggerTimestamp = 0L;
-
-
-    public static final long TRIGGER_MILLIS_INTERVAL = TimeUtils.MILLIS_PER_SECOND;
+    private static final ExecutorService cronExecutor = new ThreadPoolExecutor(CRON_EXECUTOR_SIZE, CRON_EXECUTOR_SIZE, 0L, TimeUnit.MILLISECONDS
+            , new ArrayBlockingQueue<>(CRON_EXECUTOR_QUEUE_SIZE), new SchedulerThreadFactory(2));
     /**
-     * 在scheduler中，最小的triggerTimestamp
+     * 时间轮只在scheduler线程中访问，第一次trigger的时候初始化
+     */
+    private static TimingWheel timingWheel;
+    /**
+     * 上一次trigger触发时间
      */
-    private static long minTriggerTimestamp = 0L;
+    private static long lastTriggerTimestamp = 0L;
 
     static {
         executor.scheduleAtFixedRate(() -> {
@@ -64,14 +93,17 @@ public abstract class SchedulerBus {
     }
 
 
-    public static void refreshMinTriggerTimestamp() {
+    /**
+     * 在scheduler中，最小的triggerTimestamp，时间轮已经按照触发时间索引了任务，这里只在需要的时候遍历计算
+     */
+    public static long minTriggerTimestamp() {
         var minTimestamp = Long.MAX_VALUE;
         for (var scheduler : schedulerDefList) {
             if (scheduler.getTriggerTimestamp() < minTimestamp) {
                 minTimestamp = scheduler.getTriggerTimestamp();
             }
         }
-        minTriggerTimestamp = minTimestamp;
+        return minTimestamp;
     }
 
     /**
@@ -79,55 +111,78 @@ public abstract class SchedulerBus {
      */
     private static void triggerPerSecond() {
         var currentTimeMillis = TimeUtils.currentTimeMillis();
+        var currentTick = currentTimeMillis / TimeUtils.MILLIS_PER_SECOND;
 
-        if (CollectionUtils.isEmpty(schedulerDefList)) {
-            return;
+        if (timingWheel == null) {
+            timingWheel = new TimingWheel(currentTick);
         }
 
+        for (var scheduler = registerQueue.poll(); scheduler != null; scheduler = registerQueue.poll()) {
+            schedulerDefList.add(scheduler);
+            timingWheel.add(scheduler);
+        }
 
         // 有人向前调整过机器时间，重新计算scheduler里的triggerTimestamp
-        // var diff = timestamp - lastTriggerTimestamp;
         if (currentTimeMillis < lastTriggerTimestamp) {
-            for (SchedulerDefinition schedulerDef : schedulerDefList) {
+            timingWheel.reset(currentTick);
+            for (var schedulerDef : schedulerDefList) {
                 var nextTriggerTimestamp = TimeUtils.nextTimestampByCronExpression(schedulerDef.getCronExpression(), currentTimeMillis);
                 schedulerDef.setTriggerTimestamp(nextTriggerTimestamp);
             }
-            refreshMinTriggerTimestamp();
+            schedulerDefList.forEach(it -> timingWheel.add(it));
+        }
+        // 有人向后调整过很长的机器时间，直接重建时间轮，不需要一个tick一个tick的推进，触发时间已经过了的任务在这一次会触发
+        else if (currentTick - timingWheel.getBase() > TimingWheel.MAX_SPAN) {
+            timingWheel.reset(currentTick).forEach(it -> timingWheel.add(it));
         }
 
-        // diff > 0, 没有人调整时间或者有人向后调整过机器时间，可以忽略，因为向后调整时间时间戳一定会大于triggerTimestamp，所以一定会触发
         lastTriggerTimestamp = currentTimeMillis;
 
-        // 如果minSchedulerTriggerTimestamp大于timestamp，说明没有可执行的scheduler
-        if (currentTimeMillis < minTriggerTimestamp) {
+        var dueList = new ArrayList<SchedulerDefinition>();
+        timingWheel.advance(currentTick, dueList);
+        if (dueList.isEmpty()) {
             return;
         }
 
-        var minTimestamp = Long.MAX_VALUE;
         var timestampZonedDataTime = ZonedDateTime.ofInstant(Instant.ofEpochMilli(currentTimeMillis), TimeUtils.DEFAULT_ZONE_ID);
-        for (var scheduler : schedulerDefList) {
-            var triggerTimestamp = scheduler.getTriggerTimestamp();
-            if (triggerTimestamp <= currentTimeMillis) {
-                // 到达触发时间，则执行runnable方法
+        for (var scheduler : dueList) {
+            // 到达触发时间，交给cronExecutor执行
+            dispatch(scheduler);
+            // 重新设置下一次的触发时间戳
+            scheduler.setTriggerTimestamp(TimeUtils.nextTimestampByCronExpression(scheduler.getCronExpression(), timestampZonedDataTime));
+            timingWheel.add(scheduler);
+        }
+    }
+
+    private static void dispatch(SchedulerDefinition scheduler) {
+        if (!scheduler.tryStart()) {
+            logger.warn("scheduler任务[{}]上一次还没有执行完，跳过这一次的触发，已经跳过[{}]次，最近一次执行消耗[{}]ms，最长一次执行消耗[{}]ms"
+                    , scheduler.getName(), scheduler.getOverrunCount(), scheduler.getLastCost(), scheduler.getMaxCost());
+            return;
+        }
+
+        try {
+            cronExecutor.execute(() -> {
+                var startTime = TimeUtils.currentTimeMillis();
                 try {
                     scheduler.getScheduler().invoke();
                 } catch (Throwable t) {
                     logger.error("scheduler任务调度未知异常", t);
+                } finally {
+                    scheduler.finish(TimeUtils.currentTimeMillis() - startTime);
                 }
-                // 重新设置下一次的触发时间戳
-                triggerTimestamp = TimeUtils.nextTimestampByCronExpression(scheduler.getCronExpression(), timestampZonedDataTime);
-                scheduler.setTriggerTimestamp(triggerTimestamp);
-            }
-            if (triggerTimestamp < minTimestamp) {
-                minTimestamp = scheduler.getTriggerTimestamp();
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            scheduler.finish(-1);
+            logger.error("scheduler任务[{}]被cron线程池拒绝执行", scheduler.getName(), e);
         }
-        minTriggerTimestamp = minTimestamp;
     }
 
+    /**
+     * 注册cron任务，在下一次trigger的时候挂到时间轮上
+     */
     public static void registerScheduler(SchedulerDefinition scheduler) {
-        schedulerDefList.add(scheduler);
-        refreshMinTriggerTimestamp();
+        registerQueue.offer(scheduler);
     }
 
 
@@ -184,6 +239,6 @@ public abstract class SchedulerBus {
             return;
         }
 
-        schedulerDefList.add(SchedulerDefinition.valueOf(cron, runnable));
+        registerScheduler(SchedulerDefinition.valueOf(cron, runnable));
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.scheduler.manager;
+
+import com.zfoo.scheduler.model.vo.SchedulerDefinition;
+import com.zfoo.scheduler.util.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层时间轮，按照下一次触发时间把cron任务挂在对应的槽位上，每一次推进只会处理到期的槽位，调度的开销只和到期的任务数量有关
+ * <p>
+ * 一共4层，每一层64个槽位，第0层每个槽位1秒，往上每一层的槽位跨度是下一层的64倍，最高层一圈大约194天，更远的任务放在overflow中；
+ * 当低层转完一圈的时候，把高层对应槽位里的任务重新分配到低层（cascade）
+ * <p>
+ * 非线程安全，只能在scheduler的线程中使用
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_LEVEL = 4;
+
+    /**
+     * 时间轮能够容纳的最大tick跨度，超过这个跨度的任务放在overflow中
+     */
+    public static final long MAX_SPAN = 1L << (WHEEL_BITS * WHEEL_LEVEL);
+
+    private final List<SchedulerDefinition>[][] wheels;
+
+    private final List<SchedulerDefinition> overflow = new ArrayList<>();
+
+    /**
+     * 下一个需要处理的tick，tick为秒级时间戳
+     */
+    private long base;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long base) {
+        this.base = base;
+        this.wheels = new List[WHEEL_LEVEL][WHEEL_SIZE];
+        for (var level = 0; level < WHEEL_LEVEL; level++) {
+            for (var slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * 把任务按照triggerTimestamp挂到时间轮上，已经过期的任务会在下一次推进的时候触发，永远不会触发的任务直接忽略
+     */
+    public void add(SchedulerDefinition scheduler) {
+        var triggerTimestamp = scheduler.getTriggerTimestamp();
+        if (triggerTimestamp == Long.MAX_VALUE) {
+            return;
+        }
+        size++;
+        place(scheduler, tickOf(triggerTimestamp));
+    }
+
+    /**
+     * 推进时间轮到targetTick（包括targetTick），把到期的任务放到dueList中
+     */
+    public void advance(long targetTick, List<SchedulerDefinition> dueList) {
+        while (base <= targetTick) {
+            var index = (int) (base & WHEEL_MASK);
+            if (index == 0) {
+                cascade();
+            }
+            var slot = wheels[0][index];
+            base++;
+            if (slot.isEmpty()) {
+                continue;
+            }
+            size -= slot.size();
+            dueList.addAll(slot);
+            slot.clear();
+        }
+    }
+
+    /**
+     * 清空时间轮并且把base重置到指定的tick，返回时间轮上的所有任务
+     */
+    public List<SchedulerDefinition> reset(long newBase) {
+        var list = new ArrayList<SchedulerDefinition>(size);
+        for (var wheel : wheels) {
+            for (var slot : wheel) {
+                list.addAll(slot);
+                slot.clear();
+            }
+        }
+        list.addAll(overflow);
+        overflow.clear();
+        size = 0;
+        base = newBase;
+        return list;
+    }
+
+    public long getBase() {
+        return base;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static long tickOf(long timestamp) {
+        // 向上取整，保证tick到期的时候一定满足triggerTimestamp <= 当前时间
+        return (timestamp + TimeUtils.MILLIS_PER_SECOND - 1) / TimeUtils.MILLIS_PER_SECOND;
+    }
+
+    private void place(SchedulerDefinition scheduler, long tick) {
+        var delta = tick - base;
+        if (delta < 0) {
+            wheels[0][(int) (base & WHEEL_MASK)].add(scheduler);
+            return;
+        }
+        for (var level = 0; level < WHEEL_LEVEL; level++) {
+            var shift = WHEEL_BITS * (level + 1);
+            if (delta < (1L << shift)) {
+                wheels[level][(int) ((tick >> (shift - WHEEL_BITS)) & WHEEL_MASK)].add(scheduler);
+                return;
+            }
+        }
+        overflow.add(scheduler);
+    }
+
+    /**
+     * 第0层转完一圈，依次把高层当前槽位的任务重新分配到低层，高层的当前槽位不为0的时候停止
+     */
+    private void cascade() {
+        for (var level = 1; level < WHEEL_LEVEL; level++) {
+            var shift = WHEEL_BITS * level;
+            var slot = wheels[level][(int) ((base >> shift) & WHEEL_MASK)];
+            if (!slot.isEmpty()) {
+                var list = new ArrayList<>(slot);
+                slot.clear();
+                list.forEach(it -> place(it, tickOf(it.getTriggerTimestamp())));
+            }
+
+            if (((base >> shift) & WHEEL_MASK) != 0) {
+                return;
+            }
+        }
+
+        // 最高层也转完了一圈，overflow中的任务重新分配
+        if (!overflow.isEmpty()) {
+            var list = new ArrayList<>(overflow);
+            overflow.clear();
+            list.forEach(it -> place(it, tickOf(it.getTriggerTimestamp())));
+        }
+    }
+
+}
@@ -21,6 +21,8 @@ import org.springframework.scheduling.support.CronExpression;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author jaysunxiao
@@ -32,17 +34,48 @@ public class SchedulerDefinition {
 
     private IScheduler scheduler;
 
+    /**
+     * 任务的名称，用于打印日志
+     */
+    private String name;
+
     /**
      * 触发时间戳，只要当前时间戳大于这个触发事件戳都视为可以触发
      */
     private long triggerTimestamp;
 
+    /**
+     * 任务是否正在执行，同一个任务同一时间只会有一个在执行，上一次没有执行完的时候会跳过这一次的触发
+     */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * 执行次数
+     */
+    private final AtomicLong invokeCount = new AtomicLong(0);
+
+    /**
+     * 因为上一次还没有执行完而跳过的触发次数
+     */
+    private final AtomicLong overrunCount = new AtomicLong(0);
+
+    /**
+     * 最近一次执行消耗的时间，单位毫秒
+     */
+    private volatile long lastCost;
+
+    /**
+     * 最长的一次执行消耗的时间，单位毫秒
+     */
+    private volatile long maxCost;
+
     public static SchedulerDefinition valueOf(String cron, Object bean, Method method) throws NoSuchMethodException, IllegalAccessException, InstantiationException, CannotCompileException, NotFoundException, InvocationTargetException {
         var schedulerDef = new SchedulerDefinition();
         var cronExpression = CronExpression.parse(cron);
         schedulerDef.cronExpression = cronExpression;
         // 字节码增强，避免反射
         schedulerDef.scheduler = EnhanceUtils.createScheduler(ReflectScheduler.valueOf(bean, method));
+        schedulerDef.name = bean.getClass().getSimpleName() + "." + method.getName();
         schedulerDef.triggerTimestamp = TimeUtils.nextTimestampByCronExpression(cronExpression, TimeUtils.currentTimeMillis());
         ReflectionUtils.makeAccessible(method);
         return schedulerDef;
@@ -53,10 +86,58 @@ public class SchedulerDefinition {
         var cronExpression = CronExpression.parse(cron);
         schedulerDef.cronExpression = cronExpression;
         schedulerDef.scheduler = RunnableScheduler.valueOf(runnable);
+        schedulerDef.name = runnable.getClass().getName();
         schedulerDef.triggerTimestamp = TimeUtils.nextTimestampByCronExpression(cronExpression, TimeUtils.currentTimeMillis());
         return schedulerDef;
     }
 
+    /**
+     * 标记任务开始执行，如果上一次还没有执行完则返回false并且记录一次overrun
+     */
+    public boolean tryStart() {
+        if (running.compareAndSet(false, true)) {
+            return true;
+        }
+        overrunCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 标记任务执行完成
+     *
+     * @param cost 本次执行消耗的时间，小于0表示任务没有被执行
+     */
+    public void finish(long cost) {
+        if (cost >= 0) {
+            invokeCount.incrementAndGet();
+            lastCost = cost;
+            if (cost > maxCost) {
+                maxCost = cost;
+            }
+        }
+        running.set(false);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public long getInvokeCount() {
+        return invokeCount.get();
+    }
+
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    public long getLastCost() {
+        return lastCost;
+    }
+
+    public long getMaxCost() {
+        return maxCost;
+    }
+
     public CronExpression getCronExpression() {
         return cronExpression;
     }
@@ -73,6 +154,14 @@ public class SchedulerDefinition {
         this.scheduler = scheduler;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
     public long getTriggerTimestamp() {
         return triggerTimestamp;
     }
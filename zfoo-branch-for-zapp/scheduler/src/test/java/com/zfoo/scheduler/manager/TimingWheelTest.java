@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.scheduler.manager;
+
+import com.zfoo.scheduler.model.vo.SchedulerDefinition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class TimingWheelTest {
+
+    @Test
+    public void advanceTest() {
+        var random = new Random(7);
+        var base = 1_600_000_000L + random.nextInt(1 << 20);
+        var wheel = new TimingWheel(base);
+
+        var schedulers = new ArrayList<SchedulerDefinition>();
+        for (var i = 0; i < 10000; i++) {
+            var scheduler = new SchedulerDefinition();
+            // 覆盖时间轮的每一层和overflow，包括已经过期的任务
+            var span = 1L << random.nextInt(27);
+            scheduler.setTriggerTimestamp((base - 10 + (long) (random.nextDouble() * span)) * 1000 + random.nextInt(1000));
+            schedulers.add(scheduler);
+            wheel.add(scheduler);
+        }
+        var never = new SchedulerDefinition();
+        never.setTriggerTimestamp(Long.MAX_VALUE);
+        wheel.add(never);
+        Assert.assertEquals(schedulers.size(), wheel.size());
+
+        var fired = new HashSet<SchedulerDefinition>();
+        var dueList = new ArrayList<SchedulerDefinition>();
+        var tick = base;
+        while (fired.size() < schedulers.size()) {
+            var lastTick = tick;
+            tick += 1 + random.nextInt(100_000);
+            dueList.clear();
+            wheel.advance(tick, dueList);
+            for (var scheduler : dueList) {
+                var triggerTick = TimingWheel.tickOf(scheduler.getTriggerTimestamp());
+                // 每一个任务只会触发一次，并且只在它的触发时间所在的这一次推进中触发
+                Assert.assertTrue(fired.add(scheduler));
+                Assert.assertTrue(triggerTick <= tick);
+                Assert.assertTrue(triggerTick > lastTick || triggerTick <= base);
+            }
+        }
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void readdTest() {
+        var base = 1_600_000_000L;
+        var wheel = new TimingWheel(base);
+        var scheduler = new SchedulerDefinition();
+        scheduler.setTriggerTimestamp(base * 1000);
+        wheel.add(scheduler);
+
+        // 每一次触发之后重新挂到5秒之后，模拟cron任务
+        var dueList = new ArrayList<SchedulerDefinition>();
+        var count = 0;
+        for (var tick = base; tick < base + 100_000; tick++) {
+            dueList.clear();
+            wheel.advance(tick, dueList);
+            if (dueList.isEmpty()) {
+                continue;
+            }
+            Assert.assertEquals(1, dueList.size());
+            Assert.assertEquals(base + count * 5L, tick);
+            count++;
+            scheduler.setTriggerTimestamp((tick + 5) * 1000);
+            wheel.add(scheduler);
+        }
+        Assert.assertEquals(20_000, count);
+    }
+
+    @Test
+    public void resetTest() {
+        var wheel = new TimingWheel(100);
+        for (var i = 0; i < 100; i++) {
+            var scheduler = new SchedulerDefinition();
+            scheduler.setTriggerTimestamp((100 + i * 1000L) * 1000);
+            wheel.add(scheduler);
+        }
+        var list = wheel.reset(500);
+        Assert.assertEquals(100, list.size());
+        Assert.assertEquals(0, wheel.size());
+        Assert.assertEquals(500, wheel.getBase());
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math;
+
+import com.zfoo.protocol.model.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 使用有序的int数组保存虚拟节点的一致性Hash环，虚拟节点的计算方式和ConsistentHash一样，相同的真实节点得到的路由结果也一样
+ * <p>
+ * 增加或者删除真实节点的时候只计算这个节点的虚拟节点，然后和原来的有序数组归并，不需要重建整个环；
+ * 查找是在int数组上的二分查找，没有装箱，对cpu缓存更友好
+ * <p>
+ * 读操作无锁，读到的总是一个完整的环；写操作加锁，写完之后整体替换
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class ConsistentHashRing<K extends Comparable<K>, V> {
+
+    private static final class Ring<K, V> {
+        /**
+         * 虚拟节点的hash值，从小到大排列，hash值相同的时候真实节点的key大的排在前面
+         */
+        private final int[] hashes;
+        /**
+         * 和hashes一一对应的真实节点
+         */
+        private final Pair<K, V>[] nodes;
+
+        private Ring(int[] hashes, Pair<K, V>[] nodes) {
+            this.hashes = hashes;
+            this.nodes = nodes;
+        }
+    }
+
+    private final int virtualNodes;
+
+    private volatile Ring<K, V> ring;
+
+    private final List<Pair<K, V>> realNodes = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    public ConsistentHashRing(List<Pair<K, V>> realNodes, int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        this.ring = new Ring<>(new int[0], new Pair[0]);
+        for (var realNode : realNodes) {
+            addNode(realNode);
+        }
+    }
+
+    /**
+     * 增加一个真实节点，如果已经存在相同key的节点，则只替换节点的value，不会改变路由
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void addNode(Pair<K, V> realNode) {
+        var current = ring;
+        for (var i = 0; i < realNodes.size(); i++) {
+            var node = realNodes.get(i);
+            if (!node.getKey().equals(realNode.getKey())) {
+                continue;
+            }
+            if (Objects.equals(node.getValue(), realNode.getValue())) {
+                return;
+            }
+            realNodes.set(i, realNode);
+            var nodes = current.nodes.clone();
+            for (var j = 0; j < nodes.length; j++) {
+                if (nodes[j] == node) {
+                    nodes[j] = realNode;
+                }
+            }
+            ring = new Ring<>(current.hashes, nodes);
+            return;
+        }
+        realNodes.add(realNode);
+
+        var addHashes = new int[virtualNodes];
+        for (var i = 0; i < virtualNodes; i++) {
+            addHashes[i] = HashUtils.fnvHash(realNode.getKey().toString() + "&&VN" + i);
+        }
+        Arrays.sort(addHashes);
+
+        // 归并两个有序数组
+        var length = current.hashes.length + addHashes.length;
+        var hashes = new int[length];
+        var nodes = (Pair<K, V>[]) new Pair[length];
+        var i = 0;
+        var j = 0;
+        for (var k = 0; k < length; k++) {
+            if (j >= addHashes.length || (i < current.hashes.length && before(current.hashes[i], current.nodes[i], addHashes[j], realNode))) {
+                hashes[k] = current.hashes[i];
+                nodes[k] = current.nodes[i];
+                i++;
+            } else {
+                hashes[k] = addHashes[j];
+                nodes[k] = realNode;
+                j++;
+            }
+        }
+        ring = new Ring<>(hashes, nodes);
+    }
+
+    /**
+     * 删除一个真实节点，只有原来路由到这个节点的key会被重新路由
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void removeNode(K key) {
+        if (!realNodes.removeIf(it -> it.getKey().equals(key))) {
+            return;
+        }
+
+        var current = ring;
+        var hashes = new int[current.hashes.length - virtualNodes];
+        var nodes = (Pair<K, V>[]) new Pair[hashes.length];
+        var k = 0;
+        for (var i = 0; i < current.hashes.length; i++) {
+            if (current.nodes[i].getKey().equals(key)) {
+                continue;
+            }
+            hashes[k] = current.hashes[i];
+            nodes[k] = current.nodes[i];
+            k++;
+        }
+        ring = new Ring<>(hashes, nodes);
+    }
+
+    /**
+     * 得到应当路由到的结点，没有任何节点的时候返回null
+     */
+    public Pair<K, V> getRealNode(Object key) {
+        var current = ring;
+        var hashes = current.hashes;
+        if (hashes.length == 0) {
+            return null;
+        }
+
+        // 顺时针找到第一个hash值大于等于key的hash值的虚拟节点
+        var hash = HashUtils.fnvHash(key);
+        var low = 0;
+        var high = hashes.length;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (hashes[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return current.nodes[low == hashes.length ? 0 : low];
+    }
+
+    public synchronized List<Pair<K, V>> getRealNodes() {
+        return Collections.unmodifiableList(new ArrayList<>(realNodes));
+    }
+
+    /**
+     * hash值相同的时候key大的排在前面，和ConsistentHash中TreeMap后放入的节点覆盖先放入的节点的结果一致
+     */
+    private boolean before(int hashA, Pair<K, V> nodeA, int hashB, Pair<K, V> nodeB) {
+        if (hashA != hashB) {
+            return hashA < hashB;
+        }
+        return nodeA.getKey().compareTo(nodeB.getKey()) >= 0;
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math.dfa;
+
+import com.zfoo.protocol.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick多模式匹配自动机，常用于敏感词过滤，匹配的时间复杂度和文本长度成线性关系。
+ * <p>
+ * 和WordTree一样会忽略停顿词（StringUtils.isStopChar），停顿词出现在关键词中间的时候会作为关键词的一部分被返回。
+ * <p>
+ * 所有状态的转移保存在一个按字符排序的紧凑数组中，通过二分查找转移；构建完成之后不可修改，可以被多个线程同时使用。
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class AhoCorasick {
+
+    /**
+     * 匹配的回调，start和end是关键词在原文本中的位置[start, end)
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @return 返回false停止匹配
+         */
+        boolean onMatch(int start, int end);
+    }
+
+    private static final int ROOT = 0;
+
+    private static final int NONE = -1;
+
+    /**
+     * 停顿词表，避免匹配的时候对char装箱
+     */
+    private static final boolean[] STOP_CHARS = new boolean[Character.MAX_VALUE + 1];
+
+    static {
+        for (var i = 0; i <= Character.MAX_VALUE; i++) {
+            STOP_CHARS[i] = StringUtils.isStopChar((char) i);
+        }
+    }
+
+    /**
+     * 状态s的转移是transitionChars和transitionStates中[transitionOffsets[s], transitionOffsets[s + 1])的部分，按照字符排序
+     */
+    private final int[] transitionOffsets;
+    private final char[] transitionChars;
+    private final int[] transitionStates;
+
+    /**
+     * 失配的时候跳转的状态
+     */
+    private final int[] fails;
+
+    /**
+     * 以这个状态结尾的关键词的长度（不包括停顿词），0表示不是关键词的结尾
+     */
+    private final int[] wordLengths;
+
+    /**
+     * 沿着失配链可以到达的最近的关键词结尾状态，NONE表示没有
+     */
+    private final int[] outputs;
+
+    private AhoCorasick(int[] transitionOffsets, char[] transitionChars, int[] transitionStates, int[] fails, int[] wordLengths, int[] outputs) {
+        this.transitionOffsets = transitionOffsets;
+        this.transitionChars = transitionChars;
+        this.transitionStates = transitionStates;
+        this.fails = fails;
+        this.wordLengths = wordLengths;
+        this.outputs = outputs;
+    }
+
+    public static AhoCorasick build(Collection<String> words) {
+        // 构建的时候使用TreeMap的字典树，构建完成之后压缩成数组
+        var trie = new ArrayList<TreeMap<Character, Integer>>();
+        var lengths = new ArrayList<Integer>();
+        trie.add(new TreeMap<>());
+        lengths.add(0);
+
+        for (var word : new HashSet<>(words)) {
+            if (word == null) {
+                continue;
+            }
+            var state = ROOT;
+            var length = 0;
+            for (var i = 0; i < word.length(); i++) {
+                var c = word.charAt(i);
+                if (STOP_CHARS[c]) {
+                    continue;
+                }
+                var next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    lengths.add(0);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+                length++;
+            }
+            if (length > 0) {
+                lengths.set(state, length);
+            }
+        }
+
+        var size = trie.size();
+        var transitionOffsets = new int[size + 1];
+        for (var i = 0; i < size; i++) {
+            transitionOffsets[i + 1] = transitionOffsets[i] + trie.get(i).size();
+        }
+        var transitionChars = new char[transitionOffsets[size]];
+        var transitionStates = new int[transitionOffsets[size]];
+        var wordLengths = new int[size];
+        for (var i = 0; i < size; i++) {
+            var offset = transitionOffsets[i];
+            for (var entry : trie.get(i).entrySet()) {
+                transitionChars[offset] = entry.getKey();
+                transitionStates[offset] = entry.getValue();
+                offset++;
+            }
+            wordLengths[i] = lengths.get(i);
+        }
+
+        // 广度优先计算失配链，父节点的失配链一定先于子节点计算
+        var fails = new int[size];
+        var outputs = new int[size];
+        outputs[ROOT] = NONE;
+        var queue = new int[size];
+        var head = 0;
+        var tail = 0;
+        for (var i = transitionOffsets[ROOT]; i < transitionOffsets[ROOT + 1]; i++) {
+            var child = transitionStates[i];
+            fails[child] = ROOT;
+            outputs[child] = NONE;
+            queue[tail++] = child;
+        }
+
+        var automaton = new AhoCorasick(transitionOffsets, transitionChars, transitionStates, fails, wordLengths, outputs);
+        while (head < tail) {
+            var state = queue[head++];
+            for (var i = transitionOffsets[state]; i < transitionOffsets[state + 1]; i++) {
+                var c = transitionChars[i];
+                var child = transitionStates[i];
+
+                var fail = fails[state];
+                var next = automaton.transition(fail, c);
+                while (next == NONE && fail != ROOT) {
+                    fail = fails[fail];
+                    next = automaton.transition(fail, c);
+                }
+                fails[child] = (next == NONE) ? ROOT : next;
+                outputs[child] = (wordLengths[fails[child]] > 0) ? fails[child] : outputs[fails[child]];
+                queue[tail++] = child;
+            }
+        }
+
+        return automaton;
+    }
+
+    private int transition(int state, char c) {
+        var low = transitionOffsets[state];
+        var high = transitionOffsets[state + 1] - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var midChar = transitionChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return transitionStates[mid];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 找出文本中所有的关键词（包括重叠的关键词），按照关键词结尾的位置依次回调，匹配的过程不会分配内存
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        if (text == null) {
+            return;
+        }
+
+        var state = ROOT;
+        var length = text.length();
+        for (var i = 0; i < length; i++) {
+            var c = text.charAt(i);
+            if (STOP_CHARS[c]) {
+                continue;
+            }
+
+            var next = transition(state, c);
+            while (next == NONE && state != ROOT) {
+                state = fails[state];
+                next = transition(state, c);
+            }
+            state = (next == NONE) ? ROOT : next;
+
+            var output = (wordLengths[state] > 0) ? state : outputs[state];
+            for (; output != NONE; output = outputs[output]) {
+                if (!handler.onMatch(start(text, i, wordLengths[output]), i + 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从关键词的最后一个字符向前数wordLength个非停顿词，得到关键词在原文本中开始的位置
+     */
+    private int start(CharSequence text, int end, int wordLength) {
+        var index = end;
+        for (; ; index--) {
+            if (!STOP_CHARS[text.charAt(index)] && --wordLength == 0) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 指定文本是否包含关键词
+     */
+    public boolean isMatch(CharSequence text) {
+        if (StringUtils.isBlank(text)) {
+            return false;
+        }
+        var found = new boolean[1];
+        match(text, (start, end) -> {
+            found[0] = true;
+            return false;
+        });
+        return found[0];
+    }
+
+    /**
+     * 找出所有匹配的关键字，等同于WordTree的密集匹配和贪婪匹配
+     */
+    public List<String> matchAll(CharSequence text) {
+        return matchAll(text, -1);
+    }
+
+    /**
+     * 找出所有匹配的关键字
+     *
+     * @param text  被检查的文本
+     * @param limit 限制匹配个数，小于等于0表示不限制
+     * @return 匹配的词列表
+     */
+    public List<String> matchAll(CharSequence text, int limit) {
+        if (StringUtils.isBlank(text)) {
+            return Collections.emptyList();
+        }
+        var result = new ArrayList<String>();
+        match(text, (start, end) -> {
+            result.add(text.subSequence(start, end).toString());
+            return limit <= 0 || result.size() < limit;
+        });
+        return result;
+    }
+
+    /**
+     * 把文本中所有的关键词替换成replacement字符，没有关键词的时候返回原文本
+     */
+    public String replace(String text, char replacement) {
+        if (StringUtils.isBlank(text)) {
+            return text;
+        }
+        var chars = new char[1][];
+        match(text, (start, end) -> {
+            if (chars[0] == null) {
+                chars[0] = text.toCharArray();
+            }
+            for (var i = start; i < end; i++) {
+                if (!STOP_CHARS[text.charAt(i)]) {
+                    chars[0][i] = replacement;
+                }
+            }
+            return true;
+        });
+        return chars[0] == null ? text : new String(chars[0]);
+    }
+
+    /**
+     * 自动机的状态数量
+     */
+    public int stateSize() {
+        return fails.length;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch，使用固定的内存估计任意key出现的次数，估计值只会偏大不会偏小
+ * <p>
+ * 使用保守更新（conservative update），只增加等于最小值的计数器，可以明显减小高频key对低频key的干扰。
+ * 非线程安全，由调用者同步。
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    /**
+     * 每一行计数器的数量，是2的幂
+     */
+    private final int width;
+
+    private final long[] table;
+
+    /**
+     * @param depth 行数，误差超过估计范围的概率为(1/2)^depth
+     * @param width 每行的计数器数量，会向上取2的幂，误差范围为总数的2/width左右
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("depth and width must be positive");
+        }
+        var capacity = 1;
+        while (capacity < width) {
+            capacity <<= 1;
+        }
+        this.depth = depth;
+        this.width = capacity;
+        this.table = new long[depth * capacity];
+    }
+
+    /**
+     * 增加key的计数
+     *
+     * @return 增加之后key的估计值
+     */
+    public long add(Object key, long count) {
+        var hash1 = mix(key.hashCode());
+        var hash2 = mix(hash1 ^ 0x9E3779B9) | 1;
+
+        var estimate = Long.MAX_VALUE;
+        for (var i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, table[index(i, hash1, hash2)]);
+        }
+
+        var newEstimate = estimate + count;
+        for (var i = 0; i < depth; i++) {
+            var index = index(i, hash1, hash2);
+            if (table[index] < newEstimate) {
+                table[index] = newEstimate;
+            }
+        }
+        return newEstimate;
+    }
+
+    public long estimate(Object key) {
+        var hash1 = mix(key.hashCode());
+        var hash2 = mix(hash1 ^ 0x9E3779B9) | 1;
+
+        var estimate = Long.MAX_VALUE;
+        for (var i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, table[index(i, hash1, hash2)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * 所有计数器乘以factor，用来让旧的计数随着时间衰减
+     */
+    public void decay(double factor) {
+        for (var i = 0; i < table.length; i++) {
+            table[i] = (long) (table[i] * factor);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 双重哈希得到第row行的位置：hash1 + row * hash2
+     */
+    private int index(int row, int hash1, int hash2) {
+        return row * width + ((hash1 + row * hash2) & (width - 1));
+    }
+
+    /**
+     * murmur3的fmix32，打散key的hashCode
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
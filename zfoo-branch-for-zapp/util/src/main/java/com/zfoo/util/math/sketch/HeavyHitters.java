@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math.sketch;
+
+import com.zfoo.protocol.model.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式的高频元素统计（heavy hitters），内存占用固定，每次计数的时间复杂度为O(depth + log capacity)
+ * <p>
+ * 使用Count-Min Sketch估计所有元素的计数，使用Space-Saving的方式只保留计数最大的capacity个元素：
+ * 新元素的计数大于被监控元素中最小的计数时替换掉最小的元素，新元素的计数使用sketch的估计值代替Space-Saving中的min + 1，误差更小。
+ * <p>
+ * 线程安全
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class HeavyHitters<K> {
+
+    private static class Node<K> {
+        private final K key;
+        private long count;
+        private int index;
+
+        private Node(K key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    private final int capacity;
+
+    private final CountMinSketch sketch;
+
+    /**
+     * 被监控元素的小顶堆，堆顶是计数最小的元素
+     */
+    private final List<Node<K>> heap;
+
+    private final Map<K, Node<K>> nodeMap;
+
+    public HeavyHitters(int capacity, int depth, int width) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(depth, width);
+        this.heap = new ArrayList<>(capacity);
+        this.nodeMap = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 增加key的计数
+     *
+     * @return 增加之后key的估计值
+     */
+    public synchronized long add(K key, long count) {
+        var estimate = sketch.add(key, count);
+
+        var node = nodeMap.get(key);
+        if (node != null) {
+            node.count = estimate;
+            siftDown(node.index);
+            return estimate;
+        }
+
+        if (heap.size() < capacity) {
+            node = new Node<>(key, estimate);
+            nodeMap.put(key, node);
+            heap.add(node);
+            siftUp(heap.size() - 1);
+            return estimate;
+        }
+
+        var min = heap.get(0);
+        if (min.count < estimate) {
+            nodeMap.remove(min.key);
+            node = new Node<>(key, estimate);
+            nodeMap.put(key, node);
+            heap.set(0, node);
+            siftDown(0);
+        }
+        return estimate;
+    }
+
+    /**
+     * 被监控的元素返回监控的计数，其它元素返回sketch的估计值
+     */
+    public synchronized long estimate(K key) {
+        var node = nodeMap.get(key);
+        return node == null ? sketch.estimate(key) : node.count;
+    }
+
+    /**
+     * 计数最大的limit个元素，按照计数从大到小排列
+     */
+    public synchronized List<Pair<K, Long>> top(int limit) {
+        var nodes = new ArrayList<>(heap);
+        nodes.sort((a, b) -> Long.compare(b.count, a.count));
+        var size = Math.min(limit, nodes.size());
+        var result = new ArrayList<Pair<K, Long>>(size);
+        for (var i = 0; i < size; i++) {
+            var node = nodes.get(i);
+            result.add(new Pair<>(node.key, node.count));
+        }
+        return result;
+    }
+
+    /**
+     * 所有的计数乘以factor，计数衰减为0的元素不再被监控
+     */
+    public synchronized void decay(double factor) {
+        sketch.decay(factor);
+
+        var nodes = new ArrayList<>(heap);
+        heap.clear();
+        nodeMap.clear();
+        for (var node : nodes) {
+            node.count = (long) (node.count * factor);
+            if (node.count > 0) {
+                nodeMap.put(node.key, node);
+                heap.add(node);
+                siftUp(heap.size() - 1);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        sketch.clear();
+        heap.clear();
+        nodeMap.clear();
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void siftUp(int index) {
+        var node = heap.get(index);
+        while (index > 0) {
+            var parentIndex = (index - 1) >>> 1;
+            var parent = heap.get(parentIndex);
+            if (parent.count <= node.count) {
+                break;
+            }
+            parent.index = index;
+            heap.set(index, parent);
+            index = parentIndex;
+        }
+        node.index = index;
+        heap.set(index, node);
+    }
+
+    private void siftDown(int index) {
+        var size = heap.size();
+        var node = heap.get(index);
+        var half = size >>> 1;
+        while (index < half) {
+            var childIndex = (index << 1) + 1;
+            var child = heap.get(childIndex);
+            var rightIndex = childIndex + 1;
+            if (rightIndex < size && heap.get(rightIndex).count < child.count) {
+                childIndex = rightIndex;
+                child = heap.get(rightIndex);
+            }
+            if (node.count <= child.count) {
+                break;
+            }
+            child.index = index;
+            heap.set(index, child);
+            index = childIndex;
+        }
+        node.index = index;
+        heap.set(index, node);
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.security;
+
+import java.util.Arrays;
+
+/**
+ * 纯java实现的LZ4块压缩，压缩格式和LZ4 block format一致，压缩速度快但是压缩率比Deflate低，适合网络包这种对延迟敏感的场景
+ * <p>
+ * 块格式不保存原始长度，解压的时候需要调用者提供原始长度
+ *
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public abstract class Lz4Utils {
+
+    private static final int MIN_MATCH = 4;
+
+    // 最后5个字节必须是字面量，最后一个匹配必须在结尾的12个字节之前开始
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int ML_BITS = 4;
+    private static final int ML_MASK = (1 << ML_BITS) - 1;
+    private static final int RUN_MASK = ML_MASK;
+
+    private static final int HASH_LOG = 12;
+
+    // 连续多次没有匹配的时候增大查找的步长，对不可压缩的数据快速跳过
+    private static final int SKIP_STRENGTH = 6;
+
+    private static final ThreadLocal<int[]> HASH_TABLE_LOCAL = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    /**
+     * 压缩后的最大长度，目标数组至少需要这么大
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    public static byte[] compress(byte[] bytes) {
+        var dest = new byte[maxCompressedLength(bytes.length)];
+        var length = compress(bytes, 0, bytes.length, dest, 0);
+        return Arrays.copyOf(dest, length);
+    }
+
+    public static byte[] decompress(byte[] bytes, int originalLength) {
+        var dest = new byte[originalLength];
+        decompress(bytes, 0, bytes.length, dest, 0, originalLength);
+        return dest;
+    }
+
+    /**
+     * @return 压缩后的长度
+     */
+    public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+        var srcEnd = srcOff + srcLen;
+        var matchLimit = srcEnd - LAST_LITERALS;
+        var mfLimit = srcEnd - MF_LIMIT;
+
+        var anchor = srcOff;
+        var dOff = destOff;
+
+        // 太短的数据不会有匹配，直接作为字面量
+        if (srcLen > MF_LIMIT) {
+            var hashTable = HASH_TABLE_LOCAL.get();
+            Arrays.fill(hashTable, -1);
+
+            var sOff = srcOff;
+            var searchCount = 1 << SKIP_STRENGTH;
+            while (sOff < mfLimit) {
+                var sequence = readInt(src, sOff);
+                var hash = hash(sequence);
+                var ref = hashTable[hash];
+                hashTable[hash] = sOff;
+
+                if (ref < 0 || sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    sOff += searchCount++ >>> SKIP_STRENGTH;
+                    continue;
+                }
+                searchCount = 1 << SKIP_STRENGTH;
+
+                // 向前扩展匹配
+                while (sOff > anchor && ref > srcOff && src[sOff - 1] == src[ref - 1]) {
+                    sOff--;
+                    ref--;
+                }
+
+                // 向后扩展匹配
+                var matchLength = MIN_MATCH;
+                while (sOff + matchLength < matchLimit && src[sOff + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                dOff = writeSequence(src, anchor, sOff - anchor, sOff - ref, matchLength, dest, dOff);
+
+                sOff += matchLength;
+                anchor = sOff;
+
+                // 把匹配结尾的位置也放进哈希表，提高后面的匹配率
+                if (sOff < mfLimit) {
+                    hashTable[hash(readInt(src, sOff - 2))] = sOff - 2;
+                }
+            }
+        }
+
+        // 剩下的全部作为字面量
+        var literalLength = srcEnd - anchor;
+        var tokenOff = dOff++;
+        if (literalLength >= RUN_MASK) {
+            dest[tokenOff] = (byte) (RUN_MASK << ML_BITS);
+            dOff = writeLength(dest, dOff, literalLength - RUN_MASK);
+        } else {
+            dest[tokenOff] = (byte) (literalLength << ML_BITS);
+        }
+        System.arraycopy(src, anchor, dest, dOff, literalLength);
+        dOff += literalLength;
+
+        return dOff - destOff;
+    }
+
+    /**
+     * 解压的数据必须正好是originalLength的长度，格式不对的数据会抛出IllegalArgumentException，不会越界读写
+     */
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int originalLength) {
+        var sOff = srcOff;
+        var srcEnd = srcOff + srcLen;
+        var dOff = destOff;
+        var destEnd = destOff + originalLength;
+
+        while (true) {
+            checkCorrupted(sOff < srcEnd);
+            var token = src[sOff++] & 0xFF;
+
+            // 字面量
+            var literalLength = token >>> ML_BITS;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    checkCorrupted(sOff < srcEnd);
+                    b = src[sOff++] & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            checkCorrupted(literalLength >= 0 && literalLength <= srcEnd - sOff && literalLength <= destEnd - dOff);
+            System.arraycopy(src, sOff, dest, dOff, literalLength);
+            sOff += literalLength;
+            dOff += literalLength;
+
+            // 最后一个序列只有字面量
+            if (sOff == srcEnd) {
+                checkCorrupted(dOff == destEnd);
+                return;
+            }
+
+            // 匹配
+            checkCorrupted(srcEnd - sOff >= 2);
+            var offset = (src[sOff++] & 0xFF) | ((src[sOff++] & 0xFF) << 8);
+            var matchOff = dOff - offset;
+            checkCorrupted(offset > 0 && matchOff >= destOff);
+
+            var matchLength = token & ML_MASK;
+            if (matchLength == ML_MASK) {
+                int b;
+                do {
+                    checkCorrupted(sOff < srcEnd);
+                    b = src[sOff++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            checkCorrupted(matchLength >= MIN_MATCH && matchLength <= destEnd - dOff);
+
+            if (offset >= matchLength) {
+                System.arraycopy(dest, matchOff, dest, dOff, matchLength);
+            } else {
+                // 重叠的匹配只能逐个字节复制
+                for (var i = 0; i < matchLength; i++) {
+                    dest[dOff + i] = dest[matchOff + i];
+                }
+            }
+            dOff += matchLength;
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOff, int literalLength, int offset, int matchLength, byte[] dest, int dOff) {
+        var tokenOff = dOff++;
+        int token;
+        if (literalLength >= RUN_MASK) {
+            token = RUN_MASK << ML_BITS;
+            dOff = writeLength(dest, dOff, literalLength - RUN_MASK);
+        } else {
+            token = literalLength << ML_BITS;
+        }
+        System.arraycopy(src, literalOff, dest, dOff, literalLength);
+        dOff += literalLength;
+
+        // offset使用小端序
+        dest[dOff++] = (byte) offset;
+        dest[dOff++] = (byte) (offset >>> 8);
+
+        var length = matchLength - MIN_MATCH;
+        if (length >= ML_MASK) {
+            token |= ML_MASK;
+            dOff = writeLength(dest, dOff, length - ML_MASK);
+        } else {
+            token |= length;
+        }
+        dest[tokenOff] = (byte) token;
+        return dOff;
+    }
+
+    private static int writeLength(byte[] dest, int dOff, int length) {
+        while (length >= 255) {
+            dest[dOff++] = (byte) 255;
+            length -= 255;
+        }
+        dest[dOff++] = (byte) length;
+        return dOff;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static void checkCorrupted(boolean condition) {
+        if (!condition) {
+            throw new IllegalArgumentException("lz4 compressed data is corrupted");
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math;
+
+import com.zfoo.protocol.model.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEY_SIZE = 100000;
+
+    private static final int VIRTUAL_NODES = 200;
+
+    private static List<Pair<String, Long>> servers(int size) {
+        var list = new ArrayList<Pair<String, Long>>();
+        for (var i = 0; i < size; i++) {
+            list.add(new Pair<>("192.168.0." + i + ":12400", (long) i));
+        }
+        return list;
+    }
+
+    private static String[] route(ConsistentHashRing<String, Long> ring) {
+        var result = new String[KEY_SIZE];
+        for (var i = 0; i < KEY_SIZE; i++) {
+            result[i] = ring.getRealNode(i).getKey();
+        }
+        return result;
+    }
+
+    @Test
+    public void sameAsConsistentHashTest() {
+        var nodes = servers(10);
+        var consistentHash = new ConsistentHash<>(nodes, VIRTUAL_NODES);
+        var ring = new ConsistentHashRing<>(nodes, VIRTUAL_NODES);
+        for (var i = 0; i < KEY_SIZE; i++) {
+            Assert.assertEquals(consistentHash.getRealNode(i), ring.getRealNode(i));
+        }
+    }
+
+    @Test
+    public void addNodeTest() {
+        var nodes = servers(11);
+        var ring = new ConsistentHashRing<>(nodes.subList(0, 10), VIRTUAL_NODES);
+        var before = route(ring);
+
+        var addedNode = nodes.get(10);
+        ring.addNode(addedNode);
+        var after = route(ring);
+
+        // 增加节点的时候，只有被新节点接管的key会改变路由
+        var moved = 0;
+        for (var i = 0; i < KEY_SIZE; i++) {
+            if (!before[i].equals(after[i])) {
+                Assert.assertEquals(addedNode.getKey(), after[i]);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0);
+        Assert.assertTrue(moved < KEY_SIZE * 2 / 11);
+
+        // 增量更新的结果和全部重建的结果一致
+        Assert.assertArrayEquals(route(new ConsistentHashRing<>(nodes, VIRTUAL_NODES)), after);
+    }
+
+    @Test
+    public void removeNodeTest() {
+        var nodes = servers(10);
+        var ring = new ConsistentHashRing<>(nodes, VIRTUAL_NODES);
+        var before = route(ring);
+
+        var removedNode = nodes.get(3);
+        ring.removeNode(removedNode.getKey());
+        var after = route(ring);
+
+        // 删除节点的时候，只有原来路由到被删除节点的key会改变路由
+        for (var i = 0; i < KEY_SIZE; i++) {
+            if (before[i].equals(removedNode.getKey())) {
+                Assert.assertNotEquals(removedNode.getKey(), after[i]);
+            } else {
+                Assert.assertEquals(before[i], after[i]);
+            }
+        }
+
+        var remainNodes = new ArrayList<>(nodes);
+        remainNodes.remove(removedNode);
+        Assert.assertArrayEquals(route(new ConsistentHashRing<>(remainNodes, VIRTUAL_NODES)), after);
+
+        // 重新加回来之后路由恢复原样
+        ring.addNode(removedNode);
+        Assert.assertArrayEquals(before, route(ring));
+    }
+
+    @Test
+    public void replaceValueTest() {
+        var nodes = servers(5);
+        var ring = new ConsistentHashRing<>(nodes, VIRTUAL_NODES);
+        var before = route(ring);
+
+        ring.addNode(new Pair<>(nodes.get(2).getKey(), 100L));
+        Assert.assertArrayEquals(before, route(ring));
+        Assert.assertEquals(5, ring.getRealNodes().size());
+        for (var i = 0; i < KEY_SIZE; i++) {
+            var node = ring.getRealNode(i);
+            if (node.getKey().equals(nodes.get(2).getKey())) {
+                Assert.assertEquals(100L, (long) node.getValue());
+            }
+        }
+
+        ring.removeNode(nodes.get(0).getKey());
+        ring.removeNode(nodes.get(1).getKey());
+        ring.removeNode(nodes.get(2).getKey());
+        ring.removeNode(nodes.get(3).getKey());
+        ring.removeNode(nodes.get(4).getKey());
+        Assert.assertNull(ring.getRealNode(1));
+    }
+
+}
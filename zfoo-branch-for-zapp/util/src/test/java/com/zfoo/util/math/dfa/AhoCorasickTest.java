@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math.dfa;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class AhoCorasickTest {
+
+    private final AhoCorasick automaton = AhoCorasick.build(List.of("大", "大土豆", "土豆", "刚出锅", "出锅", "fuck", "he", "she", "his", "hers"));
+
+    @Test
+    public void matchAllTest() {
+        Assert.assertEquals(List.of("大", "大土豆", "土豆", "刚出锅", "出锅"), automaton.matchAll("我有一颗大土豆，刚出锅的"));
+        Assert.assertEquals(List.of("she", "he", "hers"), automaton.matchAll("ushers"));
+        Assert.assertEquals(List.of("fuck"), automaton.matchAll("text asdff asdf afucksdf "));
+        Assert.assertEquals(List.of("she"), automaton.matchAll("ushers", 1));
+        Assert.assertTrue(automaton.matchAll("nothing").isEmpty());
+    }
+
+    @Test
+    public void stopCharTest() {
+        // 停顿词在关键词中间的时候作为关键词的一部分返回
+        Assert.assertEquals(List.of("土 豆"), automaton.matchAll("土 豆"));
+        Assert.assertEquals("a****b", automaton.replace("af u ck b", '*').replace(" ", ""));
+    }
+
+    @Test
+    public void replaceTest() {
+        Assert.assertEquals("我有一颗***，***的", automaton.replace("我有一颗大土豆，刚出锅的", '*'));
+        Assert.assertEquals("nothing", automaton.replace("nothing", '*'));
+        Assert.assertTrue(automaton.isMatch("u s h e r s"));
+        Assert.assertFalse(automaton.isMatch("nothing"));
+    }
+
+}
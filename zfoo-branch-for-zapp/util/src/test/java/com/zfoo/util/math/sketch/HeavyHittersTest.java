@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.math.sketch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class HeavyHittersTest {
+
+    @Test
+    public void countMinSketchTest() {
+        var sketch = new CountMinSketch(4, 1000);
+        Assert.assertEquals(1024, sketch.getWidth());
+
+        var random = new Random(1);
+        var counts = new HashMap<String, Long>();
+        for (var i = 0; i < 100000; i++) {
+            var key = "key" + random.nextInt(5000);
+            sketch.add(key, 1);
+            counts.merge(key, 1L, Long::sum);
+        }
+
+        // 估计值只会偏大
+        for (var entry : counts.entrySet()) {
+            Assert.assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue());
+        }
+
+        sketch.decay(0.5D);
+        for (var entry : counts.entrySet()) {
+            Assert.assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue() / 2);
+        }
+    }
+
+    @Test
+    public void heavyHittersTest() {
+        var heavyHitters = new HeavyHitters<String>(10, 4, 2048);
+
+        // 10个高频词混在大量的低频词中
+        var random = new Random(1);
+        for (var i = 0; i < 50000; i++) {
+            if (random.nextInt(10) < 3) {
+                heavyHitters.add("hot" + random.nextInt(10), 1);
+            } else {
+                heavyHitters.add("cold" + random.nextInt(20000), 1);
+            }
+        }
+
+        var top = heavyHitters.top(10);
+        Assert.assertEquals(10, top.size());
+        Assert.assertTrue(top.stream().allMatch(it -> it.getKey().startsWith("hot")));
+        for (var i = 1; i < top.size(); i++) {
+            Assert.assertTrue(top.get(i - 1).getValue() >= top.get(i).getValue());
+        }
+
+        var hotCounts = top.stream().collect(Collectors.toMap(it -> it.getKey(), it -> it.getValue()));
+        heavyHitters.decay(0.5D);
+        for (var pair : heavyHitters.top(10)) {
+            Assert.assertEquals(hotCounts.get(pair.getKey()) / 2, (long) pair.getValue());
+        }
+
+        heavyHitters.decay(0D);
+        Assert.assertEquals(0, heavyHitters.size());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 The zfoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.zfoo.util.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * @author jaysunxiao
+ * @version 3.0
+ */
+public class Lz4Test {
+
+    @Test
+    public void compressTest() {
+        var str = "LZ4是一个无损的压缩算法，压缩速度每核心可以超过500MB/s，解压速度可以达到每核心数GB/s。".repeat(20);
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        var compressed = Lz4Utils.compress(bytes);
+        Assert.assertTrue(compressed.length < bytes.length / 5);
+        Assert.assertArrayEquals(bytes, Lz4Utils.decompress(compressed, bytes.length));
+    }
+
+    @Test
+    public void edgeCaseTest() {
+        var random = new Random(0);
+        // 空数组，短数组，重叠匹配，不可压缩的随机数据，超过字面量和匹配长度的扩展字节
+        var cases = new byte[][]{new byte[0], new byte[]{1, 2, 3}, new byte[13], new byte[100_000], randomBytes(random, 70_000), randomBytes(random, 300)};
+        for (var bytes : cases) {
+            var compressed = Lz4Utils.compress(bytes);
+            Assert.assertTrue(compressed.length <= Lz4Utils.maxCompressedLength(bytes.length));
+            Assert.assertArrayEquals(bytes, Lz4Utils.decompress(compressed, bytes.length));
+        }
+
+        // 可压缩和不可压缩的数据交替出现
+        var mixed = new byte[200_000];
+        for (var i = 0; i < mixed.length; i++) {
+            mixed[i] = (i / 1000) % 2 == 0 ? (byte) random.nextInt() : (byte) (i % 7);
+        }
+        Assert.assertArrayEquals(mixed, Lz4Utils.decompress(Lz4Utils.compress(mixed), mixed.length));
+    }
+
+    @Test
+    public void corruptedTest() {
+        var bytes = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes(StandardCharsets.UTF_8);
+        var compressed = Lz4Utils.compress(bytes);
+
+        // 原始长度不对
+        assertCorrupted(compressed, bytes.length - 1);
+        assertCorrupted(compressed, bytes.length + 1);
+
+        // 匹配的offset越界
+        var badOffset = compressed.clone();
+        badOffset[2] = (byte) 0xFF;
+        assertCorrupted(badOffset, bytes.length);
+
+        // 数据被截断
+        var truncated = new byte[compressed.length - 1];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        assertCorrupted(truncated, bytes.length);
+    }
+
+    private void assertCorrupted(byte[] compressed, int originalLength) {
+        try {
+            Lz4Utils.decompress(compressed, originalLength);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // 格式错误
+        }
+    }
+
+    private byte[] randomBytes(Random random, int length) {
+        var bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}